@@ -0,0 +1,111 @@
+package qowyn.ark.tools;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import qowyn.ark.GameObject;
+import qowyn.ark.PropertyContainer;
+import qowyn.ark.types.ArkName;
+
+/**
+ * Tracks names and ItemIDs in use so new objects can be given unique ones without rescanning all objects.
+ */
+public class AllocationRegistry {
+
+  /**
+   * Number of objects using each name, objects might share names (duped structures etc)
+   */
+  private final Map<ArkName, Integer> names = new HashMap<>();
+
+  /**
+   * Per base name: instance numbers in use
+   */
+  private final Map<String, BitSet> usedInstances = new HashMap<>();
+
+  private final LongHashSet itemIDs;
+
+  private final Random random = new Random();
+
+  public AllocationRegistry() {
+    itemIDs = new LongHashSet();
+  }
+
+  public AllocationRegistry(Iterable<GameObject> objects, int expectedSize) {
+    itemIDs = new LongHashSet(expectedSize);
+    for (GameObject object : objects) {
+      register(object);
+    }
+  }
+
+  public void register(GameObject object) {
+    for (ArkName name : object.getNames()) {
+      if (names.merge(name, 1, Integer::sum) == 1 && name.getInstance() > 0) {
+        usedInstances.computeIfAbsent(name.getName(), key -> new BitSet()).set(name.getInstance());
+      }
+    }
+
+    PropertyContainer itemID = object.getPropertyValue("ItemId", PropertyContainer.class);
+    if (itemID != null) {
+      Integer itemID1 = itemID.getPropertyValue("ItemID1", Integer.class);
+      Integer itemID2 = itemID.getPropertyValue("ItemID2", Integer.class);
+      if (itemID1 != null && itemID2 != null) {
+        itemIDs.add((long) itemID1 << Integer.SIZE | (itemID2 & 0xFFFFFFFFL));
+      }
+    }
+  }
+
+  /**
+   * Releases names of object. ItemIDs stay reserved, they are random 64 bit values anyway.
+   *
+   * @param object
+   */
+  public void unregister(GameObject object) {
+    for (ArkName name : object.getNames()) {
+      Integer count = names.get(name);
+      if (count == null) {
+        continue;
+      }
+
+      if (count > 1) {
+        names.put(name, count - 1);
+      } else {
+        names.remove(name);
+        BitSet used = usedInstances.get(name.getName());
+        if (used != null && name.getInstance() > 0) {
+          used.clear(name.getInstance());
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the name with the lowest free instance number for the base name of name, starting at 1.
+   * The name is not reserved until an object using it gets registered.
+   */
+  public ArkName allocateName(ArkName name) {
+    String baseName = name.getName();
+    BitSet used = usedInstances.get(baseName);
+    int instance = used != null ? used.nextClearBit(1) : 1;
+
+    if (instance == Integer.MAX_VALUE) {
+      throw new Error("This is insane.");
+    }
+
+    return ArkName.from(baseName, instance);
+  }
+
+  /**
+   * Returns a random ItemID not in use. The id is not reserved until an object using it gets registered.
+   */
+  public long allocateItemId() {
+    long randomId = random.nextLong();
+    while (itemIDs.contains(randomId)) {
+      randomId = random.nextLong();
+    }
+
+    return randomId;
+  }
+
+}
@@ -21,9 +21,21 @@ public class App {
   }
 
   private static void addCommand(String[] names, String category, String[] options, String description, Consumer<OptionHandler> action) {
+    addCommand(names, category, options, description, action, false);
+  }
+
+  /**
+   * Adds a command reading SAVE through {@link OptionHandler#getSharedSavegame(java.nio.file.Path)}, it can run with --watch
+   * and gets SAVE preloaded in a batch
+   */
+  private static void addSavegameCommand(String[] names, String category, String[] options, String description, Consumer<OptionHandler> action) {
+    addCommand(names, category, options, description, watchable(action), true);
+  }
+
+  private static void addCommand(String[] names, String category, String[] options, String description, Consumer<OptionHandler> action, boolean sharedSavegame) {
     String namesString = String.join(", ", names);
     String optionSummary = String.join(" ", options);
-    Command command = new Command(namesString, category, description, optionSummary, options, action);
+    Command command = new Command(namesString, category, description, optionSummary, options, action, sharedSavegame);
 
     for (String name : names) {
       COMMAND_NAME_MAP.put(name, command);
@@ -32,10 +44,23 @@ public class App {
     COMMAND_CATEGORY_MAP.computeIfAbsent(category, key -> new ArrayList<>()).add(command);
   }
 
+  /**
+   * Wraps action so it keeps running with --watch
+   */
+  private static Consumer<OptionHandler> watchable(Consumer<OptionHandler> action) {
+    return oh -> {
+      if (oh.isWatching()) {
+        SaveWatcher.run(oh, action);
+      } else {
+        action.accept(oh);
+      }
+    };
+  }
+
   static {
-    addCommand(list("creatures"), "Creatures", list("SAVE", "DIRECTORY"), "Writes lists of all creatures in SAVE to the specified DIRECTORY.", CreatureListCommands::creatures);
-    addCommand(list("tamed"), "Creatures", list("SAVE", "DIRECTORY"), "Writes lists of tamed creatures in SAVE to the specified DIRECTORY.", CreatureListCommands::tamed);
-    addCommand(list("wild"), "Creatures", list("SAVE", "DIRECTORY"), "Writes lists of wild creatures in SAVE to the specified DIRECTORY.", CreatureListCommands::wild);
+    addSavegameCommand(list("creatures"), "Creatures", list("SAVE", "DIRECTORY"), "Writes lists of all creatures in SAVE to the specified DIRECTORY.", CreatureListCommands::creatures);
+    addSavegameCommand(list("tamed"), "Creatures", list("SAVE", "DIRECTORY"), "Writes lists of tamed creatures in SAVE to the specified DIRECTORY.", CreatureListCommands::tamed);
+    addSavegameCommand(list("wild"), "Creatures", list("SAVE", "DIRECTORY"), "Writes lists of wild creatures in SAVE to the specified DIRECTORY.", CreatureListCommands::wild);
 
     addCommand(list("m2j", "mapToJson"), "Converting", list("ARK", "JSON"), "Converts from .ark to .json", ConvertingCommands::mapToJson);
     addCommand(list("p2j", "profileToJson"), "Converting", list("PROFILE", "JSON"), "Converts from .arkprofile to .json", ConvertingCommands::profileToJson);
@@ -53,6 +78,7 @@ public class App {
 
     addCommand(list("classes"), "Debug", list("SAVE", "[OUT_FILE]"), "Dumps a list of all classes with count of objects to stdout or OUT_FILE.", DebugCommands::classes);
     addCommand(list("dump"), "Debug", list("SAVE", "CLASS_NAME", "[OUT_FILE]"), "Dumps all objects of given CLASS_NAME to stdout or OUT_FILE.", DebugCommands::dump);
+    addCommand(list("extractors"), "Debug", list("SAVE"), "Compares the property extractors with the legacy findPropertyValue readers and prints timings and mismatched fields.", DebugCommands::extractors);
     addCommand(list("sizes"), "Debug", list("SAVE", "[OUT_FILE]"), "Dumps className and size in bytes of all objects to stdout or OUT_FILE.", DebugCommands::sizes);
 
     addCommand(list("feed"), "Editing", list("SAVE", "NEW_SAVE"),
@@ -68,19 +94,60 @@ public class App {
     addCommand(list("import"), "Editing", list("SAVE", "JSON", "NEW_SAVE"), "Imports all objects from JSON into SAVE.", EditingCommands::importThing);
     addCommand(list("modify"), "Editing", list("INPUT", "MODIFICATION", "OUTPUT"), "Applies the actions defined in MODIFICATION to the specified INPUT file.", EditingCommands::modify);
 
-    addCommand(list("players"), "Players", list("SAVE", "DIRECTORY"), "Writes lists of all players in SAVE to the specified DIRECTORY.", PlayerListCommands::players);
-    addCommand(list("tribes"), "Players", list("SAVE", "DIRECTORY"), "Writes lists of all tribes in SAVE to the specified DIRECTORY.", PlayerListCommands::tribes);
+    addSavegameCommand(list("players"), "Players", list("SAVE", "DIRECTORY"), "Writes lists of all players in SAVE to the specified DIRECTORY.", PlayerListCommands::players);
+    addSavegameCommand(list("tribes"), "Players", list("SAVE", "DIRECTORY"), "Writes lists of all tribes in SAVE to the specified DIRECTORY.", PlayerListCommands::tribes);
     addCommand(list("cluster"), "Players", list("CLUSTER_DIRECTORY", "OUTPUT_DIRECTORY"), "Writes lists of all things which players have uploaded into the cluster.", PlayerListCommands::cluster);
 
-    addCommand(list("db"), "DB", list("DRIVER", "SAVE", "URI_OR_PATH", "[CLUSTER_DIRECTORY]"), "Reads the SAVE, all players, all tribes and cluster data and outputs the result to URI_OR_PATH", DBCommands::run);
+    addSavegameCommand(list("db"), "DB", list("DRIVER", "SAVE", "URI_OR_PATH", "[CLUSTER_DIRECTORY]"), "Reads the SAVE, all players, all tribes and cluster data and outputs the result to URI_OR_PATH", DBCommands::run);
     addCommand(list("db-drivers", "dbDrivers"), "DB", list(), "Lists all installed drivers with their configuration parameters", DBCommands::list);
 
+    addCommand(list("batch"), "Server", list("JOBS"),
+        "Runs all commands listed in JOBS, a JSON array of argument arrays, in parallel. "
+            + "Each .ark file used by any of them is read only once.",
+        BatchCommands::batch);
+    addCommand(list("serve"), "Server", list("SAVE"),
+        "Keeps SAVE loaded and runs commands posted as JSON array of arguments to /run on a local HTTP port. "
+            + "Requests need Content-Type: application/json and the token as Authorization: Bearer <token>. "
+            + "Commands given the same SAVE use the loaded data. SAVE gets reloaded when it changes.",
+        ServeCommands::serve);
+
     addCommand(list("latlon"), "Settings", list(), "Exports internal LatLonCalculator data to latLonCalculator.json in the current working directory", SettingsCommands::latlon);
 
     addCommand(list("update-data", "updateData"), "Update", list(), "Checks for ark_data.json and translation updates, then downloads them if available.", UpdateCommands::updateData);
     addCommand(list("version"), "Update", list(), "Shows version and exits.", UpdateCommands::version);
   }
 
+  public static boolean hasCommand(String name) {
+    return COMMAND_NAME_MAP.containsKey(name);
+  }
+
+  /**
+   * Whether the command called name reads its savegame through {@link OptionHandler#getSharedSavegame(java.nio.file.Path)}
+   */
+  public static boolean usesSharedSavegame(String name) {
+    Command command = COMMAND_NAME_MAP.get(name);
+    return command != null && command.usesSharedSavegame();
+  }
+
+  /**
+   * Runs the command selected by oh
+   *
+   * @return false if there is no such command
+   */
+  public static boolean execute(OptionHandler oh) {
+    Command command = oh.hasCommand() ? COMMAND_NAME_MAP.get(oh.getCommand()) : null;
+    if (command == null) {
+      return false;
+    }
+
+    oh.setCommandObject(command);
+    // Stopwatches of commands failing or exiting early stop measuring as well
+    try (Stopwatch.Scope scope = Stopwatch.openScope()) {
+      command.getAction().accept(oh);
+    }
+    return true;
+  }
+
   public static void main(String[] args) throws Exception {
     OptionHandler oh;
     try {
@@ -120,9 +187,7 @@ public class App {
     }
 
     try {
-      Command command = COMMAND_NAME_MAP.get(oh.getCommand());
-      oh.setCommandObject(command);
-      command.getAction().accept(oh);
+      execute(oh);
     } catch (OptionException oe) {
       System.err.println(oe.getMessage());
       System.exit(2);
@@ -0,0 +1,193 @@
+package qowyn.ark.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import joptsimple.OptionException;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import qowyn.ark.tools.driver.DBDrivers;
+import qowyn.ark.tools.options.IntegerValueConverter;
+
+public class BatchCommands {
+
+  public static void batch(OptionHandler oh) {
+    OptionSpec<Integer> jobCountSpec = oh.accepts("job-count", "Maximum number of jobs running at the same time, defaults to --thread-count.")
+        .withRequiredArg().withValuesConvertedBy(new IntegerValueConverter());
+
+    OptionSet options = oh.reparse();
+
+    List<String> params = oh.getParams(options);
+    if (params.size() != 1 || oh.wantsHelp()) {
+      oh.printCommandHelp();
+      System.exit(1);
+      return;
+    }
+
+    ExitGuard.installOrExit("batch");
+
+    List<String[]> jobs = new ArrayList<>();
+    try {
+      JsonNode jobList = CommonFunctions.readJson(Paths.get(params.get(0)));
+      if (jobList == null || !jobList.isArray()) {
+        System.err.println("Error: JOBS has to be a JSON array of argument arrays.");
+        System.exit(2);
+        return;
+      }
+
+      for (JsonNode job : jobList) {
+        if (!job.isArray() || job.size() == 0) {
+          System.err.println("Error: JOBS has to be a JSON array of argument arrays, found " + job);
+          System.exit(2);
+          return;
+        }
+
+        String[] args = new String[job.size()];
+        for (int index = 0; index < args.length; index++) {
+          args[index] = job.get(index).asText();
+        }
+
+        if (!App.hasCommand(args[0]) || args[0].equals("batch") || args[0].equals("serve")) {
+          System.err.println("Error: Can't run " + args[0] + " as part of a batch.");
+          System.exit(2);
+          return;
+        }
+
+        jobs.add(args);
+      }
+    } catch (IOException ex) {
+      System.err.println("Error: Unable to read JOBS " + params.get(0));
+      if (oh.isVerbose()) {
+        ex.printStackTrace();
+      }
+      System.exit(2);
+      return;
+    }
+
+    // DataManager holds the data of one language for the whole process
+    Set<String> languages = new HashSet<>();
+    for (String[] args : jobs) {
+      try {
+        languages.add(new OptionHandler(args).lang());
+      } catch (OptionException oe) {
+        // Reported once the job runs
+      }
+    }
+
+    if (languages.size() > 1) {
+      System.err.println("Error: All jobs of a batch have to use the same --lang.");
+      System.exit(2);
+      return;
+    }
+
+    Stopwatch stopwatch = new Stopwatch(oh);
+
+    // Savegames of commands which can share them get read once, with all properties and the component tree
+    Set<Path> savePaths = new LinkedHashSet<>();
+    for (String[] args : jobs) {
+      if (!App.usesSharedSavegame(args[0])) {
+        // Like import, modify or m2j, which read the file with their own options
+        continue;
+      }
+
+      try {
+        for (String param : new OptionHandler(args).getParams()) {
+          if (param.toLowerCase(Locale.ENGLISH).endsWith(".ark")) {
+            Path path = Paths.get(param).toAbsolutePath().normalize();
+            if (Files.isRegularFile(path)) {
+              savePaths.add(path);
+            }
+          }
+        }
+      } catch (OptionException oe) {
+        // Reported once the job runs
+      }
+    }
+
+    List<SharedSavegame> savegames = new ArrayList<>();
+    for (Path savePath : savePaths) {
+      try {
+        savegames.add(SharedSavegame.load(savePath, oh));
+      } catch (RuntimeException | IOException ex) {
+        // Jobs will try to read it themselves
+        System.err.println("Found potentially corrupt ArkSavegame: " + savePath);
+        if (oh.isVerbose()) {
+          ex.printStackTrace();
+        }
+      }
+    }
+    stopwatch.stop("Loading savegames");
+
+    int jobCount = options.has(jobCountSpec) ? options.valueOf(jobCountSpec) : oh.threadCount();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(jobCount, jobs.size())));
+
+    List<Future<Integer>> results = new ArrayList<>();
+    for (String[] args : jobs) {
+      Callable<Integer> task = () -> runJob(args, savegames);
+      results.add(executor.submit(task));
+    }
+
+    int failed = 0;
+    for (int index = 0; index < jobs.size(); index++) {
+      int exitCode;
+      try {
+        exitCode = results.get(index).get();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(ex);
+      } catch (ExecutionException ex) {
+        ex.getCause().printStackTrace();
+        exitCode = 2;
+      }
+
+      if (exitCode != 0) {
+        failed++;
+        System.err.println("Job " + (index + 1) + " (" + String.join(" ", jobs.get(index)) + ") failed with exit code " + exitCode);
+      }
+    }
+    executor.shutdown();
+    DBDrivers.close();
+
+    stopwatch.stop("Running jobs");
+    stopwatch.print();
+
+    if (failed > 0) {
+      System.exit(2);
+    }
+  }
+
+  private static int runJob(String[] args, List<SharedSavegame> savegames) {
+    try {
+      ExitGuard.enable();
+      OptionHandler handler = new OptionHandler(args);
+      handler.setSharedSavegames(savegames);
+      return App.execute(handler) ? 0 : 1;
+    } catch (ExitGuard.ExitException ex) {
+      return ex.getStatus();
+    } catch (OptionException oe) {
+      System.err.println(oe.getMessage());
+      return 2;
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      return 2;
+    } finally {
+      ExitGuard.disable();
+    }
+  }
+
+}
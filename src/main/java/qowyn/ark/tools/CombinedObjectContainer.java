@@ -0,0 +1,223 @@
+package qowyn.ark.tools;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import qowyn.ark.ArkSavegame;
+import qowyn.ark.GameObject;
+import qowyn.ark.GameObjectContainer;
+import qowyn.ark.HibernationEntry;
+import qowyn.ark.types.ObjectReference;
+
+/**
+ * Presents the objects of a savegame followed by the objects of all its {@link HibernationEntry}s as one
+ * container without copying them into a new list.
+ * <p>
+ * Each entry occupies a fixed range of ids directly after the previous one, sized by the objects it keeps after
+ * ordering. Entries get remapped into their range on first access, or all at once in parallel before iterating.
+ */
+public final class CombinedObjectContainer implements GameObjectContainer {
+
+  private final List<GameObject> mainObjects;
+
+  private final Segment[] segments;
+
+  /**
+   * First id of each segment, used for binary search
+   */
+  private final int[] offsets;
+
+  private final int size;
+
+  private final CombinedList objects = new CombinedList();
+
+  public CombinedObjectContainer(ArkSavegame savegame) {
+    this.mainObjects = savegame.getObjects();
+
+    List<HibernationEntry> entries = savegame.getHibernationEntries();
+    segments = new Segment[entries.size()];
+    offsets = new int[entries.size()];
+
+    // Ordering decides how many objects an entry contributes, duplicate components get dropped
+    ObjectCollector[] collectors = entries.parallelStream().map(entry -> new ObjectCollector(entry, 1)).toArray(ObjectCollector[]::new);
+    List<List<GameObject>> orderedLists = Arrays.stream(collectors).parallel().map(ObjectCollector::order).collect(Collectors.toList());
+
+    int offset = mainObjects.size();
+    for (int i = 0; i < segments.length; i++) {
+      List<GameObject> ordered = orderedLists.get(i);
+      segments[i] = new Segment(collectors[i], ordered, offset);
+      offsets[i] = offset;
+      offset += ordered.size();
+    }
+
+    size = offset;
+  }
+
+  /**
+   * Returns savegame itself if there is nothing to combine
+   */
+  public static GameObjectContainer of(ArkSavegame savegame) {
+    return savegame.getHibernationEntries().isEmpty() ? savegame : new CombinedObjectContainer(savegame);
+  }
+
+  @Override
+  public List<GameObject> getObjects() {
+    return objects;
+  }
+
+  @Override
+  public GameObject getObject(ObjectReference reference) {
+    if (reference == null || !reference.isId()) {
+      return null;
+    }
+
+    int id = reference.getObjectId();
+    return id > -1 && id < size ? objects.get(id) : null;
+  }
+
+  @Override
+  public Iterator<GameObject> iterator() {
+    return objects.iterator();
+  }
+
+  /**
+   * Remaps all entries which haven't been accessed yet in parallel
+   */
+  public void remapAll() {
+    Arrays.stream(segments).parallel().forEach(Segment::remap);
+  }
+
+  private GameObject get(int id) {
+    if (id < mainObjects.size()) {
+      return mainObjects.get(id);
+    }
+
+    int index = Arrays.binarySearch(offsets, id);
+    if (index < 0) {
+      // insertion point - 1 is the segment containing id
+      index = -index - 2;
+    } else {
+      // Skip empty entries sharing the same offset
+      while (index + 1 < offsets.length && offsets[index + 1] == id) {
+        index++;
+      }
+    }
+
+    return segments[index].remap().get(id - offsets[index]);
+  }
+
+  private static final class Segment {
+
+    private ObjectCollector collector;
+
+    private final List<GameObject> ordered;
+
+    private final int offset;
+
+    private volatile boolean remapped;
+
+    public Segment(ObjectCollector collector, List<GameObject> ordered, int offset) {
+      this.collector = collector;
+      this.ordered = ordered;
+      this.offset = offset;
+    }
+
+    public List<GameObject> remap() {
+      if (!remapped) {
+        synchronized (this) {
+          if (!remapped) {
+            collector.remap(ordered, offset);
+            // Only needed for remapping
+            collector = null;
+            remapped = true;
+          }
+        }
+      }
+
+      return ordered;
+    }
+
+  }
+
+  private final class CombinedList extends AbstractList<GameObject> implements RandomAccess {
+
+    @Override
+    public GameObject get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+
+      return CombinedObjectContainer.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public Iterator<GameObject> iterator() {
+      remapAll();
+      return super.iterator();
+    }
+
+    @Override
+    public Spliterator<GameObject> spliterator() {
+      remapAll();
+      return new IndexSpliterator(0, size);
+    }
+
+  }
+
+  private final class IndexSpliterator implements Spliterator<GameObject> {
+
+    private int index;
+
+    private final int fence;
+
+    public IndexSpliterator(int index, int fence) {
+      this.index = index;
+      this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super GameObject> action) {
+      if (index >= fence) {
+        return false;
+      }
+
+      action.accept(get(index++));
+      return true;
+    }
+
+    @Override
+    public Spliterator<GameObject> trySplit() {
+      int low = index;
+      int middle = (low + fence) >>> 1;
+      if (low >= middle) {
+        return null;
+      }
+
+      index = middle;
+      return new IndexSpliterator(low, middle);
+    }
+
+    @Override
+    public long estimateSize() {
+      return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+  }
+
+}
@@ -16,13 +16,20 @@ public class Command {
 
   private final Consumer<OptionHandler> action;
 
+  private final boolean sharedSavegame;
+
   public Command(String names, String category, String description, String optionSummary, String[] options, Consumer<OptionHandler> action) {
+    this(names, category, description, optionSummary, options, action, false);
+  }
+
+  public Command(String names, String category, String description, String optionSummary, String[] options, Consumer<OptionHandler> action, boolean sharedSavegame) {
     this.names = names;
     this.category = category;
     this.description = description;
     this.optionSummary = optionSummary;
     this.options = options;
     this.action = action;
+    this.sharedSavegame = sharedSavegame;
   }
 
   public String getNames() {
@@ -49,4 +56,11 @@ public class Command {
     return action;
   }
 
+  /**
+   * Whether this command reads its savegame through {@link OptionHandler#getSharedSavegame(java.nio.file.Path)}
+   */
+  public boolean usesSharedSavegame() {
+    return sharedSavegame;
+  }
+
 }
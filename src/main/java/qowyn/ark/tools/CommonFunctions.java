@@ -1,9 +1,12 @@
 package qowyn.ark.tools;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.stream.Stream;
 
@@ -88,7 +91,8 @@ public final class CommonFunctions {
       throw new NullPointerException();
     }
 
-    ObjectWriter writer = oh.usePretty() ? OBJECT_MAPPER.writerWithDefaultPrettyPrinter() : OBJECT_MAPPER.writer();
+    DataFormat format = oh.dataFormat();
+    ObjectWriter writer = oh.usePretty() && format.isText() ? format.getMapper().writerWithDefaultPrettyPrinter() : format.getMapper().writer();
     writer.writeValue(out, node);
   }
 
@@ -97,17 +101,22 @@ public final class CommonFunctions {
       throw new NullPointerException();
     }
 
-    ObjectWriter writer = oh.usePretty() ? OBJECT_MAPPER.writerWithDefaultPrettyPrinter() : OBJECT_MAPPER.writer();
-    writer.writeValue(outPath.toFile(), node);
+    try (OutputStream out = newOutputStream(outPath, oh)) {
+      writeJson(out, node, oh);
+    }
   }
 
   public static void writeJson(OutputStream out, WriteJsonCallback writeJson, OptionHandler oh) throws IOException {
+    writeJson(out, writeJson, oh.dataFormat(), oh);
+  }
+
+  public static void writeJson(OutputStream out, WriteJsonCallback writeJson, DataFormat format, OptionHandler oh) throws IOException {
     if (out == null || writeJson == null) {
       throw new NullPointerException();
     }
 
-    try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
-      if (oh.usePretty()) {
+    try (JsonGenerator generator = format.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+      if (oh.usePretty() && format.isText()) {
         generator.useDefaultPrettyPrinter();
       }
 
@@ -120,13 +129,7 @@ public final class CommonFunctions {
       throw new NullPointerException();
     }
 
-    try (JsonGenerator generator = JSON_FACTORY.createGenerator(outPath.toFile(), JsonEncoding.UTF8)) {
-      if (oh.usePretty()) {
-        generator.useDefaultPrettyPrinter();
-      }
-
-      writeJson.accept(generator);
-    }
+    writeJson(newOutputStream(outPath, oh), writeJson, oh);
   }
 
   public static JsonNode readJson(InputStream stream) throws IOException {
@@ -134,7 +137,9 @@ public final class CommonFunctions {
       throw new NullPointerException();
     }
 
-    return OBJECT_MAPPER.readTree(stream);
+    try (JsonParser parser = createParser(stream)) {
+      return OBJECT_MAPPER.readTree(parser);
+    }
   }
 
   public static JsonNode readJson(Path inPath) throws IOException {
@@ -142,7 +147,7 @@ public final class CommonFunctions {
       throw new NullPointerException();
     }
 
-    return OBJECT_MAPPER.readTree(inPath.toFile());
+    return readJson(Files.newInputStream(inPath));
   }
 
   public static JsonNode readJsonRelative(String inFile) throws IOException {
@@ -160,7 +165,7 @@ public final class CommonFunctions {
       throw new NullPointerException();
     }
 
-    try (JsonParser parser = JSON_FACTORY.createParser(stream)) {
+    try (JsonParser parser = createParser(stream)) {
       parseJson.accept(parser);
     }
   }
@@ -170,11 +175,36 @@ public final class CommonFunctions {
       throw new NullPointerException();
     }
 
-    try (JsonParser parser = JSON_FACTORY.createParser(inPath.toFile())) {
-      parseJson.accept(parser);
+    readJson(Files.newInputStream(inPath), parseJson);
+  }
+
+  /**
+   * Creates a parser for stream after detecting compression and data format
+   */
+  public static JsonParser createParser(InputStream stream) throws IOException {
+    try {
+      InputStream in = Compression.detect(stream);
+      if (!in.markSupported()) {
+        in = new BufferedInputStream(in);
+      }
+
+      return DataFormat.detect(in).getFactory().createParser(in);
+    } catch (IOException ex) {
+      stream.close();
+      throw ex;
     }
   }
 
+  /**
+   * Opens outPath for writing, compressed if requested by <code>--compress</code>
+   */
+  public static OutputStream newOutputStream(Path outPath, OptionHandler oh) throws IOException {
+    OutputStream out = new BufferedOutputStream(Files.newOutputStream(outPath));
+    Compression compression = oh.compression();
+
+    return compression != null ? compression.wrap(out, oh) : out;
+  }
+
   public static String getRGBA(StructLinearColor lc) {
     double clampR = Math.min(1, Math.max(lc.getR(), 0));
     double clampG = Math.min(1, Math.max(lc.getG(), 0));
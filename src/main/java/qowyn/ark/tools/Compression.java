@@ -0,0 +1,111 @@
+package qowyn.ark.tools;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of written files, selected by <code>--compress</code>. Compressed input gets detected by its
+ * first bytes, so every reader accepts both plain and compressed files.
+ */
+public class Compression {
+
+  public static final String GZIP = "gzip";
+
+  public static final String ZSTD = "zstd";
+
+  private static final int GZIP_MAGIC_0 = 0x1F;
+
+  private static final int GZIP_MAGIC_1 = 0x8B;
+
+  private static final int ZSTD_MAGIC = 0xFD2FB528;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final String algorithm;
+
+  private final int level;
+
+  public Compression(String algorithm, int level) {
+    this.algorithm = algorithm;
+    this.level = level;
+  }
+
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * File extension including the dot, appended to the extension of the data format
+   */
+  public String getExtension() {
+    // Only gzip gets written
+    return ".gz";
+  }
+
+  /**
+   * Compression level, {@link Deflater#DEFAULT_COMPRESSION} if none has been given
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Wraps out, closing the result finishes the compressed data and closes out.
+   * Uses multiple threads if <code>--parallel</code> is set.
+   */
+  public OutputStream wrap(OutputStream out, OptionHandler oh) throws IOException {
+    if (oh.useParallel() && oh.threadCount() > 1) {
+      return new ParallelGzipOutputStream(out, level, oh.threadCount());
+    }
+
+    return new LevelGzipOutputStream(out, level, BUFFER_SIZE);
+  }
+
+  /**
+   * Returns a stream with the decompressed content of in if it starts with a known header, otherwise
+   * a stream with the content of in.
+   */
+  public static InputStream detect(InputStream in) throws IOException {
+    InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in, BUFFER_SIZE);
+
+    byte[] magic = new byte[4];
+    buffered.mark(magic.length);
+    int count = 0;
+    while (count < magic.length) {
+      int read = buffered.read(magic, count, magic.length - count);
+      if (read < 0) {
+        break;
+      }
+      count += read;
+    }
+    buffered.reset();
+
+    if (count >= 2 && (magic[0] & 0xFF) == GZIP_MAGIC_0 && (magic[1] & 0xFF) == GZIP_MAGIC_1) {
+      return new GZIPInputStream(buffered, BUFFER_SIZE);
+    }
+
+    if (count == 4 && ((magic[0] & 0xFF) | (magic[1] & 0xFF) << 8 | (magic[2] & 0xFF) << 16 | (magic[3] & 0xFF) << 24) == ZSTD_MAGIC) {
+      throw new IOException("Found zstd compressed input, only gzip is supported");
+    }
+
+    return buffered;
+  }
+
+  /**
+   * GZIPOutputStream with configurable compression level, always a single gzip member written by the calling thread
+   */
+  public static class LevelGzipOutputStream extends GZIPOutputStream {
+
+    public LevelGzipOutputStream(OutputStream out, int level, int size) throws IOException {
+      super(out, size);
+      def.setLevel(level);
+    }
+
+  }
+
+}
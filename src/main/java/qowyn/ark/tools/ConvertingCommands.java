@@ -21,11 +21,15 @@ import qowyn.ark.ConversionSupport;
 public class ConvertingCommands {
 
   public static void mapToJson(OptionHandler oh) {
-    toJson(oh, ArkSavegame::new);
+    OptionSpec<Void> streamSpec = oh.accepts("stream", "Writes objects while reading them instead of loading the whole map first, memory usage stays low even for large maps. Relies on ark-savegame-toolkit 0.8.1 reading objects one after another in order, fails otherwise.");
+
+    toJson(oh, ArkSavegame::new, streamSpec);
   }
 
   public static void jsonToMap(OptionHandler oh) {
-    fromJson(oh, ArkSavegame::new);
+    OptionSpec<Void> streamSpec = oh.accepts("stream", "Converts objects while parsing instead of parsing the whole file first, uses a lot less memory for large maps.");
+
+    fromJson(oh, ArkSavegame::new, streamSpec);
   }
 
   public static void profileToJson(OptionHandler oh) {
@@ -69,6 +73,10 @@ public class ConvertingCommands {
   }
 
   public static void toJson(OptionHandler oh, Supplier<ConversionSupport> supplier) {
+    toJson(oh, supplier, null);
+  }
+
+  private static void toJson(OptionHandler oh, Supplier<ConversionSupport> supplier, OptionSpec<Void> streamSpec) {
     OptionSpec<Void> allowBrokenFileSpec = oh.accepts("allow-broken-file", "Tries to read as much of broken/truncated files as possible");
 
     OptionSet options = oh.reparse();
@@ -83,7 +91,19 @@ public class ConvertingCommands {
       Path inPath = Paths.get(params.get(0));
       Path outPath = Paths.get(params.get(1));
 
-      Stopwatch stopwatch = new Stopwatch(oh.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(oh);
+
+      if (streamSpec != null && options.has(streamSpec)) {
+        CommonFunctions.writeJson(outPath, g -> {
+          StreamingSavegameWriter writer = new StreamingSavegameWriter(g, oh.writingOptions());
+          writer.write(inPath, options.has(allowBrokenFileSpec), oh.useMmap());
+        }, oh);
+        stopwatch.stop("Converting");
+
+        stopwatch.print();
+        return;
+      }
+
       ConversionSupport objectToConvert = supplier.get();
       try {
         objectToConvert.readBinary(inPath, oh.readingOptions());
@@ -103,7 +123,12 @@ public class ConvertingCommands {
   }
 
   public static void fromJson(OptionHandler oh, Supplier<ConversionSupport> supplier) {
-    List<String> params = oh.getParams();
+    fromJson(oh, supplier, null);
+  }
+
+  private static void fromJson(OptionHandler oh, Supplier<ConversionSupport> supplier, OptionSpec<Void> streamSpec) {
+    OptionSet options = oh.reparse();
+    List<String> params = oh.getParams(options);
     if (params.size() != 2 || oh.wantsHelp()) {
       oh.printCommandHelp();
       System.exit(1);
@@ -114,7 +139,20 @@ public class ConvertingCommands {
       Path inPath = Paths.get(params.get(0));
       Path outPath = Paths.get(params.get(1));
 
-      Stopwatch stopwatch = new Stopwatch(oh.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(oh);
+
+      if (streamSpec != null && options.has(streamSpec)) {
+        StreamingSavegameReader reader = new StreamingSavegameReader(oh.readingOptions(), StreamingSavegameReader.DEFAULT_BATCH_SIZE);
+        ArkSavegame savegame = reader.read(inPath);
+        stopwatch.count("objects", savegame.getObjects().size());
+        stopwatch.stop("Loading");
+        savegame.writeBinary(outPath, oh.writingOptions());
+        stopwatch.stop("Writing");
+
+        stopwatch.print();
+        return;
+      }
+
       JsonNode node = CommonFunctions.readJson(inPath);
       stopwatch.stop("Parsing");
       ConversionSupport objectToConvert = supplier.get();
@@ -5,7 +5,6 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IntSummaryStatistics;
 import java.util.List;
@@ -24,50 +23,56 @@ import joptsimple.OptionSpec;
 import qowyn.ark.ArkSavegame;
 import qowyn.ark.GameObject;
 import qowyn.ark.GameObjectContainer;
-import qowyn.ark.HibernationEntry;
 import qowyn.ark.ReadingOptions;
 import qowyn.ark.tools.data.Creature;
 import qowyn.ark.tools.data.CustomDataContext;
 
 public class CreatureListCommands {
 
-  private static ArkSavegame saveFile;
+  private ArkSavegame saveFile;
 
-  private static GameObjectContainer container;
+  private GameObjectContainer container;
 
-  private static OptionHandler optionHandler;
+  private final OptionHandler optionHandler;
 
-  private static Path outputDirectory;
+  private Path outputDirectory;
 
-  private static OptionSpec<Void> untameableSpec;
+  private OptionSpec<Void> untameableSpec;
 
-  private static OptionSpec<Void> statisticsSpec;
+  private OptionSpec<Void> statisticsSpec;
 
-  private static OptionSpec<Void> withoutIndexSpec;
+  private OptionSpec<Void> withoutIndexSpec;
 
-  private static OptionSpec<Void> cleanFolderSpec;
+  private OptionSpec<Void> cleanFolderSpec;
 
-  private static OptionSpec<Void> writeAllFieldsSpec;
+  private OptionSpec<Void> writeAllFieldsSpec;
 
-  private static OptionSpec<String> inventorySpec;
+  private OptionSpec<String> inventorySpec;
 
-  private static OptionSet options;
+  private OptionSpec<Void> incrementalSpec;
 
-  private static WriteJsonCallback writerFunction;
+  private OptionSet options;
+
+  private WriteJsonCallback writerFunction;
+
+  private IncrementalWriter incrementalWriter;
+
+  private NdjsonWriter ndjsonWriter;
+
+  private CreatureListCommands(OptionHandler optionHandler) {
+    this.optionHandler = optionHandler;
+  }
 
   public static void creatures(OptionHandler optionHandler) {
-    CreatureListCommands.optionHandler = optionHandler;
-    listImpl(null);
+    new CreatureListCommands(optionHandler).listImpl(null);
   }
 
   public static void tamed(OptionHandler optionHandler) {
-    CreatureListCommands.optionHandler = optionHandler;
-    listImpl(CommonFunctions::isTamed);
+    new CreatureListCommands(optionHandler).listImpl(CommonFunctions::isTamed);
   }
 
   public static void wild(OptionHandler optionHandler) {
-    CreatureListCommands.optionHandler = optionHandler;
-    listImpl(CommonFunctions::isWild);
+    new CreatureListCommands(optionHandler).listImpl(CommonFunctions::isWild);
   }
 
   protected static boolean neededClasses(GameObject object) {
@@ -80,14 +85,15 @@ public class CreatureListCommands {
     return !object.findPropertyValue("bForceDisablingTaming", Boolean.class).orElse(false) || object.getClassString().equals("Raft_BP_C");
   }
 
-  protected static void listImpl(Predicate<GameObject> filter) {
+  protected void listImpl(Predicate<GameObject> filter) {
     try {
       untameableSpec = optionHandler.accepts("include-untameable", "Include untameable high-level dinos.");
       statisticsSpec = optionHandler.accepts("statistics", "Wrap list of dinos in statistics block.");
       withoutIndexSpec = optionHandler.accepts("without-index", "Omits reading and writing classes.json");
-      cleanFolderSpec = optionHandler.accepts("clean", "Deletes all .json files in the target directory.");
+      cleanFolderSpec = optionHandler.accepts("clean", "Deletes all .json and .ndjson files in the target directory.");
       writeAllFieldsSpec = optionHandler.accepts("write-all-fields", "Writes all the fields.");
       inventorySpec = optionHandler.accepts("inventory", "Include inventory of creatures.").withOptionalArg().describedAs("summary|long").defaultsTo("summary");
+      incrementalSpec = optionHandler.accepts("incremental", "Only replace files whose content changed, keeps hashes in " + IncrementalWriter.MANIFEST_NAME + ".");
 
       options = optionHandler.reparse();
 
@@ -105,12 +111,31 @@ public class CreatureListCommands {
       Path savePath = Paths.get(params.get(0));
       outputDirectory = Paths.get(params.get(1));
 
+      if (!optionHandler.isChanged(savePath)) {
+        // Watching and only profiles or tribes changed
+        return;
+      }
+      incrementalWriter = options.has(incrementalSpec) ? new IncrementalWriter(outputDirectory, optionHandler) : null;
+
       ReadingOptions readingOptions = optionHandler.readingOptions().withObjectFilter(CreatureListCommands::neededClasses).buildComponentTree(true);
 
-      Stopwatch stopwatch = new Stopwatch(optionHandler.useStopwatch());
-      saveFile = new ArkSavegame(savePath, readingOptions);
+      Stopwatch stopwatch = new Stopwatch(optionHandler);
+      SharedSavegame shared = optionHandler.getSharedSavegame(savePath);
+      if (shared != null) {
+        // While watching only creatures and their components need to be kept in memory
+        shared.preferReadingOptions(readingOptions);
+        saveFile = shared.getSavegame();
+        container = shared.getContainer();
+      } else {
+        saveFile = new ArkSavegame(savePath, readingOptions);
+        container = CombinedObjectContainer.of(saveFile);
+      }
+      stopwatch.count("objects", saveFile.getObjects().size());
       stopwatch.stop("Reading");
       writeAnimalLists(filter);
+      if (incrementalWriter != null) {
+        incrementalWriter.writeManifest();
+      }
       stopwatch.stop("Dumping");
 
       stopwatch.print();
@@ -119,20 +144,7 @@ public class CreatureListCommands {
     }
   }
 
-  public static void writeAnimalLists(Predicate<GameObject> filter) {
-    if (!saveFile.getHibernationEntries().isEmpty()) {
-      List<GameObject> combinedObjects = new ArrayList<>(saveFile.getObjects());
-
-      for (HibernationEntry entry: saveFile.getHibernationEntries()) {
-        ObjectCollector collector = new ObjectCollector(entry, 1);
-        combinedObjects.addAll(collector.remap(combinedObjects.size()));
-      }
-
-      container = new GameObjectList(combinedObjects);
-    } else {
-      container = saveFile;
-    }
-
+  public void writeAnimalLists(Predicate<GameObject> filter) {
     Stream<GameObject> objectStream = container.getObjects().parallelStream().filter(CommonFunctions::isCreature);
 
     if (filter != null) {
@@ -144,7 +156,7 @@ public class CreatureListCommands {
     }
 
     if (options.has(cleanFolderSpec)) {
-      try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(outputDirectory, "*.json")) {
+      try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(outputDirectory, "*.{json,ndjson}")) {
         for (Path path : directoryStream) {
           Files.delete(path);
         }
@@ -169,13 +181,24 @@ public class CreatureListCommands {
         writerFunction = CreatureListCommands::writeEmptyWithoutStatistic;
       }
 
-      classNames.keySet().stream().filter(s -> !dinoLists.containsKey(s)).forEach(CreatureListCommands::writeEmpty);
+      if (!optionHandler.useNdjson()) {
+        classNames.keySet().stream().filter(s -> !dinoLists.containsKey(s)).forEach(this::writeEmpty);
+      }
     }
 
-    dinoLists.entrySet().parallelStream().forEach(CreatureListCommands::writeList);
+    if (optionHandler.useNdjson()) {
+      try (NdjsonWriter writer = new NdjsonWriter(outputDirectory.resolve("creatures" + NdjsonWriter.EXTENSION), optionHandler)) {
+        ndjsonWriter = writer;
+        dinoLists.entrySet().parallelStream().forEach(this::writeRecords);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    } else {
+      dinoLists.entrySet().parallelStream().forEach(this::writeList);
+    }
   }
 
-  public static Map<String, String> readClassNames() {
+  public Map<String, String> readClassNames() {
     Path classFile = outputDirectory.resolve("classes.json");
     Map<String, String> classNames = new HashMap<>();
 
@@ -216,11 +239,9 @@ public class CreatureListCommands {
     return classNames;
   }
 
-  public static void writeClassNames(Map<String, String> classNames) {
-    Path classFile = outputDirectory.resolve("classes.json");
-
+  public void writeClassNames(Map<String, String> classNames) {
     try {
-      CommonFunctions.writeJson(classFile, generator -> {
+      writeFile("classes.json", generator -> {
         generator.writeStartArray();
 
         for (String cls: classNames.keySet()) {
@@ -233,65 +254,32 @@ public class CreatureListCommands {
         }
 
         generator.writeEndArray();
-      }, optionHandler);
+      });
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
-  public static void writeList(Map.Entry<String, List<GameObject>> entry) {
-    Path outputFile = outputDirectory.resolve(entry.getKey() + ".json");
-
-    List<? extends GameObject> filteredClasses = entry.getValue();
-    LatLonCalculator latLongCalculator = LatLonCalculator.forSave(saveFile);
+  public void writeList(Map.Entry<String, List<GameObject>> entry) {
+    List<GameObject> filteredClasses = entry.getValue();
+    CustomDataContext context = createContext();
 
     try {
-      CommonFunctions.writeJson(outputFile, generator -> {
+      writeFile(entry.getKey() + ".json", generator -> {
         if (options.has(statisticsSpec)) {
           generator.writeStartObject();
 
-          generator.writeNumberField("count", filteredClasses.size());
-
-          IntSummaryStatistics statistics =
-              filteredClasses.stream().filter(CommonFunctions::isWild).mapToInt(a -> CommonFunctions.getBaseLevel(a, saveFile)).summaryStatistics();
-          if (statistics.getCount() > 0) {
-            generator.writeNumberField("wildMin", statistics.getMin());
-            generator.writeNumberField("wildMax", statistics.getMax());
-            generator.writeNumberField("wildAverage", statistics.getAverage());
-          }
-
-          IntSummaryStatistics tamedBaseStatistics =
-              filteredClasses.stream().filter(CommonFunctions::isTamed).mapToInt(a -> CommonFunctions.getBaseLevel(a, saveFile)).summaryStatistics();
-          if (tamedBaseStatistics.getCount() > 0) {
-            generator.writeNumberField("tamedBaseMin", tamedBaseStatistics.getMin());
-            generator.writeNumberField("tamedBaseMax", tamedBaseStatistics.getMax());
-            generator.writeNumberField("tamedBaseAverage", tamedBaseStatistics.getAverage());
-          }
-
-          IntSummaryStatistics tamedFullStatistics =
-              filteredClasses.stream().filter(CommonFunctions::isTamed).mapToInt(a -> CommonFunctions.getFullLevel(a, saveFile)).summaryStatistics();
-          if (tamedFullStatistics.getCount() > 0) {
-            generator.writeNumberField("tamedFullMin", tamedFullStatistics.getMin());
-            generator.writeNumberField("tamedFullMax", tamedFullStatistics.getMax());
-            generator.writeNumberField("tamedFullAverage", tamedFullStatistics.getAverage());
-          }
+          writeStatistics(generator, filteredClasses);
 
           generator.writeArrayFieldStart("dinos");
         } else {
           generator.writeStartArray();
         }
 
-        CustomDataContext context = new CustomDataContext();
-        context.setLatLonCalculator(latLongCalculator);
-        context.setObjectContainer(container);
-        context.setSavegame(saveFile);
         for (GameObject creatureObject : filteredClasses) {
           Creature creature = new Creature(creatureObject, container);
           generator.writeStartObject();
-          creature.writeAllProperties(generator, context, options.has(writeAllFieldsSpec));
-          if (options.has(inventorySpec)) {
-            creature.writeInventory(generator, context, options.has(writeAllFieldsSpec), "summary".equals(options.valueOf(inventorySpec)));
-          }
+          writeCreature(generator, creature, context);
           generator.writeEndObject();
         }
 
@@ -300,12 +288,76 @@ public class CreatureListCommands {
         if (options.has(statisticsSpec)) {
           generator.writeEndObject();
         }
-      }, optionHandler);
+      });
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Writes one line per creature, preceded by the statistics of this class if requested
+   */
+  public void writeRecords(Map.Entry<String, List<GameObject>> entry) {
+    List<GameObject> filteredClasses = entry.getValue();
+    CustomDataContext context = createContext();
+
+    try {
+      if (options.has(statisticsSpec)) {
+        ndjsonWriter.write("statistics", entry.getKey(), generator -> writeStatistics(generator, filteredClasses));
+      }
+
+      for (GameObject creatureObject : filteredClasses) {
+        Creature creature = new Creature(creatureObject, container);
+        ndjsonWriter.write("creature", creature.dinoId, generator -> writeCreature(generator, creature, context));
+      }
     } catch (Exception e) {
       e.printStackTrace();
     }
   }
 
+  private CustomDataContext createContext() {
+    CustomDataContext context = new CustomDataContext();
+    context.setLatLonCalculator(LatLonCalculator.forSave(saveFile));
+    context.setObjectContainer(container);
+    context.setSavegame(saveFile);
+    return context;
+  }
+
+  private void writeStatistics(JsonGenerator generator, List<GameObject> filteredClasses) throws IOException {
+    generator.writeNumberField("count", filteredClasses.size());
+
+    IntSummaryStatistics statistics =
+        filteredClasses.stream().filter(CommonFunctions::isWild).mapToInt(a -> CommonFunctions.getBaseLevel(a, saveFile)).summaryStatistics();
+    if (statistics.getCount() > 0) {
+      generator.writeNumberField("wildMin", statistics.getMin());
+      generator.writeNumberField("wildMax", statistics.getMax());
+      generator.writeNumberField("wildAverage", statistics.getAverage());
+    }
+
+    IntSummaryStatistics tamedBaseStatistics =
+        filteredClasses.stream().filter(CommonFunctions::isTamed).mapToInt(a -> CommonFunctions.getBaseLevel(a, saveFile)).summaryStatistics();
+    if (tamedBaseStatistics.getCount() > 0) {
+      generator.writeNumberField("tamedBaseMin", tamedBaseStatistics.getMin());
+      generator.writeNumberField("tamedBaseMax", tamedBaseStatistics.getMax());
+      generator.writeNumberField("tamedBaseAverage", tamedBaseStatistics.getAverage());
+    }
+
+    IntSummaryStatistics tamedFullStatistics =
+        filteredClasses.stream().filter(CommonFunctions::isTamed).mapToInt(a -> CommonFunctions.getFullLevel(a, saveFile)).summaryStatistics();
+    if (tamedFullStatistics.getCount() > 0) {
+      generator.writeNumberField("tamedFullMin", tamedFullStatistics.getMin());
+      generator.writeNumberField("tamedFullMax", tamedFullStatistics.getMax());
+      generator.writeNumberField("tamedFullAverage", tamedFullStatistics.getAverage());
+    }
+  }
+
+  private void writeCreature(JsonGenerator generator, Creature creature, CustomDataContext context) throws IOException {
+    creature.writeAllProperties(generator, context, options.has(writeAllFieldsSpec));
+    if (options.has(inventorySpec)) {
+      creature.writeInventory(generator, context, options.has(writeAllFieldsSpec), "summary".equals(options.valueOf(inventorySpec)));
+    }
+  }
+
   private static void writeEmptyWithStatistic(JsonGenerator generator) throws IOException {
     generator.writeStartObject();
     generator.writeNumberField("count", 0);
@@ -319,14 +371,20 @@ public class CreatureListCommands {
     generator.writeEndArray();
   }
 
-  private static void writeEmpty(String s) {
-    Path outputFile = outputDirectory.resolve(s + ".json");
-
+  private void writeEmpty(String s) {
     try {
-      CommonFunctions.writeJson(outputFile, writerFunction, optionHandler);
+      writeFile(s + ".json", writerFunction);
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
+  private void writeFile(String fileName, WriteJsonCallback writeJson) throws IOException {
+    if (incrementalWriter != null) {
+      incrementalWriter.write(fileName, writeJson);
+    } else {
+      CommonFunctions.writeJson(outputDirectory.resolve(fileName), writeJson, optionHandler);
+    }
+  }
+
 }
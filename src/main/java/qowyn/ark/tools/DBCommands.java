@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
@@ -77,8 +78,6 @@ public class DBCommands {
         System.out.println();
       }
     }
-    
-    DBDrivers.close();
   }
 
   public static void run(OptionHandler oh){
@@ -105,7 +104,6 @@ public class DBCommands {
     command.configSpec = configSpec;
     command.paramSpec = paramSpec;
     command.run();
-    DBDrivers.close();
   }
 
   private OptionHandler oh;
@@ -185,6 +183,14 @@ public class DBCommands {
       }
     }
 
+    try {
+      driver.checkOptions(oh);
+    } catch (IllegalArgumentException ex) {
+      System.err.println("Error: " + ex.getMessage());
+      System.exit(2);
+      return;
+    }
+
     if (path != null && !driver.canHandlePath()) {
       System.err.println("Error: Driver " + driverName + " cannot handle path " + pathOrUri);
       System.exit(2);
@@ -195,14 +201,25 @@ public class DBCommands {
       return;
     }
     
-    Stopwatch stopwatch = new Stopwatch(oh.useStopwatch());
+    Collection<String> sections = driver.getSections();
+    if (!sections.contains("items")) {
+      // Items are only written in their own section, don't decode their properties
+      oh.setObjectFilter(object -> !object.isItem());
+    }
+
+    Stopwatch stopwatch = new Stopwatch(oh);
     DataCollector collector = new DataCollector(oh);
+    collector.setSections(sections);
 
     try {
       collector.loadSavegame(savePath);
       stopwatch.stop("Collecting data from map-save");
-      collector.loadPlayers(savePath.getParent());
-      collector.loadTribes(savePath.getParent());
+      if (collector.hasSection("players")) {
+        collector.loadPlayers(savePath.getParent());
+      }
+      if (collector.hasSection("tribes")) {
+        collector.loadTribes(savePath.getParent());
+      }
       if (clusterPath != null) {
         collector.loadCluster(clusterPath);
       }
@@ -244,6 +261,9 @@ public class DBCommands {
     }
     driver.close();
 
+    stopwatch.count("creatures", collector.creatureMap.size());
+    stopwatch.count("items", collector.itemMap.size());
+    stopwatch.count("structures", collector.structureMap.size());
     stopwatch.stop("Writing");
     stopwatch.print();
   }
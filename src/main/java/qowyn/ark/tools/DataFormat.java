@@ -0,0 +1,119 @@
+package qowyn.ark.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encodings for everything written by {@link CommonFunctions#writeJson}. All of them share the same
+ * generator and parser API, so the same code writes and reads each of them.
+ * <p>
+ * Smile and CBOR files start with a header, which is how {@link #detect(InputStream)} tells them apart.
+ */
+public enum DataFormat {
+  JSON("json", "application/json", CommonFunctions.OBJECT_MAPPER),
+  SMILE("smile", "application/x-jackson-smile", new ObjectMapper(new SmileFactory())),
+  CBOR("cbor", "application/cbor", new ObjectMapper(new CBORFactory().enable(CBORGenerator.Feature.WRITE_TYPE_HEADER)));
+
+  public static final String DATA_FORMAT_DESCRIBE = Arrays.stream(DataFormat.values()).map(DataFormat::getIdentifier).collect(Collectors.joining("|"));
+
+  private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+  // Self-describe tag 55799
+  private static final byte[] CBOR_HEADER = {(byte) 0xD9, (byte) 0xD9, (byte) 0xF7};
+
+  private final String identifier;
+
+  private final String mediaType;
+
+  private final ObjectMapper mapper;
+
+  private DataFormat(String identifier, String mediaType, ObjectMapper mapper) {
+    this.identifier = identifier;
+    this.mediaType = mediaType;
+    this.mapper = mapper;
+  }
+
+  public String getIdentifier() {
+    return identifier;
+  }
+
+  /**
+   * Content-Type for uploads
+   */
+  public String getMediaType() {
+    return mediaType;
+  }
+
+  /**
+   * File extension including the dot
+   */
+  public String getExtension() {
+    return "." + identifier;
+  }
+
+  public JsonFactory getFactory() {
+    return mapper.getFactory();
+  }
+
+  public ObjectMapper getMapper() {
+    return mapper;
+  }
+
+  /**
+   * Whether the output is text and can be pretty printed
+   */
+  public boolean isText() {
+    return this == JSON;
+  }
+
+  public static DataFormat forIdentifier(String identifier) {
+    for (DataFormat format : values()) {
+      if (format.identifier.equalsIgnoreCase(identifier)) {
+        return format;
+      }
+    }
+
+    throw new IllegalArgumentException("Unknown data format " + identifier + ", expected one of " + DATA_FORMAT_DESCRIBE);
+  }
+
+  /**
+   * Looks at the first bytes of stream, which needs to support mark and reset
+   */
+  public static DataFormat detect(InputStream stream) throws IOException {
+    byte[] header = new byte[3];
+    stream.mark(header.length);
+    int count = 0;
+    while (count < header.length) {
+      int read = stream.read(header, count, header.length - count);
+      if (read < 0) {
+        break;
+      }
+      count += read;
+    }
+    stream.reset();
+
+    if (count == header.length) {
+      if (Arrays.equals(header, SMILE_HEADER)) {
+        return SMILE;
+      } else if (Arrays.equals(header, CBOR_HEADER)) {
+        return CBOR;
+      }
+    }
+
+    return JSON;
+  }
+
+  @Override
+  public String toString() {
+    return identifier;
+  }
+
+}
@@ -2,6 +2,10 @@ package qowyn.ark.tools;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,17 +17,13 @@ public class DataManager {
 
   private static final String DATA_FILE_EXT = ".json";
 
-  private static final Map<String, CreatureData> CREATURE_DATA = new HashMap<>();
+  /**
+   * Currently loaded data, replaced as a whole so commands running concurrently in the same process never see a mix
+   * of two data files
+   */
+  private static volatile LoadedData loaded = new LoadedData(null, null);
 
-  private static final Map<String, CreatureData> CREATURE_DATA_BY_PATH = new HashMap<>();
-
-  private static final Map<String, ItemData> ITEM_DATA = new HashMap<>();
-
-  private static final Map<String, ItemData> ITEM_DATA_BY_BGC = new HashMap<>();
-
-  private static final Map<String, CreatureData> STRUCTURES_DATA = new HashMap<>();
-
-  public static void loadData(String language) {
+  public static synchronized void loadData(String language) {
     try {
       String fileName;
       if (language != null) {
@@ -32,6 +32,24 @@ public class DataManager {
         fileName = DATA_FILE_NAME + DATA_FILE_EXT;
       }
 
+      if (fileName.equals(loaded.fileName)) {
+        return;
+      }
+
+      Path jsonPath = getDataPath(fileName);
+
+      if (jsonPath != null) {
+        try {
+          DataSnapshot snapshot = DataSnapshot.open(jsonPath);
+          if (snapshot != null) {
+            loaded = new LoadedData(fileName, snapshot);
+            return;
+          }
+        } catch (IOException ex) {
+          // Broken snapshot, recreate it from json
+        }
+      }
+
       JsonNode data;
 
       try {
@@ -40,6 +58,8 @@ public class DataManager {
         throw new RuntimeException("Unable to load data file ." + fileName);
       }
 
+      LoadedData result = new LoadedData(fileName, null);
+
       JsonNode creatures = data.get("creatures");
 
       for (JsonNode entry : creatures) {
@@ -50,8 +70,8 @@ public class DataManager {
         String category = entry.path("category").asText();
 
         CreatureData creature = new CreatureData(name, clazz, blueprint, packagePath, category);
-        CREATURE_DATA.put(clazz, creature);
-        CREATURE_DATA_BY_PATH.put(packagePath + "." + clazz, creature);
+        result.creatures.put(clazz, creature);
+        result.creaturesByPath.put(packagePath + "." + clazz, creature);
       }
 
       JsonNode items = data.get("items");
@@ -66,8 +86,8 @@ public class DataManager {
         String blueprintGeneratedClass = "BlueprintGeneratedClass " + packagePath + "." + clazz;
 
         ItemData item = new ItemData(name, blueprint, blueprintGeneratedClass, category);
-        ITEM_DATA.put(clazz, item);
-        ITEM_DATA_BY_BGC.put(blueprintGeneratedClass, item);
+        result.items.put(clazz, item);
+        result.itemsByBGC.put(blueprintGeneratedClass, item);
       }
 
       JsonNode structures = data.get("structures");
@@ -79,7 +99,18 @@ public class DataManager {
         String name = entry.path("name").asText();
         String category = entry.path("category").asText();
 
-        STRUCTURES_DATA.put(clazz, new CreatureData(name, clazz, blueprint, packagePath, category));
+        result.structures.put(clazz, new CreatureData(name, clazz, blueprint, packagePath, category));
+      }
+
+      // Maps are never modified after this point
+      loaded = result;
+
+      if (jsonPath != null) {
+        try {
+          DataSnapshot.write(jsonPath, result.creatures, result.creaturesByPath, result.items, result.itemsByBGC, result.structures);
+        } catch (IOException ex) {
+          // Directory might not be writable, just parse json again next time
+        }
       }
     } catch (IOException e) {
       System.err.println("Warning: Cannot load data.");
@@ -87,44 +118,91 @@ public class DataManager {
     }
   }
 
+  /**
+   * Returns the path of fileName if it is a plain file on the classpath, snapshots can't be stored otherwise
+   */
+  private static Path getDataPath(String fileName) {
+    URL resource = CommonFunctions.class.getResource(fileName);
+    if (resource == null || !"file".equals(resource.getProtocol())) {
+      return null;
+    }
+
+    try {
+      return Paths.get(resource.toURI());
+    } catch (URISyntaxException | IllegalArgumentException ex) {
+      return null;
+    }
+  }
+
   public static boolean hasCreature(String clazz) {
-    return CREATURE_DATA.containsKey(clazz);
+    return getCreature(clazz) != null;
   }
 
   public static CreatureData getCreature(String clazz) {
-    return CREATURE_DATA.get(clazz);
+    LoadedData current = loaded;
+    return current.snapshot != null ? current.snapshot.getCreature(clazz) : current.creatures.get(clazz);
   }
 
   public static boolean hasCreatureByPath(String clazz) {
-    return CREATURE_DATA_BY_PATH.containsKey(clazz);
+    return getCreatureByPath(clazz) != null;
   }
 
   public static CreatureData getCreatureByPath(String clazz) {
-    return CREATURE_DATA_BY_PATH.get(clazz);
+    LoadedData current = loaded;
+    return current.snapshot != null ? current.snapshot.getCreatureByPath(clazz) : current.creaturesByPath.get(clazz);
   }
 
   public static boolean hasStructure(String clazz) {
-    return STRUCTURES_DATA.containsKey(clazz);
+    return getStructure(clazz) != null;
   }
 
   public static CreatureData getStructure(String clazz) {
-    return STRUCTURES_DATA.get(clazz);
+    LoadedData current = loaded;
+    return current.snapshot != null ? current.snapshot.getStructure(clazz) : current.structures.get(clazz);
   }
 
   public static boolean hasItem(String clazz) {
-    return ITEM_DATA.containsKey(clazz);
+    return getItem(clazz) != null;
   }
 
   public static ItemData getItem(String clazz) {
-    return ITEM_DATA.get(clazz);
+    LoadedData current = loaded;
+    return current.snapshot != null ? current.snapshot.getItem(clazz) : current.items.get(clazz);
   }
 
   public static boolean hasItemByBGC(String blueprintGeneratedClass) {
-    return ITEM_DATA_BY_BGC.containsKey(blueprintGeneratedClass);
+    return getItemByBGC(blueprintGeneratedClass) != null;
   }
 
   public static ItemData getItemByBGC(String blueprintGeneratedClass) {
-    return ITEM_DATA_BY_BGC.get(blueprintGeneratedClass);
+    LoadedData current = loaded;
+    return current.snapshot != null ? current.snapshot.getItemByBGC(blueprintGeneratedClass) : current.itemsByBGC.get(blueprintGeneratedClass);
+  }
+
+  /**
+   * One data file, served either from its snapshot or from the maps
+   */
+  private static class LoadedData {
+
+    private final String fileName;
+
+    private final DataSnapshot snapshot;
+
+    private final Map<String, CreatureData> creatures = new HashMap<>();
+
+    private final Map<String, CreatureData> creaturesByPath = new HashMap<>();
+
+    private final Map<String, ItemData> items = new HashMap<>();
+
+    private final Map<String, ItemData> itemsByBGC = new HashMap<>();
+
+    private final Map<String, CreatureData> structures = new HashMap<>();
+
+    public LoadedData(String fileName, DataSnapshot snapshot) {
+      this.fileName = fileName;
+      this.snapshot = snapshot;
+    }
+
   }
 
 }
@@ -0,0 +1,485 @@
+package qowyn.ark.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the lookup tables built from ark_data.json, stored next to it and memory-mapped on later runs.
+ * <p>
+ * Layout: header, records of strings, then one open addressing hash table per lookup. A table slot consists of
+ * the hash of the key, the offset of the key and the offset of the record. The snapshot is used as long as size
+ * and modification time of the json file match, or failing that, its CRC32.
+ * <p>
+ * The header also stamps the length of the snapshot and a CRC32 over that length and the table directory.
+ * Snapshots are only ever replaced by an atomic move, so a matching stamp is trusted without walking the tables.
+ */
+public class DataSnapshot {
+
+  private static final int MAGIC = 0x41524B44;
+
+  private static final int VERSION = 2;
+
+  private static final String EXTENSION = ".snapshot";
+
+  private static final int CREATURES = 0;
+
+  private static final int CREATURES_BY_PATH = 1;
+
+  private static final int ITEMS = 2;
+
+  private static final int ITEMS_BY_BGC = 3;
+
+  private static final int STRUCTURES = 4;
+
+  private static final int TABLE_COUNT = 5;
+
+  private static final int MODIFIED_OFFSET = 16;
+
+  private static final int LENGTH_OFFSET = 28;
+
+  private static final int TABLES_OFFSET = 32;
+
+  private static final int CHECKSUM_OFFSET = TABLES_OFFSET + TABLE_COUNT * 8;
+
+  private static final int HEADER_SIZE = CHECKSUM_OFFSET + 4;
+
+  private static final int SLOT_SIZE = 12;
+
+  /**
+   * Marks cached misses
+   */
+  private static final Object MISSING = new Object();
+
+  private final ByteBuffer buffer;
+
+  private final int[] tableOffsets = new int[TABLE_COUNT];
+
+  private final int[] tableCapacities = new int[TABLE_COUNT];
+
+  @SuppressWarnings("unchecked")
+  private final Map<String, Object>[] caches = new Map[TABLE_COUNT];
+
+  private DataSnapshot(ByteBuffer buffer) {
+    this.buffer = buffer;
+    for (int table = 0; table < TABLE_COUNT; table++) {
+      tableOffsets[table] = buffer.getInt(TABLES_OFFSET + table * 8);
+      tableCapacities[table] = buffer.getInt(TABLES_OFFSET + table * 8 + 4);
+      caches[table] = new ConcurrentHashMap<>();
+    }
+  }
+
+  public static Path getSnapshotPath(Path jsonPath) {
+    return jsonPath.resolveSibling(jsonPath.getFileName().toString() + EXTENSION);
+  }
+
+  /**
+   * Maps the snapshot belonging to jsonPath
+   *
+   * @return the snapshot or null if there is none or it is outdated
+   */
+  public static DataSnapshot open(Path jsonPath) throws IOException {
+    Path snapshotPath = getSnapshotPath(jsonPath);
+    if (!Files.isRegularFile(snapshotPath) || !Files.isRegularFile(jsonPath)) {
+      return null;
+    }
+
+    long sourceSize = Files.size(jsonPath);
+    long sourceModified = Files.getLastModifiedTime(jsonPath).toMillis();
+
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+        return null;
+      }
+
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != sourceSize) {
+      return null;
+    }
+
+    DataSnapshot snapshot = new DataSnapshot(buffer);
+    if (!snapshot.hasValidStamp() && !snapshot.isValid()) {
+      // Truncated or corrupt, gets replaced after reading the json file
+      return null;
+    }
+
+    if (buffer.getLong(MODIFIED_OFFSET) != sourceModified) {
+      // Touched but possibly unchanged, for example by a new download of the same data
+      if (buffer.getInt(24) != crc(jsonPath)) {
+        return null;
+      }
+
+      try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+        ByteBuffer modified = ByteBuffer.allocate(8).putLong(0, sourceModified);
+        channel.write(modified, MODIFIED_OFFSET);
+      } catch (IOException ex) {
+        // Not writable, check the hash again next time
+      }
+    }
+
+    return snapshot;
+  }
+
+  /**
+   * Checks length and directory checksum written by {@link #write}, and that the tables lie within the file
+   */
+  private boolean hasValidStamp() {
+    return buffer.getInt(LENGTH_OFFSET) == buffer.limit() && buffer.getInt(CHECKSUM_OFFSET) == stamp(buffer) && isValidDirectory();
+  }
+
+  private boolean isValidDirectory() {
+    for (int table = 0; table < TABLE_COUNT; table++) {
+      int offset = tableOffsets[table];
+      int capacity = tableCapacities[table];
+      if (capacity <= 0 || (capacity & (capacity - 1)) != 0 || offset < HEADER_SIZE || offset + (long) capacity * SLOT_SIZE > buffer.limit()) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Checks that all tables, keys and records lie within the file, so lookups never read outside of it or loop forever.
+   * Walks every slot, only used if the stamp does not match.
+   */
+  private boolean isValid() {
+    if (!isValidDirectory()) {
+      return false;
+    }
+
+    for (int table = 0; table < TABLE_COUNT; table++) {
+      int offset = tableOffsets[table];
+      int capacity = tableCapacities[table];
+
+      int recordCount = table == ITEMS || table == ITEMS_BY_BGC ? 4 : 5;
+      boolean hasEmptySlot = false;
+      for (int slot = 0; slot < capacity; slot++) {
+        int position = offset + slot * SLOT_SIZE;
+        int keyOffset = buffer.getInt(position + 4);
+        if (keyOffset == 0) {
+          hasEmptySlot = true;
+          continue;
+        }
+
+        if (!isValidStrings(keyOffset, 1, offset) || !isValidStrings(buffer.getInt(position + 8), recordCount, offset)) {
+          return false;
+        }
+      }
+
+      if (!hasEmptySlot) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private boolean isValidStrings(int offset, int count, int end) {
+    long position = offset;
+    if (position < HEADER_SIZE) {
+      return false;
+    }
+
+    for (int index = 0; index < count; index++) {
+      if (position + 4 > end) {
+        return false;
+      }
+
+      int length = buffer.getInt((int) position);
+      position += 4;
+      if (length < -1) {
+        return false;
+      } else if (length > 0) {
+        position += length;
+      }
+    }
+
+    return position <= end;
+  }
+
+  /**
+   * Writes a snapshot for jsonPath, replacing any existing one
+   */
+  public static void write(Path jsonPath, Map<String, CreatureData> creatures, Map<String, CreatureData> creaturesByPath, Map<String, ItemData> items,
+      Map<String, ItemData> itemsByBGC, Map<String, CreatureData> structures) throws IOException {
+    long sourceSize = Files.size(jsonPath);
+    long sourceModified = Files.getLastModifiedTime(jsonPath).toMillis();
+    int sourceCrc = crc(jsonPath);
+
+    SnapshotOutput out = new SnapshotOutput();
+    out.writeHeaderPlaceholder();
+
+    Map<Object, Integer> records = new IdentityHashMap<>();
+    Map<?, ?>[] tables = new Map<?, ?>[] {creatures, creaturesByPath, items, itemsByBGC, structures};
+
+    for (Map<?, ?> table : tables) {
+      for (Object value : table.values()) {
+        if (!records.containsKey(value)) {
+          records.put(value, out.size());
+          if (value instanceof CreatureData) {
+            CreatureData creature = (CreatureData) value;
+            out.writeString(creature.getName());
+            out.writeString(creature.getClassName());
+            out.writeString(creature.getBlueprint());
+            out.writeString(creature.getPackagePath());
+            out.writeString(creature.getCategory());
+          } else {
+            ItemData item = (ItemData) value;
+            out.writeString(item.getName());
+            out.writeString(item.getBlueprint());
+            out.writeString(item.getBlueprintGeneratedClass());
+            out.writeString(item.getCategory());
+          }
+        }
+      }
+    }
+
+    int[] tableOffsets = new int[TABLE_COUNT];
+    int[] tableCapacities = new int[TABLE_COUNT];
+
+    for (int tableIndex = 0; tableIndex < TABLE_COUNT; tableIndex++) {
+      Map<?, ?> table = tables[tableIndex];
+      int capacity = 16;
+      // Load factor at or below 0.5
+      while (capacity < table.size() * 2) {
+        capacity <<= 1;
+      }
+
+      int[] slots = new int[capacity * 3];
+      for (Map.Entry<?, ?> entry : table.entrySet()) {
+        String key = (String) entry.getKey();
+        int hash = hash(key);
+        int slot = hash & (capacity - 1);
+        while (slots[slot * 3 + 1] != 0) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+
+        slots[slot * 3] = hash;
+        slots[slot * 3 + 1] = out.size();
+        slots[slot * 3 + 2] = records.get(entry.getValue());
+        out.writeString(key);
+      }
+
+      tableOffsets[tableIndex] = out.size();
+      tableCapacities[tableIndex] = capacity;
+      for (int value : slots) {
+        out.writeInt(value);
+      }
+    }
+
+    out.flush();
+    ByteBuffer result = ByteBuffer.wrap(out.toByteArray());
+    result.putInt(0, MAGIC);
+    result.putInt(4, VERSION);
+    result.putLong(8, sourceSize);
+    result.putLong(MODIFIED_OFFSET, sourceModified);
+    result.putInt(24, sourceCrc);
+    result.putInt(LENGTH_OFFSET, result.capacity());
+    for (int table = 0; table < TABLE_COUNT; table++) {
+      result.putInt(TABLES_OFFSET + table * 8, tableOffsets[table]);
+      result.putInt(TABLES_OFFSET + table * 8 + 4, tableCapacities[table]);
+    }
+    result.putInt(CHECKSUM_OFFSET, stamp(result));
+
+    Path snapshotPath = getSnapshotPath(jsonPath);
+    Path tempPath = Files.createTempFile(snapshotPath.getParent(), snapshotPath.getFileName().toString(), ".tmp");
+    try {
+      Files.write(tempPath, result.array());
+      try {
+        Files.move(tempPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+  }
+
+  private static int crc(Path path) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] chunk = new byte[65536];
+    try (InputStream stream = Files.newInputStream(path)) {
+      int read;
+      while ((read = stream.read(chunk)) > -1) {
+        crc.update(chunk, 0, read);
+      }
+    }
+
+    return (int) crc.getValue();
+  }
+
+  /**
+   * CRC32 of length and table directory
+   */
+  private static int stamp(ByteBuffer buffer) {
+    ByteBuffer directory = buffer.duplicate();
+    directory.limit(CHECKSUM_OFFSET).position(LENGTH_OFFSET);
+
+    CRC32 crc = new CRC32();
+    crc.update(directory);
+    return (int) crc.getValue();
+  }
+
+  private static int hash(String key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  public CreatureData getCreature(String clazz) {
+    return lookup(CREATURES, clazz, this::readCreature);
+  }
+
+  public CreatureData getCreatureByPath(String path) {
+    return lookup(CREATURES_BY_PATH, path, this::readCreature);
+  }
+
+  public ItemData getItem(String clazz) {
+    return lookup(ITEMS, clazz, this::readItem);
+  }
+
+  public ItemData getItemByBGC(String blueprintGeneratedClass) {
+    return lookup(ITEMS_BY_BGC, blueprintGeneratedClass, this::readItem);
+  }
+
+  public CreatureData getStructure(String clazz) {
+    return lookup(STRUCTURES, clazz, this::readCreature);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T lookup(int table, String key, Function<Integer, T> reader) {
+    if (key == null) {
+      return null;
+    }
+
+    Object cached = caches[table].get(key);
+    if (cached == null) {
+      int recordOffset = find(table, key);
+      cached = recordOffset != 0 ? reader.apply(recordOffset) : MISSING;
+      Object previous = caches[table].putIfAbsent(key, cached);
+      if (previous != null) {
+        cached = previous;
+      }
+    }
+
+    return cached != MISSING ? (T) cached : null;
+  }
+
+  private int find(int table, String key) {
+    int capacity = tableCapacities[table];
+    int hash = hash(key);
+    byte[] keyBytes = null;
+
+    int slot = hash & (capacity - 1);
+    for (int probe = 0; probe < capacity; probe++) {
+      int position = tableOffsets[table] + slot * SLOT_SIZE;
+      int keyOffset = buffer.getInt(position + 4);
+      if (keyOffset == 0) {
+        return 0;
+      }
+
+      if (buffer.getInt(position) == hash) {
+        if (keyBytes == null) {
+          keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        }
+        if (matches(keyOffset, keyBytes)) {
+          return buffer.getInt(position + 8);
+        }
+      }
+
+      slot = (slot + 1) & (capacity - 1);
+    }
+
+    return 0;
+  }
+
+  private boolean matches(int offset, byte[] keyBytes) {
+    if (buffer.getInt(offset) != keyBytes.length) {
+      return false;
+    }
+
+    for (int i = 0; i < keyBytes.length; i++) {
+      if (buffer.get(offset + 4 + i) != keyBytes[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private CreatureData readCreature(int offset) {
+    String[] values = readStrings(offset, 5);
+    return new CreatureData(values[0], values[1], values[2], values[3], values[4]);
+  }
+
+  private ItemData readItem(int offset) {
+    String[] values = readStrings(offset, 4);
+    return new ItemData(values[0], values[1], values[2], values[3]);
+  }
+
+  private String[] readStrings(int offset, int count) {
+    String[] values = new String[count];
+    for (int index = 0; index < count; index++) {
+      int length = buffer.getInt(offset);
+      offset += 4;
+      if (length < 0) {
+        continue;
+      }
+
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(offset + i);
+      }
+      values[index] = new String(bytes, StandardCharsets.UTF_8);
+      offset += length;
+    }
+
+    return values;
+  }
+
+  private static class SnapshotOutput extends DataOutputStream {
+
+    public SnapshotOutput() {
+      super(new ByteArrayOutputStream());
+    }
+
+    public void writeHeaderPlaceholder() throws IOException {
+      write(new byte[HEADER_SIZE]);
+    }
+
+    public void writeString(String value) throws IOException {
+      if (value == null) {
+        writeInt(-1);
+        return;
+      }
+
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeInt(bytes.length);
+      write(bytes);
+    }
+
+    public byte[] toByteArray() {
+      return ((ByteArrayOutputStream) out).toByteArray();
+    }
+
+  }
+
+}
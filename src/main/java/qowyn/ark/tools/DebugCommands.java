@@ -1,9 +1,18 @@
 package qowyn.ark.tools;
 
+import static qowyn.ark.tools.CommonFunctions.isCreature;
+import static qowyn.ark.tools.CommonFunctions.isDroppedItem;
+import static qowyn.ark.tools.CommonFunctions.isPlayer;
+import static qowyn.ark.tools.CommonFunctions.isWeapon;
 import static qowyn.ark.tools.CommonFunctions.iterable;
 import static qowyn.ark.tools.CommonFunctions.writeJson;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.DirectoryStream;
+import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -11,19 +20,35 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import qowyn.ark.ArkArchive;
+import qowyn.ark.ArkProfile;
 import qowyn.ark.ArkSavegame;
 import qowyn.ark.GameObject;
+import qowyn.ark.GameObjectContainer;
 import qowyn.ark.HibernationEntry;
 import qowyn.ark.NameSizeCalculator;
+import qowyn.ark.PropertyContainer;
 import qowyn.ark.ReadingOptions;
+import qowyn.ark.structs.StructPropertyList;
+import qowyn.ark.tools.data.Creature;
+import qowyn.ark.tools.data.DroppedItem;
+import qowyn.ark.tools.data.Item;
+import qowyn.ark.tools.data.LegacyReaders;
+import qowyn.ark.tools.data.LegacyReaders.Reader;
+import qowyn.ark.tools.data.Player;
+import qowyn.ark.tools.data.PropertyExtractor;
+import qowyn.ark.tools.data.Structure;
 import qowyn.ark.types.ArkName;
 
 public class DebugCommands {
@@ -51,7 +76,7 @@ public class DebugCommands {
     try {
       Path savePath = Paths.get(params.get(0));
 
-      Stopwatch stopwatch = new Stopwatch(oh.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(oh);
       boolean withoutDupes = options.has(withoutDupesSpec);
 
       // Don't load any properties, we don't need them
@@ -59,48 +84,44 @@ public class DebugCommands {
 
       stopwatch.stop("Loading");
 
-      List<GameObject> objects;
+      GameObjectContainer container = CombinedObjectContainer.of(savegame);
+      List<GameObject> objects = container.getObjects();
       Map<Integer, Map<List<ArkName>, GameObject>> objectMap;
 
-      if (!savegame.getHibernationEntries().isEmpty()) {
-        objects = new ArrayList<>(savegame.getObjects());
-        if (withoutDupes) {
-          objectMap = new HashMap<>();
-          savegame.getObjectMap().forEach((key, map) -> objectMap.put(key, new HashMap<>(map)));
-        } else {
-          objectMap = null;
-        }
+      if (!withoutDupes) {
+        objectMap = null;
+      } else if (container != savegame) {
+        objectMap = new HashMap<>();
+        savegame.getObjectMap().forEach((key, map) -> objectMap.put(key, new HashMap<>(map)));
 
-        for (HibernationEntry entry: savegame.getHibernationEntries()) {
-          ObjectCollector collector = new ObjectCollector(entry, 1);
-          objects.addAll(collector.remap(objects.size()));
-          if (withoutDupes) {
-            for (GameObject object: collector) {
-              Integer key = object.isFromDataFile() ? object.getDataFileIndex() : null;
-              objectMap.computeIfAbsent(key, k -> new HashMap<>()).putIfAbsent(object.getNames(), object);
-            }
-          }
+        // Hibernated objects follow the objects of the savegame itself
+        for (GameObject object: objects.subList(savegame.getObjects().size(), objects.size())) {
+          Integer key = object.isFromDataFile() ? object.getDataFileIndex() : null;
+          objectMap.computeIfAbsent(key, k -> new HashMap<>()).putIfAbsent(object.getNames(), object);
         }
       } else {
-        objects = savegame.getObjects();
         objectMap = savegame.getObjectMap();
       }
 
+      Stream<GameObject> objectStream = objects.parallelStream();
+
       if (withoutDupes) {
-        objects.removeIf(object -> {
+        objectStream = objectStream.filter(object -> {
           Integer key = object.isFromDataFile() ? object.getDataFileIndex() : null;
-          return objectMap.get(key).get(object.getNames()) != object;
+          return objectMap.get(key).get(object.getNames()) == object;
         });
       }
 
-      ConcurrentMap<String, List<GameObject>> map = objects.parallelStream().collect(Collectors.groupingByConcurrent(GameObject::getClassString));
+      ConcurrentMap<String, List<GameObject>> map = objectStream.collect(Collectors.groupingByConcurrent(GameObject::getClassString));
+
+      int count = map.values().stream().mapToInt(List::size).sum();
 
       stopwatch.stop("Grouping");
 
       WriteJsonCallback writer = generator -> {
         generator.writeStartObject();
 
-        generator.writeNumberField("_count", objects.size());
+        generator.writeNumberField("_count", count);
 
         for (Map.Entry<String, List<GameObject>> entry: iterable(map.entrySet().stream().sorted(SORT_BY_SIZE))) {
           String name = entry.getKey();
@@ -152,7 +173,7 @@ public class DebugCommands {
       Path savePath = Paths.get(params.get(0));
       String className = params.get(1);
 
-      Stopwatch stopwatch = new Stopwatch(oh.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(oh);
 
       Predicate<GameObject> filter = object -> object.getClassString().equals(className);
 
@@ -205,7 +226,7 @@ public class DebugCommands {
     try {
       Path savePath = Paths.get(params.get(0));
 
-      Stopwatch stopwatch = new Stopwatch(oh.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(oh);
 
       ArkSavegame savegame = new ArkSavegame(savePath, oh.readingOptions());
 
@@ -259,6 +280,184 @@ public class DebugCommands {
     }
   }
 
+  public static void extractors(OptionHandler oh) {
+    OptionSpec<Integer> roundsSpec = oh.accepts("rounds", "Number of timed rounds per extraction mode.").withRequiredArg().ofType(Integer.class).defaultsTo(5);
+
+    OptionSet options = oh.reparse();
+
+    List<String> params = oh.getParams(options);
+    if (params.size() != 1 || oh.wantsHelp()) {
+      System.out.println("This command is primarily meant for debugging.");
+      oh.printCommandHelp();
+      System.exit(1);
+      return;
+    }
+
+    try {
+      Path savePath = Paths.get(params.get(0));
+      int rounds = Math.max(1, options.valueOf(roundsSpec));
+
+      DataManager.loadData(oh.lang());
+
+      ArkSavegame savegame = new ArkSavegame(savePath, oh.readingOptions());
+
+      List<GameObject> items = new ArrayList<>();
+      List<GameObject> creatures = new ArrayList<>();
+      List<GameObject> creatureStatusOwners = new ArrayList<>();
+      List<GameObject> creatureStatuses = new ArrayList<>();
+      List<GameObject> structures = new ArrayList<>();
+      List<GameObject> droppedItems = new ArrayList<>();
+
+      for (GameObject object: savegame) {
+        if (object.isItem()) {
+          items.add(object);
+        } else if (isCreature(object)) {
+          creatures.add(object);
+          GameObject status = new Creature(object, savegame).status;
+          if (status != null && status.getClassString().startsWith("DinoCharacterStatusComponent_")) {
+            creatureStatusOwners.add(object);
+            creatureStatuses.add(status);
+          }
+        } else if (object.getLocation() != null && !isPlayer(object) && !isDroppedItem(object) && !isWeapon(object)) {
+          structures.add(object);
+        } else if (isDroppedItem(object)) {
+          droppedItems.add(object);
+        }
+      }
+
+      benchmarkExtractor("Items", Item.extractor(), LegacyReaders::item, items, Item::new, null, rounds);
+      benchmarkExtractor("Creatures", Creature.extractor(), LegacyReaders::creature, creatures, Creature::new, savegame, rounds);
+      benchmarkExtractor("Creature Status", Creature.statusExtractor(), LegacyReaders::creatureStatus, creatureStatuses, Creature::new, savegame, rounds);
+      benchmarkExtractor("Structures", Structure.extractor(), LegacyReaders::structure, structures, Structure::new, savegame, rounds);
+      benchmarkExtractor("Dropped Items", DroppedItem.extractor(), LegacyReaders::droppedItem, droppedItems, DroppedItem::new, savegame, rounds);
+
+      // Players are read from their profiles only, their status component would need the PlayerIndex of the map
+      Path saveDir = savePath.toAbsolutePath().getParent();
+      List<PropertyContainer> myDataList = new ArrayList<>();
+      List<PropertyContainer> configList = new ArrayList<>();
+      List<PropertyContainer> statsList = new ArrayList<>();
+
+      Filter<Path> profileFilter = path -> path.getFileName().toString().endsWith(".arkprofile");
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(saveDir, profileFilter)) {
+        for (Path path: stream) {
+          ArkProfile profile = new ArkProfile(path, oh.readingOptions());
+          StructPropertyList myData = profile.getPropertyValue("MyData", StructPropertyList.class);
+          if (myData == null) {
+            continue;
+          }
+
+          myDataList.add(myData);
+          configList.add(myData.getPropertyValue("MyPlayerCharacterConfig", PropertyContainer.class));
+          statsList.add(myData.getPropertyValue("MyPersistentCharacterStats", PropertyContainer.class));
+        }
+      }
+
+      benchmarkExtractor("Player Data", Player.myDataExtractor(), LegacyReaders::playerData, myDataList, Player::new, null, rounds);
+      benchmarkExtractor("Player Config", Player.configExtractor(), LegacyReaders::playerConfig, configList, Player::new, null, rounds);
+      benchmarkExtractor("Player Stats", Player.statsExtractor(), LegacyReaders::playerStats, statsList, Player::new, null, rounds);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static <T, C> void benchmarkExtractor(String label, PropertyExtractor<T, C> extractor, Reader<T, C> legacyReader, List<? extends PropertyContainer> sources, Supplier<T> factory, C context, int rounds) {
+    long[] best = new long[] {Long.MAX_VALUE, Long.MAX_VALUE};
+
+    // Alternate between both modes to spread JIT warmup and GC evenly, only reading into fresh targets gets timed
+    for (int round = 0; round <= rounds; round++) {
+      for (int mode = 0; mode < 2; mode++) {
+        List<T> targets = new ArrayList<>(sources.size());
+        for (int index = 0; index < sources.size(); index++) {
+          targets.add(factory.get());
+        }
+
+        long start = System.nanoTime();
+        for (int index = 0; index < sources.size(); index++) {
+          if (mode == 0) {
+            legacyReader.read(sources.get(index), targets.get(index), context);
+          } else {
+            extractor.extract(sources.get(index), targets.get(index), context);
+          }
+        }
+        long time = System.nanoTime() - start;
+        // First round is warmup
+        if (round > 0) {
+          best[mode] = Math.min(best[mode], time);
+        }
+      }
+    }
+
+    int mismatches = 0;
+    Set<String> mismatchedFields = new TreeSet<>();
+    for (int index = 0; index < sources.size(); index++) {
+      T legacyTarget = factory.get();
+      T extractedTarget = factory.get();
+      legacyReader.read(sources.get(index), legacyTarget, context);
+      extractor.extract(sources.get(index), extractedTarget, context);
+
+      boolean mismatch = false;
+      for (Field field: legacyTarget.getClass().getFields()) {
+        if (Modifier.isStatic(field.getModifiers())) {
+          continue;
+        }
+        try {
+          if (!fieldEquals(field.get(legacyTarget), field.get(extractedTarget))) {
+            mismatchedFields.add(field.getName());
+            mismatch = true;
+          }
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      }
+
+      if (mismatch) {
+        mismatches++;
+      }
+    }
+
+    System.out.printf("%s: %d objects, legacy %.3f ms, extractor %.3f ms, %d mismatches%n", label, sources.size(), best[0] / 1e6, best[1] / 1e6, mismatches);
+    if (!mismatchedFields.isEmpty()) {
+      System.out.println("  Mismatched fields: " + String.join(", ", mismatchedFields));
+    }
+  }
+
+  /**
+   * Compares lists element by element and objects of the data package by their public fields, everything else with Objects.deepEquals
+   */
+  private static boolean fieldEquals(Object a, Object b) throws IllegalAccessException {
+    if (a == b) {
+      return true;
+    }
+    if (a == null || b == null || a.getClass() != b.getClass()) {
+      return false;
+    }
+
+    if (a instanceof List) {
+      List<?> listA = (List<?>) a;
+      List<?> listB = (List<?>) b;
+      if (listA.size() != listB.size()) {
+        return false;
+      }
+      for (int index = 0; index < listA.size(); index++) {
+        if (!fieldEquals(listA.get(index), listB.get(index))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    if (a.getClass().getPackage() == Creature.class.getPackage()) {
+      for (Field field: a.getClass().getFields()) {
+        if (!Modifier.isStatic(field.getModifiers()) && !fieldEquals(field.get(a), field.get(b))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    return Objects.deepEquals(a, b);
+  }
+
   private static class SizeObjectPair {
     private final static NameSizeCalculator ANCIENT_SIZER = ArkArchive.getNameSizer(false);
     private final static NameSizeCalculator MODERN_SIZER = ArkArchive.getNameSizer(true);
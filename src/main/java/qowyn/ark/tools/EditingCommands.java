@@ -74,7 +74,7 @@ public class EditingCommands {
     }
 
     try {
-      Stopwatch stopwatch = new Stopwatch(oh.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(oh);
 
       ArkSavegame savegame = new ArkSavegame(fileToRead, oh.readingOptions());
 
@@ -140,7 +140,7 @@ public class EditingCommands {
     }
 
     try {
-      Stopwatch stopwatch = new Stopwatch(oh.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(oh);
 
       ArkSavegame savegame = new ArkSavegame(fileToRead, oh.readingOptions());
 
@@ -247,7 +247,7 @@ public class EditingCommands {
     }
 
     try {
-      Stopwatch stopwatch = new Stopwatch(oh.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(oh);
 
       FileFormat fileFormat = options.has(fileFormatSpec) ? FileFormat.valueOf(options.valueOf(fileFormatSpec).toUpperCase()) : FileFormat.fromExtension(fileToRead);
 
@@ -798,7 +798,7 @@ public class EditingCommands {
         ObjectReference newItemReference = new ObjectReference();
         newItemReference.setLength(8);
         newItemReference.setObjectType(ObjectReference.TYPE_ID);
-        newItemReference.setObjectId(collector.add(newItem.toGameObject(collector.getMappedObjects().values(), inventory.getId())));
+        newItemReference.setObjectId(collector.add(newItem.toGameObject(collector.getAllocationRegistry(), inventory.getId())));
         newInventoryItems.add(newItemReference);
       }
 
@@ -836,7 +836,7 @@ public class EditingCommands {
         ObjectReference newItemReference = new ObjectReference();
         newItemReference.setLength(8);
         newItemReference.setObjectType(ObjectReference.TYPE_ID);
-        newItemReference.setObjectId(collector.add(newItem.toGameObject(collector.getMappedObjects().values(), inventory.getId())));
+        newItemReference.setObjectId(collector.add(newItem.toGameObject(collector.getAllocationRegistry(), inventory.getId())));
         inventoryItems.add(defaultItemCount, newItemReference);
         defaultItemCount++;
       }
@@ -872,7 +872,7 @@ public class EditingCommands {
         ObjectReference newItemReference = new ObjectReference();
         newItemReference.setLength(8);
         newItemReference.setObjectType(ObjectReference.TYPE_ID);
-        newItemReference.setObjectId(collector.add(newItem.toGameObject(collector.getMappedObjects().values(), inventory.getId())));
+        newItemReference.setObjectId(collector.add(newItem.toGameObject(collector.getAllocationRegistry(), inventory.getId())));
         inventoryItems.add(newItemReference);
       }
     }
@@ -889,7 +889,7 @@ public class EditingCommands {
         ObjectReference newItemReference = new ObjectReference();
         newItemReference.setLength(8);
         newItemReference.setObjectType(ObjectReference.TYPE_ID);
-        newItemReference.setObjectId(collector.add(newItem.toGameObject(collector.getMappedObjects().values(), inventory.getId())));
+        newItemReference.setObjectId(collector.add(newItem.toGameObject(collector.getAllocationRegistry(), inventory.getId())));
         inventoryItems.add(newItemReference);
       }
     }
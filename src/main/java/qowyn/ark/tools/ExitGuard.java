@@ -0,0 +1,90 @@
+package qowyn.ark.tools;
+
+import java.security.Permission;
+
+/**
+ * Turns calls to System.exit into {@link ExitException}s while a command runs inside a long running process.
+ * <p>
+ * Only threads which called {@link #enable()}, and threads started by them, are affected.
+ */
+public final class ExitGuard extends SecurityManager {
+
+  private static final InheritableThreadLocal<Boolean> GUARDED = new InheritableThreadLocal<>();
+
+  private static boolean installed;
+
+  private ExitGuard() {}
+
+  /**
+   * Installs the guard, long running commands call this once on startup
+   *
+   * @throws UnsupportedOperationException if the JVM doesn't allow a SecurityManager, as Java 18 and later do by default
+   * @throws SecurityException if another SecurityManager forbids replacing it
+   */
+  public static synchronized void install() {
+    if (!installed) {
+      System.setSecurityManager(new ExitGuard());
+      installed = true;
+    }
+  }
+
+  /**
+   * Installs the guard if necessary, then guards the current thread
+   */
+  public static void enable() {
+    install();
+    GUARDED.set(Boolean.TRUE);
+  }
+
+  /**
+   * Installs the guard or prints why that is impossible and exits
+   */
+  public static void installOrExit(String command) {
+    try {
+      install();
+    } catch (UnsupportedOperationException | SecurityException ex) {
+      System.err.println("Error: " + command + " needs to intercept System.exit, which this JVM doesn't allow: " + ex.getMessage());
+      System.err.println("On Java 18 and later start it with -Djava.security.manager=allow.");
+      System.exit(2);
+    }
+  }
+
+  public static void disable() {
+    GUARDED.remove();
+  }
+
+  @Override
+  public void checkExit(int status) {
+    if (GUARDED.get() != null) {
+      throw new ExitException(status);
+    }
+  }
+
+  @Override
+  public void checkPermission(Permission perm) {
+    // Everything else is allowed
+  }
+
+  @Override
+  public void checkPermission(Permission perm, Object context) {
+    // Everything else is allowed
+  }
+
+  public static class ExitException extends SecurityException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public ExitException(int status) {
+      super("Command exited with status " + status);
+      this.status = status;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+  }
+
+}
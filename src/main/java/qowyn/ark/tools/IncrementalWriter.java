@@ -0,0 +1,180 @@
+package qowyn.ark.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Writes json files into a directory, but only replaces files whose content changed since the last run.
+ * <p>
+ * Hashes of all files written are kept in a manifest next to them, always plain uncompressed json regardless of
+ * the output format. Changed files are written to a temporary
+ * file first and renamed, so readers never see partially written files.
+ */
+public class IncrementalWriter {
+
+  public static final String MANIFEST_NAME = ".incremental.json";
+
+  private final Path directory;
+
+  private final OptionHandler optionHandler;
+
+  private final Map<String, String> hashes = new ConcurrentHashMap<>();
+
+  private final AtomicInteger written = new AtomicInteger();
+
+  private final AtomicInteger unchanged = new AtomicInteger();
+
+  public IncrementalWriter(Path directory, OptionHandler optionHandler) {
+    this.directory = directory;
+    this.optionHandler = optionHandler;
+    readManifest();
+  }
+
+  /**
+   * Writes fileName unless the output of writeJson matches the current content
+   */
+  public void write(String fileName, WriteJsonCallback writeJson) throws IOException {
+    write(fileName, writeJson, optionHandler.dataFormat());
+  }
+
+  /**
+   * Writes fileName in format unless the output of writeJson matches the current content
+   */
+  public void write(String fileName, WriteJsonCallback writeJson, DataFormat format) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    CommonFunctions.writeJson(buffer, writeJson, format, optionHandler);
+    byte[] content = buffer.toByteArray();
+
+    String hash = hash(content);
+    Path outputFile = directory.resolve(fileName);
+
+    Compression compression = optionHandler.compression();
+    if (compression != null) {
+      // Hashes are of the uncompressed content, gzip output is the same for the same input
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 64);
+      try (Compression.LevelGzipOutputStream gzip = new Compression.LevelGzipOutputStream(compressed, compression.getLevel(), 8192)) {
+        gzip.write(content);
+      }
+      content = compressed.toByteArray();
+    }
+
+    if (hash.equals(hashes.get(fileName)) && Files.isRegularFile(outputFile) && Files.size(outputFile) == content.length) {
+      unchanged.incrementAndGet();
+      return;
+    }
+
+    replaceFile(outputFile, content);
+    hashes.put(fileName, hash);
+    written.incrementAndGet();
+  }
+
+  /**
+   * Deletes fileName and forgets its hash
+   */
+  public void remove(String fileName) throws IOException {
+    Files.deleteIfExists(directory.resolve(fileName));
+    hashes.remove(fileName);
+  }
+
+  /**
+   * SHA-256 of the uncompressed content of fileName, null if it hasn't been written or found unchanged
+   */
+  public String getHash(String fileName) {
+    return hashes.get(fileName);
+  }
+
+  public int getWritten() {
+    return written.get();
+  }
+
+  public int getUnchanged() {
+    return unchanged.get();
+  }
+
+  /**
+   * Stores hashes of all files written or found unchanged
+   */
+  public void writeManifest() throws IOException {
+    Map<String, String> sortedHashes = new TreeMap<>(hashes);
+
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    CommonFunctions.writeJson(buffer, generator -> {
+      generator.writeStartObject();
+      for (Map.Entry<String, String> entry : sortedHashes.entrySet()) {
+        generator.writeStringField(entry.getKey(), entry.getValue());
+      }
+      generator.writeEndObject();
+    }, DataFormat.JSON, optionHandler);
+
+    replaceFile(directory.resolve(MANIFEST_NAME), buffer.toByteArray());
+  }
+
+  private void readManifest() {
+    Path manifestFile = directory.resolve(MANIFEST_NAME);
+    if (!Files.isRegularFile(manifestFile)) {
+      return;
+    }
+
+    try (JsonParser parser = DataFormat.JSON.getFactory().createParser(Files.newInputStream(manifestFile))) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return;
+      }
+
+      while (parser.nextValue() == JsonToken.VALUE_STRING) {
+        hashes.put(parser.getCurrentName(), parser.getText());
+      }
+    } catch (IOException ex) {
+      // Every file will be written again
+      hashes.clear();
+      if (optionHandler.isVerbose()) {
+        ex.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Replaces target with content by writing a temporary file in the same directory and renaming it
+   */
+  public static void replaceFile(Path target, byte[] content) throws IOException {
+    Path tempPath = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      Files.write(tempPath, content);
+      try {
+        Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+  }
+
+  private static String hash(byte[] content) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+      StringBuilder builder = new StringBuilder(hash.length * 2);
+      for (byte value : hash) {
+        builder.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+      }
+
+      return builder.toString();
+    } catch (NoSuchAlgorithmException ex) {
+      // Every JRE has to support SHA-256
+      throw new RuntimeException(ex);
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+package qowyn.ark.tools;
+
+/**
+ * Minimal open addressing set of primitive longs, avoids boxing millions of ids.
+ */
+public final class LongHashSet {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] table;
+
+  private int mask;
+
+  private int size;
+
+  private boolean containsZero;
+
+  public LongHashSet() {
+    this(MIN_CAPACITY);
+  }
+
+  public LongHashSet(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    // Keep load factor at or below 0.5
+    while (capacity < expectedSize * 2L) {
+      capacity <<= 1;
+    }
+    table = new long[capacity];
+    mask = capacity - 1;
+  }
+
+  private static int hash(long value) {
+    long h = value * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  public boolean contains(long value) {
+    if (value == 0) {
+      return containsZero;
+    }
+
+    int index = hash(value) & mask;
+    while (true) {
+      long current = table[index];
+      if (current == 0) {
+        return false;
+      }
+      if (current == value) {
+        return true;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  public boolean add(long value) {
+    if (value == 0) {
+      if (containsZero) {
+        return false;
+      }
+      containsZero = true;
+      size++;
+      return true;
+    }
+
+    if ((size + 1) * 2L > table.length) {
+      grow();
+    }
+
+    if (insert(table, mask, value)) {
+      size++;
+      return true;
+    }
+
+    return false;
+  }
+
+  private static boolean insert(long[] table, int mask, long value) {
+    int index = hash(value) & mask;
+    while (true) {
+      long current = table[index];
+      if (current == 0) {
+        table[index] = value;
+        return true;
+      }
+      if (current == value) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  private void grow() {
+    long[] newTable = new long[table.length << 1];
+    int newMask = newTable.length - 1;
+    for (long value : table) {
+      if (value != 0) {
+        insert(newTable, newMask, value);
+      }
+    }
+    table = newTable;
+    mask = newMask;
+  }
+
+}
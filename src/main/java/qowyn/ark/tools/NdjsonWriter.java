@@ -0,0 +1,81 @@
+package qowyn.ark.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes newline delimited JSON, one record per line.
+ * <p>
+ * Every record looks like <code>{"kind":"creature","id":123,"data":{...}}</code>. Records can be written by
+ * several threads at once, each one gets rendered on its own and then appended as a whole line.
+ */
+public class NdjsonWriter implements Closeable {
+
+  public static final String EXTENSION = ".ndjson";
+
+  private static final int NEWLINE = '\n';
+
+  private final OutputStream out;
+
+  public NdjsonWriter(Path path, OptionHandler oh) throws IOException {
+    this(CommonFunctions.newOutputStream(path, oh));
+  }
+
+  public NdjsonWriter(OutputStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Writes a record, writeData writes the fields of its data object
+   */
+  public void write(String kind, long id, WriteJsonCallback writeData) throws IOException {
+    write(kind, generator -> generator.writeNumberField("id", id), writeData);
+  }
+
+  /**
+   * Writes a record, writeData writes the fields of its data object
+   */
+  public void write(String kind, String id, WriteJsonCallback writeData) throws IOException {
+    write(kind, generator -> generator.writeStringField("id", id), writeData);
+  }
+
+  private void write(String kind, WriteJsonCallback writeId, WriteJsonCallback writeData) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    // Never pretty printed, that would break the line structure
+    try (JsonGenerator generator = CommonFunctions.JSON_FACTORY.createGenerator(buffer)) {
+      generator.writeStartObject();
+      generator.writeStringField("kind", kind);
+      writeId.accept(generator);
+      generator.writeObjectFieldStart("data");
+      writeData.accept(generator);
+      generator.writeEndObject();
+      generator.writeEndObject();
+    }
+
+    buffer.write(NEWLINE);
+
+    synchronized (out) {
+      buffer.writeTo(out);
+    }
+  }
+
+  public void flush() throws IOException {
+    synchronized (out) {
+      out.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (out) {
+      out.close();
+    }
+  }
+
+}
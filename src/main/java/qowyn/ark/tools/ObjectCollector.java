@@ -37,6 +37,8 @@ public final class ObjectCollector implements Iterable<GameObject> {
 
   private boolean debug;
 
+  private AllocationRegistry allocationRegistry;
+
   public ObjectCollector(GameObjectContainer container, GameObject object, boolean followReferences, boolean withComponents) {
     Deque<PropertyContainer> toVisit = new ArrayDeque<>();
     startIndex = 0;
@@ -142,6 +144,18 @@ public final class ObjectCollector implements Iterable<GameObject> {
     return Collections.unmodifiableMap(mappedObjects);
   }
 
+  /**
+   * Returns the registry of names and ItemIDs used by the collected objects, built on first use
+   * and kept up to date by {@link #add(GameObject)} and the remove methods.
+   */
+  public AllocationRegistry getAllocationRegistry() {
+    if (allocationRegistry == null) {
+      allocationRegistry = new AllocationRegistry(mappedObjects.values(), mappedObjects.size());
+    }
+
+    return allocationRegistry;
+  }
+
   public GameObject get(int index) {
     return mappedObjects.get(index);
   }
@@ -170,6 +184,9 @@ public final class ObjectCollector implements Iterable<GameObject> {
     GameObject removed = mappedObjects.remove(index);
     if (removed != null) {
       deleted++;
+      if (allocationRegistry != null) {
+        allocationRegistry.unregister(removed);
+      }
       if (debug) {
         System.out.println("Removed " + removed.getNames());
       }
@@ -180,6 +197,9 @@ public final class ObjectCollector implements Iterable<GameObject> {
     GameObject removed = mappedObjects.remove(object.getId());
     if (removed != null) {
       deleted++;
+      if (allocationRegistry != null) {
+        allocationRegistry.unregister(removed);
+      }
       if (debug) {
         System.out.println("Removed " + removed.getNames());
       }
@@ -191,6 +211,9 @@ public final class ObjectCollector implements Iterable<GameObject> {
       GameObject removed = mappedObjects.remove(reference.getObjectId());
       if (removed != null) {
         deleted++;
+        if (allocationRegistry != null) {
+          allocationRegistry.unregister(removed);
+        }
         if (debug) {
           System.out.println("Removed " + removed.getNames());
         }
@@ -202,6 +225,10 @@ public final class ObjectCollector implements Iterable<GameObject> {
     object.setId(insertIndex);
     mappedObjects.put(insertIndex, object);
 
+    if (allocationRegistry != null) {
+      allocationRegistry.register(object);
+    }
+
     added++;
 
     if (debug) {
@@ -212,17 +239,32 @@ public final class ObjectCollector implements Iterable<GameObject> {
   }
 
   public List<GameObject> remap(int startId) {
-    List<GameObject> remappedList = new ArrayList<>(mappedObjects.size());
+    return remap(order(), startId);
+  }
+
+  /**
+   * Orders the objects like {@link #remap(int)} without changing any id. Objects sharing their names with
+   * another component of the same owner get dropped, so the result can be smaller than the collector.
+   */
+  public List<GameObject> order() {
+    List<GameObject> orderedList = new ArrayList<>(mappedObjects.size());
+
+    applyOrderRules(orderedList);
 
-    applyOrderRules(remappedList);
+    return orderedList;
+  }
 
-    for (int i = 0; i < remappedList.size(); i++) {
-      remappedList.get(i).setId(startId + i);
+  /**
+   * Assigns ids starting at startId to orderedList, as returned by {@link #order()}, and refreshes all ObjectReferences
+   */
+  public List<GameObject> remap(List<GameObject> orderedList, int startId) {
+    for (int i = 0; i < orderedList.size(); i++) {
+      orderedList.get(i).setId(startId + i);
     }
 
-    remappedList.parallelStream().forEach(this::doRemap);
+    orderedList.parallelStream().forEach(this::doRemap);
 
-    return remappedList;
+    return orderedList;
   }
 
   /**
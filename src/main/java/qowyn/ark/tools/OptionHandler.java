@@ -1,15 +1,25 @@
 package qowyn.ark.tools;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import joptsimple.OptionSpecBuilder;
+import qowyn.ark.GameObject;
 import qowyn.ark.ReadingOptions;
 import qowyn.ark.WritingOptions;
+import qowyn.ark.tools.options.CompressionValueConverter;
+import qowyn.ark.tools.options.DataFormatValueConverter;
 import qowyn.ark.tools.options.IntegerValueConverter;
 
 public class OptionHandler {
@@ -28,14 +38,32 @@ public class OptionHandler {
 
   private final OptionSpec<Void> prettySpec;
 
+  private final OptionSpec<Void> ndjsonSpec;
+
+  private final OptionSpec<Compression> compressSpec;
+
+  private final OptionSpec<DataFormat> dataFormatSpec;
+
   private final OptionSpec<Void> stopwatchSpec;
 
+  private final OptionSpec<String> metricsOutSpec;
+
   private final OptionSpec<Void> quietSpec;
 
   private final OptionSpec<Void> helpSpec;
 
   private final OptionSpec<Void> verboseSpec;
 
+  private final OptionSpec<String> profileCacheSpec;
+
+  private final OptionSpec<Integer> profileCacheSizeSpec;
+
+  private final OptionSpec<Void> profileCacheVerifySpec;
+
+  private final OptionSpec<Void> watchSpec;
+
+  private final OptionSpec<Integer> watchDelaySpec;
+
   private final String[] originalArgs;
 
   private final OptionSet initialOptions;
@@ -46,6 +74,18 @@ public class OptionHandler {
 
   private Command commandObject;
 
+  private Predicate<GameObject> objectFilter;
+
+  private ProfileCache profileCache;
+
+  private List<SharedSavegame> sharedSavegames = Collections.emptyList();
+
+  private Set<Path> changedFiles;
+
+  private Set<Path> deletedFiles = Collections.emptySet();
+
+  private Map<Path, Path> outputFiles;
+
   public OptionHandler(String... args) {
     parser = new OptionParser();
     parser.allowsUnrecognizedOptions();
@@ -65,8 +105,19 @@ public class OptionHandler {
 
     prettySpec = parser.accepts("pretty-printing", "If set all JSON output will use pretty printing.");
 
+    ndjsonSpec = parser.accepts("ndjson", "Writes one JSON record per line instead of a single document. Supported by creatures, tamed, wild, players, tribes and db json.");
+
+    compressSpec = parser.accepts("compress", "Compresses all written files, file names stay the same. Compressed input gets detected automatically.")
+        .withRequiredArg().withValuesConvertedBy(new CompressionValueConverter());
+
+    dataFormatSpec = parser.accepts("format", "Encoding of all written files, smile and cbor are binary formats. The format of input files gets detected automatically.")
+        .withRequiredArg().withValuesConvertedBy(new DataFormatValueConverter()).defaultsTo(DataFormat.JSON);
+
     stopwatchSpec = parser.acceptsAll(Arrays.asList("stopwatch", "s"), "Measure time spent.");
 
+    metricsOutSpec = parser.accepts("metrics-out", "Writes time, CPU time, allocated memory, GC pauses and peak heap of each phase to <file>. Prometheus text format if it ends with .prom, JSON otherwise.")
+        .withRequiredArg().describedAs("file");
+
     helpSpec = parser.acceptsAll(Arrays.asList("help", "h"), "Displays this help screen, use with a command to get contextual help.")
         .forHelp();
 
@@ -74,6 +125,19 @@ public class OptionHandler {
 
     verboseSpec = parser.acceptsAll(Arrays.asList("verbose", "v"), "Prints stack traces for potentially corrupt files.");
 
+    profileCacheSpec = parser.accepts("profile-cache", "Cache data of unchanged .arkprofile and .arktribe files in <dir>.")
+        .withRequiredArg().describedAs("dir");
+
+    profileCacheSizeSpec = parser.accepts("profile-cache-size", "Maximum size of the profile cache, least recently used entries get removed first.")
+        .withRequiredArg().describedAs("MiB").withValuesConvertedBy(new IntegerValueConverter()).defaultsTo(256);
+
+    profileCacheVerifySpec = parser.accepts("profile-cache-verify", "Parse cached files anyway and replace cache entries which don't match.");
+
+    watchSpec = parser.accepts("watch", "Keeps running and processes changed files again whenever the directory of SAVE changes. Supported by creatures, tamed, wild, players, tribes and db.");
+
+    watchDelaySpec = parser.accepts("watch-delay", "Waits until there have been no changes for <ms> milliseconds before processing them.")
+        .withRequiredArg().describedAs("ms").withValuesConvertedBy(new IntegerValueConverter()).defaultsTo(5000);
+
     initialOptions = parser.parse(args);
     originalArgs = args;
     nonOptions = initialOptions.valuesOf(nonOptionsSpec);
@@ -129,10 +193,32 @@ public class OptionHandler {
     return initialOptions.has(prettySpec);
   }
 
+  public boolean useNdjson() {
+    return initialOptions.has(ndjsonSpec);
+  }
+
+  /**
+   * Compression for written files, null if they should not be compressed
+   */
+  public Compression compression() {
+    return initialOptions.valueOf(compressSpec);
+  }
+
+  public DataFormat dataFormat() {
+    return initialOptions.valueOf(dataFormatSpec);
+  }
+
   public boolean useStopwatch() {
     return initialOptions.has(stopwatchSpec);
   }
 
+  /**
+   * @return target of the metrics or null if none should be written
+   */
+  public Path metricsOut() {
+    return initialOptions.has(metricsOutSpec) ? Paths.get(initialOptions.valueOf(metricsOutSpec)) : null;
+  }
+
   public boolean wantsHelp() {
     return initialOptions.has(helpSpec);
   }
@@ -145,6 +231,106 @@ public class OptionHandler {
     return initialOptions.has(verboseSpec);
   }
 
+  public boolean isWatching() {
+    return initialOptions.has(watchSpec);
+  }
+
+  public int watchDelay() {
+    return initialOptions.valueOf(watchDelaySpec);
+  }
+
+  /**
+   * Arguments this OptionHandler has been created with
+   */
+  public String[] getArgs() {
+    return originalArgs.clone();
+  }
+
+  /**
+   * Files which changed since the command ran last, only set while watching
+   *
+   * @return absolute and normalized paths or null if everything has to be processed
+   */
+  public Set<Path> getChangedFiles() {
+    return changedFiles;
+  }
+
+  public void setChangedFiles(Set<Path> changedFiles) {
+    this.changedFiles = changedFiles;
+  }
+
+  /**
+   * Profiles and tribes deleted since the command ran last, only set while watching
+   */
+  public Set<Path> getDeletedFiles() {
+    return deletedFiles;
+  }
+
+  public void setDeletedFiles(Set<Path> deletedFiles) {
+    this.deletedFiles = deletedFiles;
+  }
+
+  /**
+   * Outputs written for each source file, kept between runs while watching
+   */
+  public void setOutputFiles(Map<Path, Path> outputFiles) {
+    this.outputFiles = outputFiles;
+  }
+
+  /**
+   * Remembers that output has been written for source, so it can be removed once source gets deleted while watching
+   */
+  public void recordOutput(Path source, Path output) {
+    if (outputFiles != null) {
+      outputFiles.put(source.toAbsolutePath().normalize(), output);
+    }
+  }
+
+  /**
+   * Deletes the outputs recorded for all files in {@link #getDeletedFiles()}
+   */
+  public void removeDeletedOutputs() throws IOException {
+    if (outputFiles == null) {
+      return;
+    }
+
+    for (Path deleted : deletedFiles) {
+      Path output = outputFiles.remove(deleted);
+      if (output != null) {
+        Files.deleteIfExists(output);
+      }
+    }
+  }
+
+  /**
+   * Whether path has to be processed again, always true unless watching
+   */
+  public boolean isChanged(Path path) {
+    return changedFiles == null || changedFiles.contains(path.toAbsolutePath().normalize());
+  }
+
+  /**
+   * Returns the profile cache or null if none has been requested. While watching there is always one,
+   * kept in memory unless a directory has been specified.
+   */
+  public synchronized ProfileCache profileCache() {
+    if (profileCache == null && (initialOptions.has(profileCacheSpec) || isWatching())) {
+      try {
+        long maxSize = initialOptions.valueOf(profileCacheSizeSpec) * 1024L * 1024L;
+        Path directory = initialOptions.has(profileCacheSpec) ? Paths.get(initialOptions.valueOf(profileCacheSpec)) : null;
+        profileCache = new ProfileCache(directory, maxSize, initialOptions.has(profileCacheVerifySpec));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    return profileCache;
+  }
+
+  public synchronized void setProfileCache(ProfileCache profileCache) {
+    this.profileCache = profileCache;
+  }
+
   public void printHelp() {
     try {
       System.err.println();
@@ -193,11 +379,51 @@ public class OptionHandler {
         .withMemoryMapping(useMmap());
   }
 
+  public Predicate<GameObject> getObjectFilter() {
+    return objectFilter;
+  }
+
+  /**
+   * Objects not matching objectFilter will be read by {@link #readingOptions()} without decoding their properties.
+   * Commands setting their own object filter should combine it with this one.
+   */
+  public void setObjectFilter(Predicate<GameObject> objectFilter) {
+    this.objectFilter = objectFilter;
+  }
+
+  /**
+   * Returns the savegame shared by all commands of this process if path refers to it, otherwise null.
+   * Commands which modify objects must not use it.
+   */
+  public SharedSavegame getSharedSavegame(Path path) {
+    for (SharedSavegame shared : sharedSavegames) {
+      if (shared.matches(path)) {
+        return shared;
+      }
+    }
+
+    return null;
+  }
+
+  public void setSharedSavegame(SharedSavegame sharedSavegame) {
+    this.sharedSavegames = sharedSavegame != null ? Collections.singletonList(sharedSavegame) : Collections.emptyList();
+  }
+
+  public void setSharedSavegames(List<SharedSavegame> sharedSavegames) {
+    this.sharedSavegames = sharedSavegames;
+  }
+
   public ReadingOptions readingOptions() {
-    return ReadingOptions.create()
+    ReadingOptions options = ReadingOptions.create()
         .withThreadCount(threadCount())
         .parallel(useParallel())
         .withMemoryMapping(useMmap());
+
+    if (objectFilter != null) {
+      options = options.withObjectFilter(objectFilter);
+    }
+
+    return options;
   }
 
 }
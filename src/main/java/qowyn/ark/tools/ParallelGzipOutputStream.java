@@ -0,0 +1,158 @@
+package qowyn.ark.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compresses blocks of data on multiple threads, each block as a gzip member of its own.
+ * <p>
+ * A concatenation of gzip members is a valid gzip file, which every gzip reader including
+ * {@link java.util.zip.GZIPInputStream} decompresses as one. At most two blocks per thread are kept in
+ * memory, writers block while all of them are busy.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+  private static final int BLOCK_SIZE = 1024 * 1024;
+
+  private final OutputStream out;
+
+  private final int level;
+
+  private final int maxPending;
+
+  private final ExecutorService executor;
+
+  private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+  private byte[] block = new byte[BLOCK_SIZE];
+
+  private int count;
+
+  private boolean written;
+
+  private boolean closed;
+
+  public ParallelGzipOutputStream(OutputStream out, int level, int threadCount) {
+    this.out = out;
+    this.level = level;
+    this.maxPending = threadCount * 2;
+    this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+      Thread thread = new Thread(runnable, "gzip");
+      // Don't keep the process alive if the stream doesn't get closed
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (count == block.length) {
+      submit();
+    }
+
+    block[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (count == block.length) {
+        submit();
+      }
+
+      int length = Math.min(len, block.length - count);
+      System.arraycopy(b, off, block, count, length);
+      count += length;
+      off += length;
+      len -= length;
+    }
+  }
+
+  private void submit() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+
+    if (count == 0) {
+      return;
+    }
+
+    byte[] data = block;
+    int length = count;
+    block = new byte[BLOCK_SIZE];
+    count = 0;
+
+    pending.add(executor.submit(() -> compress(data, length, level)));
+    written = true;
+
+    while (pending.size() > maxPending) {
+      writeNext();
+    }
+  }
+
+  private void writeNext() throws IOException {
+    try {
+      out.write(pending.poll().get());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException ex) {
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  /**
+   * Ends the current block early, so everything written so far can be decompressed
+   */
+  @Override
+  public void flush() throws IOException {
+    if (closed) {
+      return;
+    }
+
+    submit();
+    while (!pending.isEmpty()) {
+      writeNext();
+    }
+
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+
+    try {
+      if (!written && count == 0) {
+        // An empty gzip file still needs a header
+        out.write(compress(block, 0, level));
+      }
+
+      flush();
+    } finally {
+      closed = true;
+      executor.shutdownNow();
+      out.close();
+    }
+  }
+
+  private static byte[] compress(byte[] data, int length, int level) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(length / 2 + 64);
+    try (Compression.LevelGzipOutputStream gzip = new Compression.LevelGzipOutputStream(buffer, level, 8192)) {
+      gzip.write(data, 0, length);
+    }
+
+    return buffer.toByteArray();
+  }
+
+}
@@ -42,7 +42,6 @@ import qowyn.ark.ArkCloudInventory;
 import qowyn.ark.ArkContainer;
 import qowyn.ark.ArkSavegame;
 import qowyn.ark.GameObject;
-import qowyn.ark.HibernationEntry;
 import qowyn.ark.PropertyContainer;
 import qowyn.ark.arrays.ArkArrayInt8;
 import qowyn.ark.arrays.ArkArrayObjectReference;
@@ -55,8 +54,8 @@ import qowyn.ark.tools.data.DroppedItem;
 import qowyn.ark.tools.data.Inventory;
 import qowyn.ark.tools.data.Item;
 import qowyn.ark.tools.data.Player;
+import qowyn.ark.tools.data.PlayerIndex;
 import qowyn.ark.tools.data.Structure;
-import qowyn.ark.tools.data.TeamType;
 import qowyn.ark.tools.data.Tribe;
 import qowyn.ark.types.ArkName;
 import qowyn.ark.types.LocationData;
@@ -95,7 +94,7 @@ public class PlayerListCommands {
     DataManager.loadData(optionHandler.lang());
 
     try {
-      Stopwatch stopwatch = new Stopwatch(optionHandler.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(optionHandler);
 
       boolean mapNeeded = options.has(inventorySpec) || options.has(positionsSpec);
       if (!optionHandler.isQuiet() && mapNeeded) {
@@ -109,11 +108,14 @@ public class PlayerListCommands {
       CustomDataContext context = new CustomDataContext();
 
       if (mapNeeded) {
-        ArkSavegame mapSave = new ArkSavegame(saveGame, optionHandler.readingOptions().buildComponentTree(true));
+        SharedSavegame shared = optionHandler.getSharedSavegame(saveGame);
+        ArkSavegame mapSave = shared != null ? shared.getSavegame() : new ArkSavegame(saveGame, optionHandler.readingOptions().buildComponentTree(true));
         context.setObjectContainer(mapSave);
         context.setSavegame(mapSave);
         context.setLatLonCalculator(LatLonCalculator.forSave(mapSave));
         stopwatch.stop("Loading map data");
+        context.setPlayerIndex(shared != null ? shared.getPlayerIndex() : new PlayerIndex(mapSave));
+        stopwatch.stop("Indexing players");
       }
 
       final Map<Integer, Tribe> tribes;
@@ -128,8 +130,22 @@ public class PlayerListCommands {
 
       Filter<Path> profileFilter = path -> PROFILE_PATTERN.matcher(path.getFileName().toString()).matches();
 
+      // While watching only changed profiles need to be written, unless the map or any tribe changed
+      Set<Path> changedFiles = optionHandler.getChangedFiles();
+      boolean writeAll = changedFiles == null || (mapNeeded && optionHandler.isChanged(saveGame)) || optionHandler.useNdjson()
+          || changedFiles.stream().anyMatch(path -> TRIBE_PATTERN.matcher(path.getFileName().toString()).matches())
+          || optionHandler.getDeletedFiles().stream().anyMatch(path -> TRIBE_PATTERN.matcher(path.getFileName().toString()).matches());
+
+      optionHandler.removeDeletedOutputs();
+
+      NdjsonWriter ndjsonWriter = optionHandler.useNdjson() ? new NdjsonWriter(outputDirectory.resolve("players" + NdjsonWriter.EXTENSION), optionHandler) : null;
+
       try (DirectoryStream<Path> stream = Files.newDirectoryStream(saveDir, profileFilter)) {
         for (Path path : stream) {
+          if (!writeAll && !optionHandler.isChanged(path)) {
+            continue;
+          }
+
           if (options.has(maxAgeSpec)) {
             FileTime fileTime = Files.getLastModifiedTime(path);
 
@@ -138,9 +154,12 @@ public class PlayerListCommands {
             }
           }
 
+          stopwatch.count("files", 1);
+
           Runnable task = () -> {
             try {
-              Player player = new Player(path, context, optionHandler.readingOptions());
+              ProfileCache cache = optionHandler.profileCache();
+              Player player = cache != null ? cache.getPlayer(path, context, optionHandler.readingOptions()) : new Player(path, context, optionHandler.readingOptions());
 
               long playerId = player.playerDataId;
 
@@ -158,7 +177,8 @@ public class PlayerListCommands {
                   Path tribePath = saveDir.resolve(player.tribeId + ".arktribe");
                   if (Files.exists(tribePath)) {
                     try {
-                      return new Tribe(tribePath, optionHandler.readingOptions());
+                      ProfileCache cache = optionHandler.profileCache();
+                      return cache != null ? cache.getTribe(tribePath, optionHandler.readingOptions()) : new Tribe(tribePath, optionHandler.readingOptions());
                     } catch (RuntimeException | IOException ex) {
                       // Either the header didn't match or one of the properties is missing
                       System.err.println("Found potentially corrupt ArkTribe: " + tribePath);
@@ -173,11 +193,7 @@ public class PlayerListCommands {
                 });
               }
 
-              Path playerPath = outputDirectory.resolve(playerFileName);
-
-              CommonFunctions.writeJson(playerPath, generator -> {
-                generator.writeStartObject();
-
+              WriteJsonCallback writePlayer = generator -> {
                 // Player data
 
                 player.writeAllProperties(generator, context, options.has(writeAllFieldsSpec), options.has(noPrivacySpec));
@@ -203,9 +219,20 @@ public class PlayerListCommands {
                     }
                   }
                 }
+              };
 
-                generator.writeEndObject();
-              }, optionHandler);
+              if (ndjsonWriter != null) {
+                ndjsonWriter.write("player", playerId, writePlayer);
+              } else {
+                Path playerPath = outputDirectory.resolve(playerFileName);
+
+                CommonFunctions.writeJson(playerPath, generator -> {
+                  generator.writeStartObject();
+                  writePlayer.accept(generator);
+                  generator.writeEndObject();
+                }, optionHandler);
+                optionHandler.recordOutput(path, playerPath);
+              }
             } catch (RuntimeException | IOException ex) {
               System.err.println("Found potentially corrupt ArkProfile: " + path.toString());
               if (optionHandler.isVerbose()) {
@@ -228,6 +255,14 @@ public class PlayerListCommands {
         pool.shutdown();
       }
 
+      if (ndjsonWriter != null) {
+        ndjsonWriter.close();
+      }
+
+      if (optionHandler.profileCache() != null) {
+        optionHandler.profileCache().trim();
+      }
+
       stopwatch.stop("Loading profiles and writing info");
       stopwatch.print();
     } catch (IOException e) {
@@ -267,7 +302,7 @@ public class PlayerListCommands {
     boolean structuresLong = options.valueOf(structuresSpec).equals("long");
 
     try {
-      Stopwatch stopwatch = new Stopwatch(optionHandler.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(optionHandler);
 
       boolean mapNeeded = options.has(itemsSpec) || options.has(tamedSpec) || options.has(structuresSpec) || options.has(inventorySpec);
       if (!optionHandler.isQuiet() && mapNeeded) {
@@ -279,12 +314,14 @@ public class PlayerListCommands {
       Path saveDir = saveGame.getParent();
 
       final Map<Integer, Set<TribeBase>> baseMap;
+      final TeamPartition teamPartition;
       CustomDataContext context = new CustomDataContext();
 
       if (mapNeeded) {
         DataManager.loadData(optionHandler.lang());
 
-        ArkSavegame mapSave = new ArkSavegame(saveGame, optionHandler.readingOptions().buildComponentTree(true));
+        SharedSavegame shared = optionHandler.getSharedSavegame(saveGame);
+        ArkSavegame mapSave = shared != null ? shared.getSavegame() : new ArkSavegame(saveGame, optionHandler.readingOptions().buildComponentTree(true));
         context.setSavegame(mapSave);
         context.setLatLonCalculator(LatLonCalculator.forSave(context.getSavegame()));
         stopwatch.stop("Loading map data");
@@ -321,19 +358,16 @@ public class PlayerListCommands {
         }
 
         if (!mapSave.getHibernationEntries().isEmpty() && options.has(tamedSpec)) {
-          List<GameObject> combinedObjects = new ArrayList<>(context.getSavegame().getObjects());
-  
-          for (HibernationEntry entry: context.getSavegame().getHibernationEntries()) {
-            ObjectCollector collector = new ObjectCollector(entry, 1);
-            combinedObjects.addAll(collector.remap(combinedObjects.size()));
-          }
-
-          context.setObjectContainer(new GameObjectList(combinedObjects));
+          context.setObjectContainer(shared != null ? shared.getContainer() : new CombinedObjectContainer(mapSave));
         } else {
           context.setObjectContainer(mapSave);
         }
+
+        teamPartition = new TeamPartition(context.getObjectContainer());
+        stopwatch.stop("Partitioning by team");
       } else {
         baseMap = null;
+        teamPartition = null;
       }
 
       Filter<Path> tribeFilter = path -> TRIBE_PATTERN.matcher(path.getFileName().toString()).matches();
@@ -357,36 +391,13 @@ public class PlayerListCommands {
           Set<ArkName> processedList = new HashSet<>();
           // Bases
           Set<TribeBase> bases = options.has(basesSpec) ? baseMap.get(tribeId) : null;
+          TribeBaseIndex baseIndex = bases != null ? new TribeBaseIndex(bases) : null;
 
-          for (GameObject object : context.getObjectContainer()) {
-            if (object.isItem()) {
-              continue;
-            }
-
-            int targetingTeam = object.findPropertyValue("TargetingTeam", Integer.class).orElse(-1);
-            if (targetingTeam == -1) {
-              continue;
-            }
-            TeamType teamType = TeamType.forTeam(targetingTeam);
-            if (tribeId == -1 && teamType != TeamType.PLAYER) {
-              continue;
-            } else if (tribeId == 0 && teamType != TeamType.NON_PLAYER) {
-              continue;
-            } else if (tribeId > 0 && tribeId != targetingTeam) {
-              continue;
-            }
-
+          for (GameObject object : teamPartition.get(tribeId)) {
             // Determine base if we have bases
             final TribeBase base;
-            if (bases != null && object.getLocation() != null) {
-              TribeBase matchedBase = null;
-              for (TribeBase potentialBase : bases) {
-                if (potentialBase.insideBounds(object.getLocation())) {
-                  matchedBase = potentialBase;
-                  break;
-                }
-              }
-              base = matchedBase;
+            if (baseIndex != null && object.getLocation() != null) {
+              base = baseIndex.find(object.getLocation());
             } else {
               base = null;
             }
@@ -652,25 +663,46 @@ public class PlayerListCommands {
         }
       };
 
+      // While watching only changed tribes need to be written, unless the map changed
+      boolean writeAll = optionHandler.getChangedFiles() == null || (mapNeeded && optionHandler.isChanged(saveGame)) || optionHandler.useNdjson();
+
+      optionHandler.removeDeletedOutputs();
+
+      NdjsonWriter ndjsonWriter = optionHandler.useNdjson() ? new NdjsonWriter(outputDirectory.resolve("tribes" + NdjsonWriter.EXTENSION), optionHandler) : null;
+
       try (DirectoryStream<Path> stream = Files.newDirectoryStream(saveDir, tribeFilter)) {
         for (Path path : stream) {
-          Runnable task = () -> {
-            try {
-              Tribe tribe = new Tribe(path, optionHandler.readingOptions());
-
-              String tribeFileName = tribe.tribeId + ".json";
+          if (!writeAll && !optionHandler.isChanged(path)) {
+            continue;
+          }
 
-              Path tribePath = outputDirectory.resolve(tribeFileName);
+          stopwatch.count("files", 1);
 
-              CommonFunctions.writeJson(tribePath, generator -> {
-                generator.writeStartObject();
+          Runnable task = () -> {
+            try {
+              ProfileCache cache = optionHandler.profileCache();
+              Tribe tribe = cache != null ? cache.getTribe(path, optionHandler.readingOptions()) : new Tribe(path, optionHandler.readingOptions());
 
+              WriteJsonCallback writeTribe = generator -> {
                 tribe.writeAllProperties(generator, context, options.has(writeAllFieldsSpec));
 
                 mapWriter.accept(generator, tribe.tribeId);
+              };
 
-                generator.writeEndObject();
-              }, optionHandler);
+              if (ndjsonWriter != null) {
+                ndjsonWriter.write("tribe", tribe.tribeId, writeTribe);
+              } else {
+                String tribeFileName = tribe.tribeId + ".json";
+
+                Path tribePath = outputDirectory.resolve(tribeFileName);
+
+                CommonFunctions.writeJson(tribePath, generator -> {
+                  generator.writeStartObject();
+                  writeTribe.accept(generator);
+                  generator.writeEndObject();
+                }, optionHandler);
+                optionHandler.recordOutput(path, tribePath);
+              }
             } catch (RuntimeException | IOException ex) {
               System.err.println("Found potentially corrupt ArkTribe: " + path.toString());
               if (optionHandler.isVerbose()) {
@@ -693,28 +725,44 @@ public class PlayerListCommands {
         pool.shutdown();
       }
 
-      if (options.has(tribelessSpec)) {
-        Path tribePath = outputDirectory.resolve("tribeless.json");
+      if (options.has(tribelessSpec) && writeAll) {
+        if (ndjsonWriter != null) {
+          ndjsonWriter.write("tribeless", -1, generator -> mapWriter.accept(generator, -1));
+        } else {
+          Path tribePath = outputDirectory.resolve("tribeless.json");
 
-        CommonFunctions.writeJson(tribePath, generator -> {
-          generator.writeStartObject();
+          CommonFunctions.writeJson(tribePath, generator -> {
+            generator.writeStartObject();
 
-          mapWriter.accept(generator, -1);
+            mapWriter.accept(generator, -1);
 
-          generator.writeEndObject();
-        }, optionHandler);
+            generator.writeEndObject();
+          }, optionHandler);
+        }
       }
 
-      if (options.has(nonPlayerSpec)) {
-        Path tribePath = outputDirectory.resolve("non-players.json");
+      if (options.has(nonPlayerSpec) && writeAll) {
+        if (ndjsonWriter != null) {
+          ndjsonWriter.write("nonPlayers", 0, generator -> mapWriter.accept(generator, 0));
+        } else {
+          Path tribePath = outputDirectory.resolve("non-players.json");
+
+          CommonFunctions.writeJson(tribePath, generator -> {
+            generator.writeStartObject();
+
+            mapWriter.accept(generator, 0);
 
-        CommonFunctions.writeJson(tribePath, generator -> {
-          generator.writeStartObject();
+            generator.writeEndObject();
+          }, optionHandler);
+        }
+      }
 
-          mapWriter.accept(generator, 0);
+      if (ndjsonWriter != null) {
+        ndjsonWriter.close();
+      }
 
-          generator.writeEndObject();
-        }, optionHandler);
+      if (optionHandler.profileCache() != null) {
+        optionHandler.profileCache().trim();
       }
 
       stopwatch.stop("Loading tribes and writing info");
@@ -750,11 +798,13 @@ public class PlayerListCommands {
     }
 
     try (DirectoryStream<Path> stream = Files.newDirectoryStream(clusterDirectory)) {
-      Stopwatch stopwatch = new Stopwatch(optionHandler.useStopwatch());
+      Stopwatch stopwatch = new Stopwatch(optionHandler);
       for (Path path : stream) {
         if (!Files.isRegularFile(path)) {
           continue;
         }
+        stopwatch.count("files", 1);
+
         Runnable task = () -> {
           try {
             ArkCloudInventory cloudInventory = new ArkCloudInventory(path, optionHandler.readingOptions());
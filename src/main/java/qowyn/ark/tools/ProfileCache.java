@@ -0,0 +1,366 @@
+package qowyn.ark.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import qowyn.ark.ReadingOptions;
+import qowyn.ark.tools.data.DataContext;
+import qowyn.ark.tools.data.Player;
+import qowyn.ark.tools.data.Tribe;
+
+/**
+ * Cache for data extracted from .arkprofile and .arktribe files, stored as one small binary entry per file.
+ * <p>
+ * An entry is used as long as size and modification time of its file match. Hits update the modification time
+ * of the entry, {@link #trim()} deletes least recently used entries until the cache fits into its size limit.
+ * In verify mode every hit gets parsed again and compared with the cached data.
+ * <p>
+ * Without a directory entries are only kept in memory, which is enough for processes running repeatedly like --watch.
+ */
+public class ProfileCache {
+
+  private static final int MAGIC = 0x41524B50;
+
+  private static final int VERSION = 1;
+
+  private static final String EXTENSION = ".entry";
+
+  private static final byte KIND_PLAYER = 1;
+
+  private static final byte KIND_TRIBE = 2;
+
+  private final Path directory;
+
+  private final long maxSize;
+
+  private final boolean verify;
+
+  private final AtomicInteger hits = new AtomicInteger();
+
+  private final AtomicInteger misses = new AtomicInteger();
+
+  private final AtomicInteger mismatches = new AtomicInteger();
+
+  /**
+   * In access order, least recently used first
+   */
+  private final Map<String, byte[]> memoryEntries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true));
+
+  /**
+   * @param directory where to store entries, null to keep them in memory
+   */
+  public ProfileCache(Path directory, long maxSize, boolean verify) throws IOException {
+    this.directory = directory;
+    this.maxSize = maxSize;
+    this.verify = verify;
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+  }
+
+  public Player getPlayer(Path path, DataContext context, ReadingOptions ro) throws IOException {
+    return load(path, KIND_PLAYER, () -> new Player(path, context, ro), Player::writeProfileData, input -> new Player(input, context));
+  }
+
+  public Tribe getTribe(Path path, ReadingOptions ro) throws IOException {
+    return load(path, KIND_TRIBE, () -> new Tribe(path, ro), Tribe::writeTribeData, Tribe::new);
+  }
+
+  public int getHits() {
+    return hits.get();
+  }
+
+  public int getMisses() {
+    return misses.get();
+  }
+
+  public int getMismatches() {
+    return mismatches.get();
+  }
+
+  private <T> T load(Path path, byte kind, Parser<T> parser, Encoder<T> encoder, Decoder<T> decoder) throws IOException {
+    String key = path.toAbsolutePath().normalize().toString();
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    long size = attributes.size();
+    long modified = attributes.lastModifiedTime().toMillis();
+
+    String entryName = entryName(key, kind);
+    byte[] cached = readEntry(entryName, key, kind, size, modified);
+
+    if (cached != null) {
+      T value = decoder.read(new DataInputStream(new ByteArrayInputStream(cached)));
+      hits.incrementAndGet();
+
+      if (directory != null) {
+        try {
+          Files.setLastModifiedTime(directory.resolve(entryName), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+          // Only affects eviction order
+        }
+      }
+
+      if (!verify) {
+        return value;
+      }
+
+      T parsed = parser.parse();
+      byte[] data = encode(encoder, parsed);
+      if (!Arrays.equals(data, cached)) {
+        mismatches.incrementAndGet();
+        System.err.println("Cached data differs from file, replacing cache entry: " + path);
+        writeEntry(entryName, key, kind, size, modified, data);
+      }
+
+      return parsed;
+    }
+
+    misses.incrementAndGet();
+    T parsed = parser.parse();
+    writeEntry(entryName, key, kind, size, modified, encode(encoder, parsed));
+    return parsed;
+  }
+
+  private static <T> byte[] encode(Encoder<T> encoder, T value) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(buffer)) {
+      encoder.write(value, output);
+    }
+
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Returns the payload of the entry or null if it is missing, outdated or damaged
+   */
+  private byte[] readEntry(String entryName, String key, byte kind, long size, long modified) {
+    byte[] entry;
+    if (directory == null) {
+      entry = memoryEntries.get(entryName);
+    } else {
+      Path entryPath = directory.resolve(entryName);
+      try {
+        entry = Files.isRegularFile(entryPath) ? Files.readAllBytes(entryPath) : null;
+      } catch (IOException ex) {
+        entry = null;
+      }
+    }
+
+    if (entry == null) {
+      return null;
+    }
+
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(entry))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readByte() != kind) {
+        return null;
+      }
+
+      if (!key.equals(readString(input)) || input.readLong() != size || input.readLong() != modified) {
+        return null;
+      }
+
+      int crc = input.readInt();
+      byte[] data = new byte[input.readInt()];
+      input.readFully(data);
+
+      return crc(data) == crc ? data : null;
+    } catch (IOException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  private void writeEntry(String entryName, String key, byte kind, long size, long modified, byte[] data) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length + key.length() + 64);
+    try (DataOutputStream output = new DataOutputStream(buffer)) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeByte(kind);
+      writeString(output, key);
+      output.writeLong(size);
+      output.writeLong(modified);
+      output.writeInt(crc(data));
+      output.writeInt(data.length);
+      output.write(data);
+    }
+
+    if (directory == null) {
+      memoryEntries.put(entryName, buffer.toByteArray());
+      return;
+    }
+
+    Path entryPath = directory.resolve(entryName);
+    Path tempPath = Files.createTempFile(directory, entryName, ".tmp");
+    try {
+      Files.write(tempPath, buffer.toByteArray());
+      try {
+        Files.move(tempPath, entryPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(tempPath, entryPath, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+  }
+
+  /**
+   * Forgets the entries of path, for files which have been deleted
+   */
+  public void remove(Path path) {
+    String key = path.toAbsolutePath().normalize().toString();
+    for (byte kind : new byte[] {KIND_PLAYER, KIND_TRIBE}) {
+      String entryName = entryName(key, kind);
+      if (directory == null) {
+        memoryEntries.remove(entryName);
+      } else {
+        try {
+          Files.deleteIfExists(directory.resolve(entryName));
+        } catch (IOException ex) {
+          // Gets evicted by trim eventually
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes least recently used entries until the cache is no larger than its size limit
+   */
+  public void trim() throws IOException {
+    if (directory == null) {
+      synchronized (memoryEntries) {
+        long totalSize = 0;
+        for (byte[] entry : memoryEntries.values()) {
+          totalSize += entry.length;
+        }
+
+        Iterator<byte[]> iterator = memoryEntries.values().iterator();
+        while (totalSize > maxSize && iterator.hasNext()) {
+          totalSize -= iterator.next().length;
+          iterator.remove();
+        }
+      }
+      return;
+    }
+
+    List<Path> entries = new ArrayList<>();
+    List<BasicFileAttributes> attributes = new ArrayList<>();
+    long totalSize = 0;
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+      for (Path entry : stream) {
+        BasicFileAttributes entryAttributes = Files.readAttributes(entry, BasicFileAttributes.class);
+        entries.add(entry);
+        attributes.add(entryAttributes);
+        totalSize += entryAttributes.size();
+      }
+    }
+
+    if (totalSize <= maxSize) {
+      return;
+    }
+
+    Integer[] order = new Integer[entries.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparing((Integer i) -> attributes.get(i).lastModifiedTime()));
+
+    for (int i = 0; i < order.length && totalSize > maxSize; i++) {
+      if (Files.deleteIfExists(entries.get(order[i]))) {
+        totalSize -= attributes.get(order[i]).size();
+      }
+    }
+  }
+
+  private static String entryName(String key, byte kind) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+      StringBuilder builder = new StringBuilder(hash.length * 2 + 8);
+      for (byte value : hash) {
+        builder.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+      }
+
+      return builder.append('-').append(kind).append(EXTENSION).toString();
+    } catch (NoSuchAlgorithmException ex) {
+      // Every JRE has to support SHA-1
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private static int crc(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Writes value, which might be null, without the length limit of {@link DataOutput#writeUTF(String)}
+   */
+  public static void writeString(DataOutput output, String value) throws IOException {
+    if (value == null) {
+      output.writeInt(-1);
+      return;
+    }
+
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  public static String readString(DataInput input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      return null;
+    }
+
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @FunctionalInterface
+  private interface Parser<T> {
+
+    public T parse() throws IOException;
+
+  }
+
+  @FunctionalInterface
+  private interface Encoder<T> {
+
+    public void write(T value, DataOutput output) throws IOException;
+
+  }
+
+  @FunctionalInterface
+  private interface Decoder<T> {
+
+    public T read(DataInput input) throws IOException;
+
+  }
+
+}
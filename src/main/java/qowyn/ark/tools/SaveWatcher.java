@@ -0,0 +1,187 @@
+package qowyn.ark.tools;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the directory of a savegame and collects changes to it, .arkprofile and .arktribe files.
+ * <p>
+ * ARK writes lots of files in a short time when saving, so changes are only reported once there have been
+ * none for the configured delay.
+ */
+public class SaveWatcher implements Closeable {
+
+  private final Path savePath;
+
+  private final long delay;
+
+  private final WatchService watchService;
+
+  private boolean overflowed;
+
+  private Set<Path> deletedFiles = new HashSet<>();
+
+  public SaveWatcher(Path savePath, long delay) throws IOException {
+    this.savePath = savePath.toAbsolutePath().normalize();
+    this.delay = delay;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    this.savePath.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+  }
+
+  /**
+   * Runs action once, then again each time relevant files changed. Each run gets a fresh OptionHandler
+   * with the changed files and the savegame shared between runs, which only gets reread after it changed.
+   * Commands without a savegame parameter are run once.
+   */
+  public static void run(OptionHandler oh, Consumer<OptionHandler> action) {
+    Path savePath = null;
+    for (String param : oh.getParams()) {
+      if (param.toLowerCase(Locale.ENGLISH).endsWith(".ark")) {
+        savePath = Paths.get(param).toAbsolutePath().normalize();
+        break;
+      }
+    }
+
+    if (savePath == null) {
+      action.accept(oh);
+      return;
+    }
+
+    ProfileCache profileCache = oh.profileCache();
+    SharedSavegame shared = SharedSavegame.lazy(savePath, oh);
+    Set<Path> changedFiles = null;
+    Set<Path> deletedFiles = Collections.emptySet();
+    Map<Path, Path> outputFiles = new ConcurrentHashMap<>();
+
+    try (SaveWatcher watcher = new SaveWatcher(savePath, oh.watchDelay())) {
+      while (true) {
+        OptionHandler handler = new OptionHandler(oh.getArgs());
+        handler.setCommandObject(oh.getCommandObject());
+        handler.setProfileCache(profileCache);
+        handler.setSharedSavegame(shared);
+        handler.setChangedFiles(changedFiles);
+        handler.setDeletedFiles(deletedFiles);
+        handler.setOutputFiles(outputFiles);
+
+        try {
+          action.accept(handler);
+        } catch (RuntimeException ex) {
+          // Probably caught the save in the middle of being written, wait for the next change
+          System.err.println("Processing changes failed, waiting for the next change.");
+          if (oh.isVerbose()) {
+            ex.printStackTrace();
+          }
+        }
+
+        changedFiles = watcher.awaitChanges();
+        deletedFiles = watcher.getDeletedFiles();
+        if (profileCache != null) {
+          deletedFiles.forEach(profileCache::remove);
+        }
+        if (changedFiles == null || changedFiles.contains(savePath)) {
+          shared = SharedSavegame.lazy(savePath, oh);
+        }
+
+        if (!oh.isQuiet()) {
+          if (changedFiles == null) {
+            System.out.println("Lost track of changes, processing everything");
+          } else {
+            System.out.println("Processing " + changedFiles.size() + " changed file" + (changedFiles.size() != 1 ? "s" : "")
+                + (deletedFiles.isEmpty() ? "" : " and " + deletedFiles.size() + " deleted file" + (deletedFiles.size() != 1 ? "s" : "")));
+          }
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Blocks until relevant files changed and no further changes happened for the configured delay
+   *
+   * @return absolute and normalized paths of all changed files which still exist, null if events got lost
+   */
+  public Set<Path> awaitChanges() throws InterruptedException, IOException {
+    Set<Path> touchedFiles = new HashSet<>();
+    overflowed = false;
+
+    while (touchedFiles.isEmpty() && !overflowed) {
+      WatchKey key = watchService.take();
+      collect(key, touchedFiles);
+
+      // Keep collecting until the burst is over
+      while ((key = watchService.poll(delay, TimeUnit.MILLISECONDS)) != null) {
+        collect(key, touchedFiles);
+      }
+    }
+
+    // Only the final state counts, files can be deleted and created again while saving
+    Set<Path> changedFiles = new HashSet<>();
+    deletedFiles = new HashSet<>();
+    for (Path path : touchedFiles) {
+      if (Files.exists(path) || path.equals(savePath)) {
+        changedFiles.add(path);
+      } else {
+        deletedFiles.add(path);
+      }
+    }
+
+    return overflowed ? null : changedFiles;
+  }
+
+  /**
+   * Profiles and tribes which have been deleted, as of the last call to {@link #awaitChanges()}
+   */
+  public Set<Path> getDeletedFiles() {
+    return deletedFiles;
+  }
+
+  private void collect(WatchKey key, Set<Path> changedFiles) throws IOException {
+    Path directory = (Path) key.watchable();
+
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        overflowed = true;
+        continue;
+      }
+
+      Path path = directory.resolve((Path) event.context()).toAbsolutePath().normalize();
+      String fileName = path.getFileName().toString();
+      if (path.equals(savePath) || fileName.endsWith(".arkprofile") || fileName.endsWith(".arktribe")) {
+        changedFiles.add(path);
+      }
+    }
+
+    if (!key.reset()) {
+      throw new IOException("Unable to watch " + directory + " any longer");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+}
@@ -0,0 +1,332 @@
+package qowyn.ark.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import joptsimple.OptionException;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import qowyn.ark.tools.driver.DBDrivers;
+import qowyn.ark.tools.options.IntegerValueConverter;
+
+public class ServeCommands {
+
+  public static void serve(OptionHandler oh) {
+    OptionSpec<Integer> portSpec = oh.accepts("port", "Port to listen on.")
+        .withRequiredArg().withValuesConvertedBy(new IntegerValueConverter()).defaultsTo(8765);
+    OptionSpec<String> bindSpec = oh.accepts("bind", "Address to listen on, only change this if you know what you are doing.")
+        .withRequiredArg().describedAs("address").defaultsTo("127.0.0.1");
+    OptionSpec<Integer> pollSpec = oh.accepts("poll-interval", "Check for a changed SAVE every <seconds> seconds.")
+        .withRequiredArg().describedAs("seconds").withValuesConvertedBy(new IntegerValueConverter()).defaultsTo(10);
+
+    OptionSpec<String> tokenSpec = oh.accepts("token", "Token clients have to send as Authorization: Bearer <token>, visible to other local users in the process list.")
+        .withRequiredArg().describedAs("token");
+    OptionSpec<String> tokenFileSpec = oh.accepts("token-file", "Read the token from <file>, if neither this nor --token is given a random token gets generated and printed.")
+        .withRequiredArg().describedAs("file");
+
+    OptionSet options = oh.reparse();
+
+    List<String> params = oh.getParams(options);
+    if (params.size() != 1 || oh.wantsHelp()) {
+      oh.printCommandHelp();
+      System.exit(1);
+      return;
+    }
+
+    ExitGuard.installOrExit("serve");
+
+    try {
+      String token;
+      if (options.has(tokenFileSpec)) {
+        token = new String(Files.readAllBytes(Paths.get(options.valueOf(tokenFileSpec))), StandardCharsets.UTF_8).trim();
+      } else if (options.has(tokenSpec)) {
+        token = options.valueOf(tokenSpec).trim();
+      } else {
+        token = generateToken();
+        System.out.println("Token: " + token);
+      }
+
+      if (token.isEmpty()) {
+        System.err.println("Error: The token can't be empty.");
+        System.exit(2);
+        return;
+      }
+
+      Daemon daemon = new Daemon(Paths.get(params.get(0)), oh, token);
+      daemon.reload();
+
+      HttpServer server = HttpServer.create(new InetSocketAddress(options.valueOf(bindSpec), options.valueOf(portSpec)), 0);
+      server.createContext("/run", daemon::handleRun);
+      server.createContext("/status", daemon::handleStatus);
+      server.createContext("/reload", daemon::handleReload);
+      server.setExecutor(Executors.newFixedThreadPool(2));
+
+      ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor();
+      int pollInterval = options.valueOf(pollSpec);
+      poller.scheduleWithFixedDelay(daemon::reloadIfOutdated, pollInterval, pollInterval, TimeUnit.SECONDS);
+
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        poller.shutdownNow();
+        server.stop(0);
+        DBDrivers.close();
+      }));
+
+      server.start();
+
+      if (!oh.isQuiet()) {
+        System.out.println("Listening on " + server.getAddress());
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String generateToken() {
+    byte[] bytes = new byte[24];
+    new SecureRandom().nextBytes(bytes);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  private static class Daemon {
+
+    private final Path savePath;
+
+    private final OptionHandler oh;
+
+    private final Object lock = new Object();
+
+    private final byte[] authorization;
+
+    private volatile SharedSavegame shared;
+
+    public Daemon(Path savePath, OptionHandler oh, String token) {
+      this.savePath = savePath;
+      this.oh = oh;
+      this.authorization = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Responds with 401 unless the request carries the token, any local process can connect to the port
+     */
+    private boolean checkAuthorization(HttpExchange exchange) throws IOException {
+      String header = exchange.getRequestHeaders().getFirst("Authorization");
+      if (header != null && MessageDigest.isEqual(authorization, header.getBytes(StandardCharsets.UTF_8))) {
+        return true;
+      }
+
+      exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+      respond(exchange, 401, "Missing or wrong token.\n");
+      return false;
+    }
+
+    public void reload() {
+      synchronized (lock) {
+        // Release the old data first, two copies of a large map might not fit into memory
+        shared = null;
+
+        try (Stopwatch stopwatch = new Stopwatch(oh)) {
+          try {
+            shared = SharedSavegame.load(savePath, oh);
+            stopwatch.stop("Loading " + savePath);
+          } catch (RuntimeException | IOException ex) {
+            // Probably still being written, try again on the next check
+            System.err.println("Unable to load " + savePath + ", commands will read it themselves until the next successful reload.");
+            if (oh.isVerbose()) {
+              ex.printStackTrace();
+            }
+          }
+          stopwatch.print();
+        }
+      }
+    }
+
+    public void reloadIfOutdated() {
+      synchronized (lock) {
+        SharedSavegame current = shared;
+        if (current == null || current.isOutdated()) {
+          reload();
+        }
+      }
+    }
+
+    public void handleRun(HttpExchange exchange) throws IOException {
+      try {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+          respond(exchange, 405, "Use POST with a JSON array of arguments.\n");
+          return;
+        }
+
+        if (!checkAuthorization(exchange)) {
+          return;
+        }
+
+        // Browsers can send text/plain cross-origin without a preflight, but not application/json
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.split(";")[0].trim().equalsIgnoreCase("application/json")) {
+          respond(exchange, 415, "Expected Content-Type: application/json.\n");
+          return;
+        }
+
+        JsonNode node = CommonFunctions.readJson(exchange.getRequestBody());
+        if (node == null || !node.isArray() || node.size() == 0) {
+          respond(exchange, 400, "Expected a JSON array of arguments.\n");
+          return;
+        }
+
+        String[] args = new String[node.size()];
+        for (int index = 0; index < args.length; index++) {
+          if (!node.get(index).isTextual()) {
+            respond(exchange, 400, "Expected a JSON array of arguments.\n");
+            return;
+          }
+          args[index] = node.get(index).asText();
+        }
+
+        if ("serve".equals(args[0])) {
+          respond(exchange, 400, "Can't serve from within serve.\n");
+          return;
+        }
+
+        Result result = run(args);
+        exchange.getResponseHeaders().set("X-Exit-Code", Integer.toString(result.exitCode));
+        respond(exchange, result.exitCode == 0 ? 200 : 500, result.exitCode == 0 ? result.out : result.err);
+      } catch (IOException | RuntimeException ex) {
+        respond(exchange, 400, ex.getMessage() + "\n");
+      }
+    }
+
+    public void handleStatus(HttpExchange exchange) throws IOException {
+      SharedSavegame current = shared;
+
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      CommonFunctions.writeJson(buffer, generator -> {
+        generator.writeStartObject();
+        generator.writeStringField("save", savePath.toAbsolutePath().toString());
+        generator.writeBooleanField("loaded", current != null);
+        if (current != null) {
+          generator.writeNumberField("loadedAt", current.getLoaded());
+          generator.writeNumberField("objects", current.getContainer().getObjects().size());
+          generator.writeBooleanField("outdated", current.isOutdated());
+        }
+        generator.writeEndObject();
+      }, oh);
+
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+      respond(exchange, 200, buffer.toByteArray());
+    }
+
+    public void handleReload(HttpExchange exchange) throws IOException {
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        respond(exchange, 405, "Use POST.\n");
+        return;
+      }
+
+      if (!checkAuthorization(exchange)) {
+        return;
+      }
+
+      reload();
+      respond(exchange, shared != null ? 200 : 500, shared != null ? "Reloaded.\n" : "Reload failed.\n");
+    }
+
+    /**
+     * Runs one command with stdout and stderr captured, one at a time as both are global
+     */
+    private Result run(String[] args) {
+      synchronized (lock) {
+        SharedSavegame current = shared;
+        if (current == null || current.isOutdated()) {
+          reload();
+          current = shared;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        int exitCode = 0;
+
+        try {
+          System.setOut(new PrintStream(out, true, "UTF-8"));
+          System.setErr(new PrintStream(err, true, "UTF-8"));
+          ExitGuard.enable();
+
+          OptionHandler handler = new OptionHandler(args);
+          handler.setSharedSavegame(current);
+          if (!App.execute(handler)) {
+            System.err.println("Unknown Command: " + args[0]);
+            exitCode = 1;
+          }
+        } catch (ExitGuard.ExitException ex) {
+          exitCode = ex.getStatus();
+        } catch (OptionException oe) {
+          System.err.println(oe.getMessage());
+          exitCode = 2;
+        } catch (Exception ex) {
+          ex.printStackTrace();
+          exitCode = 2;
+        } finally {
+          ExitGuard.disable();
+          System.out.flush();
+          System.err.flush();
+          System.setOut(originalOut);
+          System.setErr(originalErr);
+        }
+
+        return new Result(exitCode, out.toByteArray(), err.toByteArray());
+      }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      respond(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+      if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      }
+
+      exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+      try (OutputStream stream = exchange.getResponseBody()) {
+        stream.write(body);
+      }
+    }
+
+  }
+
+  private static class Result {
+
+    public final int exitCode;
+
+    public final byte[] out;
+
+    public final byte[] err;
+
+    public Result(int exitCode, byte[] out, byte[] err) {
+      this.exitCode = exitCode;
+      this.out = out;
+      this.err = err;
+    }
+
+  }
+
+}
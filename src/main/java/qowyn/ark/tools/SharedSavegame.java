@@ -0,0 +1,186 @@
+package qowyn.ark.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import qowyn.ark.ArkSavegame;
+import qowyn.ark.GameObjectContainer;
+import qowyn.ark.ReadingOptions;
+import qowyn.ark.tools.data.PlayerIndex;
+
+/**
+ * A savegame loaded once and used read-only by several commands, see {@link OptionHandler#getSharedSavegame(Path)}.
+ * <p>
+ * The savegame gets read with all properties and the component tree, which is a superset of what every
+ * reading command needs. Created by {@link #lazy(Path, OptionHandler)} it is only read once a command asks for it.
+ */
+public class SharedSavegame {
+
+  private final Path path;
+
+  private volatile ReadingOptions options;
+
+  private volatile State state;
+
+  private volatile PlayerIndex playerIndex;
+
+  private SharedSavegame(Path path, ReadingOptions options) {
+    this.path = path;
+    this.options = options;
+  }
+
+  public static SharedSavegame load(Path path, OptionHandler oh) throws IOException {
+    SharedSavegame shared = lazy(path, oh);
+    shared.state = shared.read();
+    return shared;
+  }
+
+  /**
+   * Creates a SharedSavegame which reads path on first access
+   */
+  public static SharedSavegame lazy(Path path, OptionHandler oh) {
+    ReadingOptions options = ReadingOptions.create()
+        .withThreadCount(oh.threadCount())
+        .parallel(oh.useParallel())
+        .withMemoryMapping(oh.useMmap())
+        .buildComponentTree(true);
+
+    return new SharedSavegame(path.toAbsolutePath().normalize(), options);
+  }
+
+  /**
+   * Reads the savegame with options instead of all properties, unless it has been read already. Only meant for
+   * instances created by {@link #lazy(Path, OptionHandler)} which are used by a single command, like with --watch.
+   * Commands sharing an instance might need more than options provide.
+   */
+  public synchronized void preferReadingOptions(ReadingOptions options) {
+    if (state == null) {
+      this.options = options;
+    }
+  }
+
+  private State read() throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    ArkSavegame savegame = new ArkSavegame(path, options);
+    return new State(savegame, attributes.size(), attributes.lastModifiedTime().toMillis());
+  }
+
+  private State state() {
+    State result = state;
+    if (result == null) {
+      synchronized (this) {
+        result = state;
+        if (result == null) {
+          try {
+            result = read();
+          } catch (IOException ex) {
+            throw new RuntimeException(ex);
+          }
+          state = result;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Whether otherPath refers to the file this savegame has been read from
+   */
+  public boolean matches(Path otherPath) {
+    return otherPath != null && path.equals(otherPath.toAbsolutePath().normalize());
+  }
+
+  /**
+   * Whether the file changed since it has been read
+   */
+  public boolean isOutdated() {
+    State current = state;
+    if (current == null) {
+      return false;
+    }
+
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      return attributes.size() != current.size || attributes.lastModifiedTime().toMillis() != current.modified;
+    } catch (IOException ex) {
+      // Probably in the middle of being replaced
+      return false;
+    }
+  }
+
+  public boolean isLoaded() {
+    return state != null;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public ArkSavegame getSavegame() {
+    return state().savegame;
+  }
+
+  /**
+   * Objects of the savegame and all hibernation entries
+   */
+  public GameObjectContainer getContainer() {
+    return state().container;
+  }
+
+  public LatLonCalculator getLatLonCalculator() {
+    return state().latLonCalculator;
+  }
+
+  public PlayerIndex getPlayerIndex() {
+    PlayerIndex result = playerIndex;
+    if (result == null) {
+      synchronized (this) {
+        result = playerIndex;
+        if (result == null) {
+          result = new PlayerIndex(getContainer());
+          playerIndex = result;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  public long getLoaded() {
+    return state().loaded;
+  }
+
+  private static class State {
+
+    private final ArkSavegame savegame;
+
+    private final GameObjectContainer container;
+
+    private final LatLonCalculator latLonCalculator;
+
+    private final long size;
+
+    private final long modified;
+
+    private final long loaded;
+
+    public State(ArkSavegame savegame, long size, long modified) {
+      this.savegame = savegame;
+      this.container = CombinedObjectContainer.of(savegame);
+      this.latLonCalculator = LatLonCalculator.forSave(savegame);
+      this.size = size;
+      this.modified = modified;
+      this.loaded = System.currentTimeMillis();
+
+      if (container instanceof CombinedObjectContainer) {
+        // Everything gets remapped now, later commands only read
+        ((CombinedObjectContainer) container).remapAll();
+      }
+    }
+
+  }
+
+}
@@ -1,43 +1,159 @@
 package qowyn.ark.tools;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
 
-public class Stopwatch {
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Splits the run of a command into phases, each one ending with {@link #stop(String)}.
+ * <p>
+ * With <code>--stopwatch</code> the wall time of each phase gets printed. With <code>--metrics-out</code> each
+ * phase additionally records CPU time of the process, bytes allocated by threads alive at its end, GC runs and
+ * pauses, peak heap usage and everything passed to {@link #count(String, long)}, which gets written as JSON or
+ * Prometheus text format by {@link #print()}.
+ * <p>
+ * Peak heap usage is tracked by the JVM for the whole process. It only gets reset, and reported per phase, while
+ * no other stopwatch with metrics is running, like jobs of batch or requests of serve. Otherwise the peak of the
+ * process is reported instead. Stopwatches stop taking part in this once printed or closed, commands run by
+ * {@link App#execute(OptionHandler)} get theirs closed by a {@link Scope} even if they never reach print.
+ */
+public class Stopwatch implements AutoCloseable {
+
+  private static final String PROMETHEUS_EXTENSION = ".prom";
+
+  private static final String PROMETHEUS_PREFIX = "ark_tools_";
+
+  /**
+   * Stopwatches with metrics between their construction and {@link #close()}
+   */
+  private static int measuring;
+
+  private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
 
   private final boolean enabled;
 
+  private final boolean printing;
+
+  private final Path metricsOut;
+
+  private final String command;
+
+  private final OptionHandler optionHandler;
+
   private final Instant start;
 
   private final List<Entry> stops;
 
-  public Stopwatch(boolean enabled) {
-    this.enabled = enabled;
+  private final Map<String, Long> counts = new LinkedHashMap<>();
+
+  private Sample last;
+
+  private boolean active;
+
+  public Stopwatch(OptionHandler oh) {
+    this(oh.useStopwatch(), oh.metricsOut(), oh);
+  }
+
+  private Stopwatch(boolean printing, Path metricsOut, OptionHandler oh) {
+    this.enabled = printing || metricsOut != null;
+    this.printing = printing;
+    this.metricsOut = metricsOut;
+    this.optionHandler = oh;
+    this.command = oh != null && oh.hasCommand() ? oh.getCommand() : null;
     if (enabled) {
       this.stops = new ArrayList<>();
       this.start = Instant.now();
+      if (metricsOut != null) {
+        startMeasuring();
+        this.active = true;
+        this.last = new Sample();
+        Scope scope = SCOPE.get();
+        if (scope != null) {
+          scope.add(this);
+        }
+      }
     } else {
       this.stops = null;
       this.start = null;
     }
   }
 
-  public void stop(String description) {
+  /**
+   * Adds amount to the things of type unit processed in the current phase, like objects or files
+   */
+  public synchronized void count(String unit, long amount) {
+    if (enabled) {
+      counts.merge(unit, amount, Long::sum);
+    }
+  }
+
+  public synchronized void stop(String description) {
     if (enabled) {
       Entry entry = new Entry();
       entry.description = description;
       entry.pointInTime = Instant.now();
+
+      if (metricsOut != null) {
+        Sample sample = new Sample();
+        entry.wallNanos = sample.wallNanos - last.wallNanos;
+        entry.cpuNanos = sample.cpuNanos >= 0 && last.cpuNanos >= 0 ? sample.cpuNanos - last.cpuNanos : -1;
+        entry.allocatedBytes = sample.allocatedSince(last);
+        entry.gcCount = sample.gcCount - last.gcCount;
+        entry.gcMillis = sample.gcMillis - last.gcMillis;
+        samplePeakHeap(entry);
+        entry.counts = new LinkedHashMap<>(counts);
+        counts.clear();
+        last = sample;
+      }
+
       stops.add(entry);
     }
   }
 
+  /**
+   * Stops measuring without printing anything, called by {@link #print()}
+   */
+  @Override
+  public synchronized void close() {
+    if (active) {
+      active = false;
+      stopMeasuring();
+    }
+  }
+
   public void print() {
+    close();
+
     if (!enabled || stops.size() < 1) {
       return;
     }
 
+    if (metricsOut != null) {
+      writeMetrics();
+    }
+
+    if (!printing) {
+      return;
+    }
+
     StringBuilder sb = new StringBuilder(40 * (stops.size() + 1));
 
     Instant startPoint = start;
@@ -58,12 +174,367 @@ public class Stopwatch {
     System.err.print(sb.toString());
   }
 
+  private void writeMetrics() {
+    Entry total = total();
+
+    try {
+      byte[] content;
+      if (metricsOut.getFileName().toString().toLowerCase(Locale.ENGLISH).endsWith(PROMETHEUS_EXTENSION)) {
+        content = prometheus(total).getBytes(StandardCharsets.UTF_8);
+      } else {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        CommonFunctions.writeJson(buffer, generator -> writeJson(generator, total), DataFormat.JSON, optionHandler);
+        content = buffer.toByteArray();
+      }
+
+      // Scrapers should never see a partially written file
+      IncrementalWriter.replaceFile(metricsOut, content);
+    } catch (IOException ex) {
+      System.err.println("Unable to write metrics to " + metricsOut);
+      if (optionHandler.isVerbose()) {
+        ex.printStackTrace();
+      }
+    }
+  }
+
+  private Entry total() {
+    Entry total = new Entry();
+    total.description = "total";
+    total.cpuNanos = 0;
+    total.counts = new LinkedHashMap<>();
+
+    for (Entry entry : stops) {
+      total.wallNanos += entry.wallNanos;
+      total.cpuNanos = total.cpuNanos >= 0 && entry.cpuNanos >= 0 ? total.cpuNanos + entry.cpuNanos : -1;
+      total.allocatedBytes = total.allocatedBytes >= 0 && entry.allocatedBytes >= 0 ? total.allocatedBytes + entry.allocatedBytes : -1;
+      total.gcCount += entry.gcCount;
+      total.gcMillis += entry.gcMillis;
+      total.peakHeapBytes = Math.max(total.peakHeapBytes, entry.peakHeapBytes);
+      total.peakHeapShared |= entry.peakHeapShared;
+      entry.counts.forEach((unit, amount) -> total.counts.merge(unit, amount, Long::sum));
+    }
+
+    return total;
+  }
+
+  private void writeJson(JsonGenerator generator, Entry total) throws IOException {
+    generator.writeStartObject();
+    if (command != null) {
+      generator.writeStringField("command", command);
+    }
+    generator.writeStringField("start", start.toString());
+
+    generator.writeArrayFieldStart("phases");
+    for (Entry entry : stops) {
+      writeEntry(generator, entry);
+    }
+    generator.writeEndArray();
+
+    generator.writeFieldName("total");
+    writeEntry(generator, total);
+
+    generator.writeEndObject();
+  }
+
+  private static void writeEntry(JsonGenerator generator, Entry entry) throws IOException {
+    double seconds = entry.wallNanos / 1e9;
+
+    generator.writeStartObject();
+    generator.writeStringField("name", entry.description);
+    generator.writeNumberField("wallMillis", entry.wallNanos / 1000000);
+    if (entry.cpuNanos >= 0) {
+      generator.writeNumberField("cpuMillis", entry.cpuNanos / 1000000);
+    }
+    if (entry.allocatedBytes >= 0) {
+      generator.writeNumberField("allocatedBytes", entry.allocatedBytes);
+    }
+    generator.writeNumberField("gcCount", entry.gcCount);
+    generator.writeNumberField("gcMillis", entry.gcMillis);
+    generator.writeNumberField(entry.peakHeapShared ? "processPeakHeapBytes" : "peakHeapBytes", entry.peakHeapBytes);
+
+    if (!entry.counts.isEmpty()) {
+      generator.writeObjectFieldStart("processed");
+      for (Map.Entry<String, Long> count : entry.counts.entrySet()) {
+        generator.writeObjectFieldStart(count.getKey());
+        generator.writeNumberField("count", count.getValue());
+        generator.writeNumberField("perSecond", seconds > 0 ? count.getValue() / seconds : 0);
+        generator.writeEndObject();
+      }
+      generator.writeEndObject();
+    }
+
+    generator.writeEndObject();
+  }
+
+  private String prometheus(Entry total) {
+    StringBuilder sb = new StringBuilder(256 * (stops.size() + 1));
+
+    metric(sb, total, "wall_seconds", "Wall time of each phase", "Wall time of the whole run",
+        entry -> entry.wallNanos / 1e9);
+    metric(sb, total, "cpu_seconds", "CPU time of the process during each phase", "CPU time of the process during the whole run",
+        entry -> entry.cpuNanos >= 0 ? entry.cpuNanos / 1e9 : null);
+    metric(sb, total, "allocated_bytes", "Bytes allocated during each phase by threads alive at its end", "Bytes allocated during the whole run by threads alive at the end of each phase",
+        entry -> entry.allocatedBytes >= 0 ? (double) entry.allocatedBytes : null);
+    metric(sb, total, "gc_count", "Garbage collections during each phase", "Garbage collections during the whole run",
+        entry -> (double) entry.gcCount);
+    metric(sb, total, "gc_seconds", "Time spent collecting garbage during each phase", "Time spent collecting garbage during the whole run",
+        entry -> entry.gcMillis / 1e3);
+    metric(sb, total, "peak_heap_bytes", "Peak heap usage during each phase", "Peak heap usage during the whole run",
+        entry -> entry.peakHeapShared ? null : (double) entry.peakHeapBytes);
+
+    if (total.peakHeapShared) {
+      header(sb, "process_peak_heap_bytes", "Peak heap usage of the process, shared with other commands measured at the same time");
+      sample(sb, "process_peak_heap_bytes", null, null, total.peakHeapBytes);
+    }
+
+    if (!total.counts.isEmpty()) {
+      header(sb, "phase_processed", "Things processed during each phase");
+      for (Entry entry : stops) {
+        for (Map.Entry<String, Long> count : entry.counts.entrySet()) {
+          sample(sb, "phase_processed", entry.description, count.getKey(), count.getValue());
+        }
+      }
+
+      header(sb, "run_processed", "Things processed during the whole run");
+      for (Map.Entry<String, Long> count : total.counts.entrySet()) {
+        sample(sb, "run_processed", null, count.getKey(), count.getValue());
+      }
+
+      header(sb, "phase_processed_per_second", "Things processed per second of wall time during each phase");
+      for (Entry entry : stops) {
+        double seconds = entry.wallNanos / 1e9;
+        for (Map.Entry<String, Long> count : entry.counts.entrySet()) {
+          sample(sb, "phase_processed_per_second", entry.description, count.getKey(), seconds > 0 ? count.getValue() / seconds : 0);
+        }
+      }
+
+      header(sb, "run_processed_per_second", "Things processed per second of wall time during the whole run");
+      double seconds = total.wallNanos / 1e9;
+      for (Map.Entry<String, Long> count : total.counts.entrySet()) {
+        sample(sb, "run_processed_per_second", null, count.getKey(), seconds > 0 ? count.getValue() / seconds : 0);
+      }
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Writes phase_name with a sample for each phase and run_name with a single sample for total
+   */
+  private void metric(StringBuilder sb, Entry total, String name, String phaseHelp, String runHelp, Function<Entry, Double> value) {
+    header(sb, "phase_" + name, phaseHelp);
+    for (Entry entry : stops) {
+      Double result = value.apply(entry);
+      if (result != null) {
+        sample(sb, "phase_" + name, entry.description, null, result);
+      }
+    }
+
+    Double result = value.apply(total);
+    if (result != null) {
+      header(sb, "run_" + name, runHelp);
+      sample(sb, "run_" + name, null, null, result);
+    }
+  }
+
+  private static void header(StringBuilder sb, String name, String help) {
+    sb.append("# HELP ").append(PROMETHEUS_PREFIX).append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(PROMETHEUS_PREFIX).append(name).append(" gauge\n");
+  }
+
+  /**
+   * Writes a single sample, phase and unit get left out if null
+   */
+  private void sample(StringBuilder sb, String name, String phase, String unit, double value) {
+    List<String> labels = new ArrayList<>(3);
+    if (command != null) {
+      labels.add("command=\"" + escapeLabel(command) + '"');
+    }
+    if (phase != null) {
+      labels.add("phase=\"" + escapeLabel(phase) + '"');
+    }
+    if (unit != null) {
+      labels.add("unit=\"" + escapeLabel(unit) + '"');
+    }
+
+    sb.append(PROMETHEUS_PREFIX).append(name);
+    if (!labels.isEmpty()) {
+      sb.append('{').append(String.join(",", labels)).append('}');
+    }
+    sb.append(' ').append(value).append('\n');
+  }
+
+  private static String escapeLabel(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static synchronized void startMeasuring() {
+    if (measuring++ == 0) {
+      peakHeap(true);
+    }
+  }
+
+  private static synchronized void stopMeasuring() {
+    measuring--;
+  }
+
+  /**
+   * Sets the peak heap of entry, resetting it unless other stopwatches with metrics are running
+   */
+  private static synchronized void samplePeakHeap(Entry entry) {
+    entry.peakHeapShared = measuring > 1;
+    entry.peakHeapBytes = peakHeap(!entry.peakHeapShared);
+  }
+
+  /**
+   * Sums up the peak usage of all heap pools, resetting them if reset is set
+   *
+   * @return the sum of the peaks since the last reset, which is at least the peak of the whole heap
+   */
+  private static synchronized long peakHeap(boolean reset) {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        peak += pool.getPeakUsage().getUsed();
+        if (reset) {
+          pool.resetPeakUsage();
+        }
+      }
+    }
+
+    return peak;
+  }
+
+  /**
+   * Closes all stopwatches created by the current thread while open
+   */
+  public static Scope openScope() {
+    Scope scope = new Scope(SCOPE.get());
+    SCOPE.set(scope);
+    return scope;
+  }
+
+  public static class Scope implements AutoCloseable {
+
+    private final Scope parent;
+
+    private final List<Stopwatch> stopwatches = new ArrayList<>();
+
+    private Scope(Scope parent) {
+      this.parent = parent;
+    }
+
+    private synchronized void add(Stopwatch stopwatch) {
+      stopwatches.add(stopwatch);
+    }
+
+    @Override
+    public void close() {
+      List<Stopwatch> open;
+      synchronized (this) {
+        open = new ArrayList<>(stopwatches);
+        stopwatches.clear();
+      }
+
+      for (Stopwatch stopwatch : open) {
+        stopwatch.close();
+      }
+
+      SCOPE.set(parent);
+    }
+
+  }
+
+  private static class Sample {
+
+    public final long wallNanos = System.nanoTime();
+
+    public final long cpuNanos;
+
+    /**
+     * Allocated bytes by thread id, null if not supported
+     */
+    public final Map<Long, Long> allocated;
+
+    public final long gcCount;
+
+    public final long gcMillis;
+
+    public Sample() {
+      OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+      if (os instanceof com.sun.management.OperatingSystemMXBean) {
+        cpuNanos = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+      } else {
+        cpuNanos = -1;
+      }
+
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+        allocated = new HashMap<>(ids.length * 2);
+        for (int index = 0; index < ids.length; index++) {
+          if (bytes[index] >= 0) {
+            allocated.put(ids[index], bytes[index]);
+          }
+        }
+      } else {
+        allocated = null;
+      }
+
+      long count = 0;
+      long millis = 0;
+      for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+        count += Math.max(0, collector.getCollectionCount());
+        millis += Math.max(0, collector.getCollectionTime());
+      }
+      gcCount = count;
+      gcMillis = millis;
+    }
+
+    /**
+     * Bytes allocated by all threads alive now since previous, -1 if not supported
+     */
+    public long allocatedSince(Sample previous) {
+      if (allocated == null || previous.allocated == null) {
+        return -1;
+      }
+
+      long result = 0;
+      for (Map.Entry<Long, Long> entry : allocated.entrySet()) {
+        result += entry.getValue() - previous.allocated.getOrDefault(entry.getKey(), 0L);
+      }
+
+      return result;
+    }
+
+  }
+
   private static class Entry {
 
     public String description;
 
     public Instant pointInTime;
 
+    public long wallNanos;
+
+    public long cpuNanos;
+
+    public long allocatedBytes;
+
+    public long gcCount;
+
+    public long gcMillis;
+
+    public long peakHeapBytes;
+
+    /**
+     * Whether peakHeapBytes is the peak of the process, because other stopwatches were measuring at the same time
+     */
+    public boolean peakHeapShared;
+
+    public Map<String, Long> counts;
+
   }
 
 }
@@ -0,0 +1,120 @@
+package qowyn.ark.tools;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import qowyn.ark.ArkSavegame;
+import qowyn.ark.GameObject;
+import qowyn.ark.ReadingOptions;
+
+/**
+ * Reads a savegame from JSON without building a tree of the whole document.
+ * <p>
+ * Objects get parsed from the token stream in batches of batchSize and converted to {@link GameObject}s right
+ * away, so only one batch exists as JSON tree at a time. All other fields of the document are small and get
+ * parsed once at the end. Batches only carry the header fields needed to convert objects, which therefore
+ * have to come before the objects array, as written by {@link ArkSavegame#writeJson}.
+ */
+public class StreamingSavegameReader {
+
+  public static final int DEFAULT_BATCH_SIZE = 4096;
+
+  private static final String OBJECTS_FIELD = "objects";
+
+  /**
+   * Header fields ArkSavegame.readJson looks at while converting objects
+   */
+  private static final String[] OBJECT_HEADER_FIELDS = {"saveVersion"};
+
+  private final ReadingOptions options;
+
+  private final int batchSize;
+
+  private final ObjectNode root = CommonFunctions.OBJECT_MAPPER.createObjectNode();
+
+  private final List<GameObject> objects = new ArrayList<>();
+
+  public StreamingSavegameReader(ReadingOptions options, int batchSize) {
+    this.options = options;
+    this.batchSize = batchSize;
+  }
+
+  public ArkSavegame read(Path path) throws IOException {
+    CommonFunctions.readJson(path, this::parse);
+
+    // Everything except the objects, which have been converted already
+    root.set(OBJECTS_FIELD, CommonFunctions.OBJECT_MAPPER.createArrayNode());
+    ArkSavegame savegame = new ArkSavegame();
+    savegame.readJson(root, options);
+    savegame.getObjects().addAll(objects);
+
+    return savegame;
+  }
+
+  private void parse(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "Expected savegame to be a JSON object");
+    }
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String fieldName = parser.getCurrentName();
+      parser.nextToken();
+
+      if (OBJECTS_FIELD.equals(fieldName) && parser.isExpectedStartArrayToken()) {
+        ObjectNode header = CommonFunctions.OBJECT_MAPPER.createObjectNode();
+        for (String headerField : OBJECT_HEADER_FIELDS) {
+          if (!root.has(headerField)) {
+            throw new JsonParseException(parser, "Expected " + headerField + " before " + OBJECTS_FIELD + ", can't stream this file");
+          }
+          header.set(headerField, root.get(headerField));
+        }
+
+        ArrayNode batch = CommonFunctions.OBJECT_MAPPER.createArrayNode();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          batch.add(CommonFunctions.OBJECT_MAPPER.<JsonNode>readTree(parser));
+
+          if (batch.size() >= batchSize) {
+            convert(header, batch);
+            batch.removeAll();
+          }
+        }
+
+        convert(header, batch);
+      } else {
+        root.set(fieldName, CommonFunctions.OBJECT_MAPPER.<JsonNode>readTree(parser));
+      }
+    }
+  }
+
+  /**
+   * Lets the toolkit convert one batch of objects
+   *
+   * @param header fields needed to convert objects, shared by all batches
+   */
+  private void convert(ObjectNode header, ArrayNode batch) {
+    if (batch.size() == 0) {
+      return;
+    }
+
+    ObjectNode node = header.deepCopy();
+    node.set(OBJECTS_FIELD, batch);
+
+    ArkSavegame part = new ArkSavegame();
+    part.readJson(node, ReadingOptions.create());
+
+    for (GameObject object : part.getObjects()) {
+      object.setId(objects.size());
+      objects.add(object);
+    }
+  }
+
+}
@@ -0,0 +1,262 @@
+package qowyn.ark.tools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+
+import qowyn.ark.ArkSavegame;
+import qowyn.ark.GameObject;
+import qowyn.ark.ReadingOptions;
+import qowyn.ark.WritingOptions;
+
+/**
+ * Converts a savegame to JSON while reading it, keeping the properties of only one object in memory at a time.
+ * <p>
+ * Properties get decoded one object after another when not reading in parallel, with the object filter being
+ * asked right before each object. Whenever the filter gets asked, all objects before the current one are
+ * complete, so they get written and their properties released. Everything around the objects array is
+ * written by {@link ArkSavegame#writeJson(JsonGenerator, WritingOptions)} itself, so the result is the
+ * same as converting a fully loaded savegame.
+ * <p>
+ * This relies on how ark-savegame-toolkit 0.8.1 reads savegames, which its API does not promise: without
+ * parallel reading, the object filter gets called sequentially, in object order, immediately before the
+ * properties of each object are decoded. Check this again before updating the toolkit. If the order ever
+ * changes, writing fails with an OutOfOrderException instead of silently dropping properties.
+ */
+public class StreamingSavegameWriter {
+
+  private static final String OBJECTS_FIELD = "objects";
+
+  private final JsonGenerator generator;
+
+  private final WritingOptions writingOptions;
+
+  private final ArkSavegame savegame = new ArkSavegame();
+
+  /**
+   * Objects of the savegame whose properties have been read, or are being read
+   */
+  private final BitSet seen = new BitSet();
+
+  private boolean started;
+
+  private boolean broken;
+
+  private int written;
+
+  public StreamingSavegameWriter(JsonGenerator generator, WritingOptions writingOptions) {
+    this.generator = generator;
+    this.writingOptions = writingOptions;
+  }
+
+  /**
+   * Reads path and writes it to the generator.
+   *
+   * @param allowBrokenFile if true, finishes the document with everything read so far if reading fails
+   */
+  public void write(Path path, boolean allowBrokenFile, boolean useMmap) throws IOException {
+    ReadingOptions options = ReadingOptions.create()
+        .parallel(false)
+        .withMemoryMapping(useMmap)
+        .withObjectFilter(this::beforeObject);
+
+    try {
+      savegame.readBinary(path, options);
+    } catch (UncheckedIOException ex) {
+      // Writing failed
+      throw ex.getCause();
+    } catch (OutOfOrderException ex) {
+      throw ex;
+    } catch (IOException | RuntimeException ex) {
+      if (!allowBrokenFile) {
+        throw ex;
+      }
+      broken = true;
+    }
+
+    List<GameObject> objects = savegame.getObjects();
+    if (!started && objects.isEmpty()) {
+      // Nothing to stream, might not even have an objects field
+      savegame.writeJson(generator, writingOptions);
+      return;
+    }
+
+    start();
+    flush(objects.size());
+    generator.writeEndArray();
+
+    try (JsonGenerator discard = CommonFunctions.JSON_FACTORY.createGenerator(new NullOutputStream())) {
+      // Everything after the objects array
+      savegame.writeJson(new Splitter(discard, generator, false), writingOptions);
+    }
+  }
+
+  private boolean beforeObject(GameObject object) {
+    List<GameObject> objects = savegame.getObjects();
+    int id = object.getId();
+
+    // Only objects of the savegame itself, not those of hibernation entries
+    if (id >= 0 && id < objects.size() && objects.get(id) == object) {
+      seen.set(id);
+      try {
+        start();
+        flush(id);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Writes everything in front of the objects array, once all headers have been read
+   */
+  private void start() throws IOException {
+    if (started) {
+      return;
+    }
+    started = true;
+
+    try (JsonGenerator discard = CommonFunctions.JSON_FACTORY.createGenerator(new NullOutputStream())) {
+      // The root object is already open on the real generator once it gets switched
+      discard.writeStartObject();
+      savegame.writeJson(new Splitter(generator, discard, true), writingOptions);
+    }
+
+    generator.writeArrayFieldStart(OBJECTS_FIELD);
+  }
+
+  /**
+   * Writes all objects up to (excluding) end and releases their properties
+   */
+  private void flush(int end) throws IOException {
+    List<GameObject> objects = savegame.getObjects();
+    for (; written < end; written++) {
+      GameObject object = objects.get(written);
+      if (!seen.get(written) && !broken) {
+        // Properties would be missing silently, only acceptable for the part of a broken file which couldn't be read
+        throw new OutOfOrderException("Properties of object " + written + " (" + object.getClassString()
+            + ") have not been read before writing it, objects have to be read in order for streaming");
+      }
+      object.writeJson(generator, true);
+      object.getProperties().clear();
+    }
+  }
+
+  /**
+   * Sends everything to before, switching to after once the objects array of the root object starts (prefix)
+   * or ends (suffix).
+   */
+  private static class Splitter extends JsonGeneratorDelegate {
+
+    private final JsonGenerator after;
+
+    private final boolean switchOnStart;
+
+    private int depth;
+
+    private boolean inObjects;
+
+    public Splitter(JsonGenerator before, JsonGenerator after, boolean switchOnStart) {
+      super(before, false);
+      this.after = after;
+      this.switchOnStart = switchOnStart;
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+      fieldName(name);
+      super.writeFieldName(name);
+    }
+
+    @Override
+    public void writeFieldName(SerializableString name) throws IOException {
+      fieldName(name.getValue());
+      super.writeFieldName(name);
+    }
+
+    private void fieldName(String name) {
+      if (depth == 1 && OBJECTS_FIELD.equals(name)) {
+        if (switchOnStart) {
+          delegate = after;
+        } else {
+          inObjects = true;
+        }
+      }
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+      depth++;
+      super.writeStartObject();
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+      depth--;
+      super.writeEndObject();
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+      depth++;
+      super.writeStartArray();
+    }
+
+    @Override
+    public void writeStartArray(int size) throws IOException {
+      depth++;
+      super.writeStartArray(size);
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+      depth--;
+      super.writeEndArray();
+      if (inObjects && depth == 1) {
+        inObjects = false;
+        delegate = after;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      // Only the real generator decides when to flush
+    }
+
+    @Override
+    public void close() throws IOException {
+      // Both generators are closed by their owners
+    }
+
+  }
+
+  private static class OutOfOrderException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OutOfOrderException(String message) {
+      super(message);
+    }
+
+  }
+
+  private static class NullOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {}
+
+    @Override
+    public void write(byte[] b, int off, int len) {}
+
+  }
+
+}
@@ -0,0 +1,70 @@
+package qowyn.ark.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import qowyn.ark.GameObject;
+import qowyn.ark.GameObjectContainer;
+import qowyn.ark.tools.data.TeamType;
+
+/**
+ * Groups all non-item objects of a container by their TargetingTeam, which gets read in a single parallel pass.
+ * Objects keep their container order within each team and within the player and non-player groups.
+ */
+public class TeamPartition {
+
+  private static final int NO_TEAM = -1;
+
+  private final Map<Integer, List<GameObject>> teamMap = new HashMap<>();
+
+  private final List<GameObject> playerObjects = new ArrayList<>();
+
+  private final List<GameObject> nonPlayerObjects = new ArrayList<>();
+
+  public TeamPartition(GameObjectContainer container) {
+    List<GameObject> objects = container.getObjects();
+    int[] teams = IntStream.range(0, objects.size()).parallel()
+        .map(index -> objects.get(index).isItem() ? NO_TEAM : getTargetingTeam(objects.get(index)))
+        .toArray();
+
+    for (int index = 0; index < teams.length; index++) {
+      int team = teams[index];
+      if (team == NO_TEAM) {
+        continue;
+      }
+
+      GameObject object = objects.get(index);
+      teamMap.computeIfAbsent(team, key -> new ArrayList<>()).add(object);
+
+      TeamType teamType = TeamType.forTeam(team);
+      if (teamType == TeamType.PLAYER) {
+        playerObjects.add(object);
+      } else if (teamType == TeamType.NON_PLAYER) {
+        nonPlayerObjects.add(object);
+      }
+    }
+  }
+
+  private static int getTargetingTeam(GameObject object) {
+    return object.findPropertyValue("TargetingTeam", Integer.class).orElse(NO_TEAM);
+  }
+
+  /**
+   * Returns all objects belonging to tribeId, using the same conventions as the tribes command:
+   * -1 selects every player team, 0 selects every non-player team.
+   */
+  public List<GameObject> get(int tribeId) {
+    if (tribeId == -1) {
+      return Collections.unmodifiableList(playerObjects);
+    } else if (tribeId == 0) {
+      return Collections.unmodifiableList(nonPlayerObjects);
+    }
+
+    return teamMap.getOrDefault(tribeId, Collections.emptyList());
+  }
+
+}
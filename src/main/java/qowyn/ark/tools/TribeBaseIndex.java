@@ -0,0 +1,137 @@
+package qowyn.ark.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import qowyn.ark.types.LocationData;
+
+/**
+ * Uniform grid over the x/y bounds of a set of {@link TribeBase}s.
+ * Lookups return the same base a linear scan over the original collection would return.
+ */
+public class TribeBaseIndex {
+
+  /**
+   * Bases covering more cells than this are checked on every lookup instead of being put into the grid
+   */
+  private static final int MAX_CELLS_PER_BASE = 64;
+
+  /**
+   * Sizes come from sign texts, anything bigger than this (or not finite) is never put into the grid and
+   * doesn't influence the cell size. Maps are less than 1000000 units across.
+   */
+  private static final float MAX_GRID_SIZE = 1000000.0f;
+
+  private final float cellSize;
+
+  private final Map<Long, List<Entry>> grid = new HashMap<>();
+
+  private final List<Entry> largeBases = new ArrayList<>();
+
+  public TribeBaseIndex(Collection<TribeBase> bases) {
+    float[] sizes = new float[bases.size()];
+    int index = 0;
+    for (TribeBase base : bases) {
+      if (isGridSize(base.getSize())) {
+        sizes[index++] = base.getSize();
+      }
+    }
+    sizes = Arrays.copyOf(sizes, index);
+    Arrays.sort(sizes);
+
+    // Typical base diameter, so most bases cover at most 2x2 cells
+    float medianSize = sizes.length > 0 ? sizes[sizes.length / 2] : 0.0f;
+    cellSize = Math.max(medianSize * 2.0f, 1.0f);
+
+    int order = 0;
+    for (TribeBase base : bases) {
+      Entry entry = new Entry(base, order++);
+
+      if (!isGridSize(base.getSize())) {
+        largeBases.add(entry);
+        continue;
+      }
+
+      int minX = cell(base.getX() - base.getSize());
+      int maxX = cell(base.getX() + base.getSize());
+      int minY = cell(base.getY() - base.getSize());
+      int maxY = cell(base.getY() + base.getSize());
+
+      // Cells can saturate at Integer.MIN_VALUE and MAX_VALUE, spans have to be computed as long
+      if (((long) maxX - minX + 1) * ((long) maxY - minY + 1) > MAX_CELLS_PER_BASE) {
+        largeBases.add(entry);
+        continue;
+      }
+
+      // long, incrementing an int past Integer.MAX_VALUE would never end the loop
+      for (long x = minX; x <= maxX; x++) {
+        for (long y = minY; y <= maxY; y++) {
+          grid.computeIfAbsent(key((int) x, (int) y), k -> new ArrayList<>()).add(entry);
+        }
+      }
+    }
+  }
+
+  private static boolean isGridSize(float size) {
+    return size >= 0.0f && size <= MAX_GRID_SIZE;
+  }
+
+  private int cell(float coordinate) {
+    return (int) Math.floor(coordinate / cellSize);
+  }
+
+  private static long key(int x, int y) {
+    return (long) x << Integer.SIZE | (y & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Finds the first base (in iteration order of the collection used to build this index) containing location
+   *
+   * @param location
+   * @return matching base or null
+   */
+  public TribeBase find(LocationData location) {
+    List<Entry> cellEntries = grid.get(key(cell(location.getX()), cell(location.getY())));
+
+    Entry match = null;
+    if (cellEntries != null) {
+      // Entries are stored in ascending order
+      for (Entry entry : cellEntries) {
+        if (entry.base.insideBounds(location)) {
+          match = entry;
+          break;
+        }
+      }
+    }
+
+    for (Entry entry : largeBases) {
+      if (match != null && entry.order > match.order) {
+        break;
+      }
+      if (entry.base.insideBounds(location)) {
+        match = entry;
+        break;
+      }
+    }
+
+    return match != null ? match.base : null;
+  }
+
+  private static class Entry {
+
+    private final TribeBase base;
+
+    private final int order;
+
+    public Entry(TribeBase base, int order) {
+      this.base = base;
+      this.order = order;
+    }
+
+  }
+
+}
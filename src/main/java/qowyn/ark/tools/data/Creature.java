@@ -101,133 +101,96 @@ public class Creature {
 
   public GameObject inventory;
 
-  public Creature(GameObject creature, GameObjectContainer container) {
-    className = creature.getClassName();
-    CreatureData creatureData = DataManager.getCreature(creature.getClassString());
-    type = creatureData != null ? creatureData.getName() : creature.getClassString();
-
-    location = creature.getLocation();
-    
-    int dinoID1 = creature.findPropertyValue("DinoID1", Integer.class).orElse(0);
-    int dinoID2 = creature.findPropertyValue("DinoID2", Integer.class).orElse(0);
-    dinoId = (long) dinoID1 << Integer.SIZE | (dinoID2 & 0xFFFFFFFFL);
-
-    targetingTeam = creature.findPropertyValue("TargetingTeam", Integer.class).orElse(0);
-    tamed = targetingTeam < 0 || targetingTeam >= 50000;
-
-    owningPlayerId = creature.findPropertyValue("OwningPlayerID", Integer.class).orElse(0);
-
-    isFemale = creature.findPropertyValue("bIsFemale", Boolean.class).orElse(false);
-
-    for (int i = 0; i < 6; i++) {
-      colorSetIndices[i] = creature.findPropertyValue("ColorSetIndices", ArkByteValue.class, i).map(ArkByteValue::getByteValue).orElse((byte) 0);
-    }
-
-    tamedAtTime = creature.findPropertyValue("TamedAtTime", Double.class).orElse(0.0);
-
-    tribeName = creature.findPropertyValue("TribeName", String.class).orElse("");
+  private static final PropertyExtractor<Creature, GameObjectContainer> EXTRACTOR = new PropertyExtractor<>();
 
-    tamerString = creature.findPropertyValue("TamerString", String.class).orElse("");
-
-    owningPlayerName = creature.findPropertyValue("OwningPlayerName", String.class).orElse("");
-
-    tamedName = creature.findPropertyValue("TamedName", String.class).orElse("");
-
-    imprinterName = creature.findPropertyValue("ImprinterName", String.class).orElse("");
+  private static final PropertyExtractor<Creature, GameObjectContainer> STATUS_EXTRACTOR = new PropertyExtractor<>();
 
+  static {
+    EXTRACTOR.add("DinoID1", Integer.class, (creature, value) -> creature.dinoId = (long) value << Integer.SIZE | (creature.dinoId & 0xFFFFFFFFL));
+    EXTRACTOR.add("DinoID2", Integer.class, (creature, value) -> creature.dinoId = (creature.dinoId & 0xFFFFFFFF00000000L) | (value & 0xFFFFFFFFL));
+    EXTRACTOR.add("TargetingTeam", Integer.class, (creature, value) -> creature.targetingTeam = value);
+    EXTRACTOR.add("OwningPlayerID", Integer.class, (creature, value) -> creature.owningPlayerId = value);
+    EXTRACTOR.add("bIsFemale", Boolean.class, (creature, value) -> creature.isFemale = value);
+    EXTRACTOR.add("ColorSetIndices", ArkByteValue.class, COLOR_SLOT_COUNT, (creature, container, index, value) -> creature.colorSetIndices[index] = value.getByteValue());
+    EXTRACTOR.add("TamedAtTime", Double.class, (creature, value) -> creature.tamedAtTime = value);
+    EXTRACTOR.add("TribeName", String.class, (creature, value) -> creature.tribeName = value, creature -> creature.tribeName = "");
+    EXTRACTOR.add("TamerString", String.class, (creature, value) -> creature.tamerString = value, creature -> creature.tamerString = "");
+    EXTRACTOR.add("OwningPlayerName", String.class, (creature, value) -> creature.owningPlayerName = value, creature -> creature.owningPlayerName = "");
+    EXTRACTOR.add("TamedName", String.class, (creature, value) -> creature.tamedName = value, creature -> creature.tamedName = "");
+    EXTRACTOR.add("ImprinterName", String.class, (creature, value) -> creature.imprinterName = value, creature -> creature.imprinterName = "");
     // Not all ancestors are saved. Only those ancestor information 
     // are available which are displayed ingame in the UI.
-    creature.findPropertyValue("DinoAncestors", ArkArrayStruct.class).ifPresent(ancestors -> {
-      // traverse female ancestor line
-      ancestors.forEach((value) -> {
-        StructPropertyList propertyList = (StructPropertyList)value;
-        AncestorLineEntry entry = new AncestorLineEntry();
-
-        entry.maleName = propertyList.findPropertyValue("MaleName", String.class).orElse("");
-        int fatherID1 = propertyList.getPropertyValue("MaleDinoID1", Integer.class);
-        int fatherID2 = propertyList.getPropertyValue("MaleDinoID2", Integer.class);
-        entry.maleId = (long) fatherID1 << Integer.SIZE | (fatherID2 & 0xFFFFFFFFL);
-
-        entry.femaleName = propertyList.findPropertyValue("FemaleName", String.class).orElse("");
-        int motherID1 = propertyList.getPropertyValue("FemaleDinoID1", Integer.class);
-        int motherID2 = propertyList.getPropertyValue("FemaleDinoID2", Integer.class);
-        entry.femaleId = (long) motherID1 << Integer.SIZE | (motherID2 & 0xFFFFFFFFL);
-
-        femaleAncestors.add(entry);
-      });
-    });
-
-    creature.findPropertyValue("DinoAncestorsMale", ArkArrayStruct.class).ifPresent(ancestors -> {
-      // traverse male ancestor line
-      ancestors.forEach((value) -> {
-        StructPropertyList propertyList = (StructPropertyList)value;
-        AncestorLineEntry entry = new AncestorLineEntry();
-
-        entry.maleName = propertyList.findPropertyValue("MaleName", String.class).orElse("");
-        int fatherID1 = propertyList.getPropertyValue("MaleDinoID1", Integer.class);
-        int fatherID2 = propertyList.getPropertyValue("MaleDinoID2", Integer.class);
-        entry.maleId = (long) fatherID1 << Integer.SIZE | (fatherID2 & 0xFFFFFFFFL);
-
-        entry.femaleName = propertyList.findPropertyValue("FemaleName", String.class).orElse("");
-        int motherID1 = propertyList.getPropertyValue("FemaleDinoID1", Integer.class);
-        int motherID2 = propertyList.getPropertyValue("FemaleDinoID2", Integer.class);
-        entry.femaleId = (long) motherID1 << Integer.SIZE | (motherID2 & 0xFFFFFFFFL);
-
-        maleAncestors.add(entry);
-      });
-    });
-
-    wildRandomScale = creature.findPropertyValue("WildRandomScale", Float.class).orElse(1.0f);
-
-    isWakingTame = creature.findPropertyValue("bIsWakingTame", Boolean.class).orElse(false);
-
-    isSleeping = creature.findPropertyValue("bIsSleeping", Boolean.class).orElse(false);
-
-    requiredTameAffinity = creature.findPropertyValue("RequiredTameAffinity", Float.class).orElse(0.0f);
-
-    currentTameAffinity = creature.findPropertyValue("CurrentTameAffinity", Float.class).orElse(0.0f);
-
-    tamedIneffectivenessModifier = creature.findPropertyValue("TameIneffectivenessModifier", Float.class).orElse(0.0f);
-
-    tamedFollowTarget = creature.findPropertyValue("TamedFollowTarget", ObjectReference.class).map(ObjectReference::getObjectId).orElse(-1);
-
-    tamingTeamID = creature.findPropertyValue("TamingTeamID", Integer.class).orElse(0);
+    EXTRACTOR.add("DinoAncestors", ArkArrayStruct.class, (creature, value) -> readAncestors(value, creature.femaleAncestors));
+    EXTRACTOR.add("DinoAncestorsMale", ArkArrayStruct.class, (creature, value) -> readAncestors(value, creature.maleAncestors));
+    EXTRACTOR.add("WildRandomScale", Float.class, (creature, value) -> creature.wildRandomScale = value, creature -> creature.wildRandomScale = 1.0f);
+    EXTRACTOR.add("bIsWakingTame", Boolean.class, (creature, value) -> creature.isWakingTame = value);
+    EXTRACTOR.add("bIsSleeping", Boolean.class, (creature, value) -> creature.isSleeping = value);
+    EXTRACTOR.add("RequiredTameAffinity", Float.class, (creature, value) -> creature.requiredTameAffinity = value);
+    EXTRACTOR.add("CurrentTameAffinity", Float.class, (creature, value) -> creature.currentTameAffinity = value);
+    EXTRACTOR.add("TameIneffectivenessModifier", Float.class, (creature, value) -> creature.tamedIneffectivenessModifier = value);
+    EXTRACTOR.add("TamedFollowTarget", ObjectReference.class, (creature, value) -> creature.tamedFollowTarget = value.getObjectId(), creature -> creature.tamedFollowTarget = -1);
+    EXTRACTOR.add("TamingTeamID", Integer.class, (creature, value) -> creature.tamingTeamID = value);
+    EXTRACTOR.add("TamedOnServerName", String.class, (creature, value) -> creature.tamedOnServerName = value, creature -> creature.tamedOnServerName = "");
+    EXTRACTOR.add("UploadedFromServerName", String.class, (creature, value) -> creature.uploadedFromServerName = value, creature -> creature.uploadedFromServerName = "");
+    EXTRACTOR.add("TamedAggressionLevel", Integer.class, (creature, value) -> creature.tamedAggressionLevel = value);
+    EXTRACTOR.add("MatingProgress", Float.class, (creature, value) -> creature.matingProgress = value);
+    EXTRACTOR.add("LastEnterStasisTime", Double.class, (creature, value) -> creature.lastEnterStasisTime = value);
+    EXTRACTOR.add("MyCharacterStatusComponent", ObjectReference.class, (creature, container, index, value) -> creature.status = container.getObject(value));
+    EXTRACTOR.add("MyInventoryComponent", ObjectReference.class, (creature, container, index, value) -> creature.inventory = container.getObject(value));
+
+    STATUS_EXTRACTOR.add("BaseCharacterLevel", Integer.class, (creature, value) -> creature.baseCharacterLevel = value, creature -> creature.baseCharacterLevel = 1);
+    STATUS_EXTRACTOR.add("NumberOfLevelUpPointsApplied", ArkByteValue.class, AttributeNames.size(), (creature, container, index, value) -> creature.numberOfLevelUpPointsApplied[index] = value.getByteValue());
+    STATUS_EXTRACTOR.add("ExtraCharacterLevel", Short.class, (creature, value) -> creature.extraCharacterLevel = value);
+    STATUS_EXTRACTOR.add("NumberOfLevelUpPointsAppliedTamed", ArkByteValue.class, AttributeNames.size(), (creature, container, index, value) -> creature.numberOfLevelUpPointsAppliedTamed[index] = value.getByteValue());
+    STATUS_EXTRACTOR.add("bAllowLevelUps", Boolean.class, (creature, value) -> creature.allowLevelUps = value);
+    STATUS_EXTRACTOR.add("ExperiencePoints", Float.class, (creature, value) -> creature.experiencePoints = value);
+    STATUS_EXTRACTOR.add("DinoImprintingQuality", Float.class, (creature, value) -> creature.dinoImprintingQuality = value);
+    STATUS_EXTRACTOR.add("TamedIneffectivenessModifier", Float.class, (creature, value) -> creature.tamedIneffectivenessModifier = value);
+  }
 
-    tamedOnServerName = creature.findPropertyValue("TamedOnServerName", String.class).orElse("");
+  public static PropertyExtractor<Creature, GameObjectContainer> extractor() {
+    return EXTRACTOR;
+  }
 
-    uploadedFromServerName = creature.findPropertyValue("UploadedFromServerName", String.class).orElse("");
+  public static PropertyExtractor<Creature, GameObjectContainer> statusExtractor() {
+    return STATUS_EXTRACTOR;
+  }
 
-    tamedAggressionLevel = creature.findPropertyValue("TamedAggressionLevel", Integer.class).orElse(0);
+  public Creature() {}
 
-    matingProgress = creature.findPropertyValue("MatingProgress", Float.class).orElse(0.0f);
+  public Creature(GameObject creature, GameObjectContainer container) {
+    className = creature.getClassName();
+    CreatureData creatureData = DataManager.getCreature(creature.getClassString());
+    type = creatureData != null ? creatureData.getName() : creature.getClassString();
 
-    lastEnterStasisTime = creature.findPropertyValue("LastEnterStasisTime", Double.class).orElse(0.0);
+    location = creature.getLocation();
 
-    status = creature.findPropertyValue("MyCharacterStatusComponent", ObjectReference.class).map(container::getObject).orElse(null);
+    EXTRACTOR.extract(creature, this, container);
 
-    inventory = creature.findPropertyValue("MyInventoryComponent", ObjectReference.class).map(container::getObject).orElse(null);
+    tamed = targetingTeam < 0 || targetingTeam >= 50000;
 
     if (status != null && status.getClassString().startsWith("DinoCharacterStatusComponent_")) {
-      baseCharacterLevel = status.findPropertyValue("BaseCharacterLevel", Integer.class).orElse(1);
-
-      for (int index = 0; index < AttributeNames.size(); index++) {
-        numberOfLevelUpPointsApplied[index] = status.findPropertyValue("NumberOfLevelUpPointsApplied", ArkByteValue.class, index).map(ArkByteValue::getByteValue).orElse((byte) 0);
-      }
-
-      extraCharacterLevel = status.findPropertyValue("ExtraCharacterLevel", Short.class).orElse((short) 0);
-
-      for (int index = 0; index < AttributeNames.size(); index++) {
-        numberOfLevelUpPointsAppliedTamed[index] = status.findPropertyValue("NumberOfLevelUpPointsAppliedTamed", ArkByteValue.class, index).map(ArkByteValue::getByteValue).orElse((byte) 0);
-      }
+      STATUS_EXTRACTOR.extract(status, this, container);
+    }
+  }
 
-      allowLevelUps = status.findPropertyValue("bAllowLevelUps", Boolean.class).orElse(false);
+  static void readAncestors(ArkArrayStruct ancestors, List<AncestorLineEntry> ancestorLine) {
+    ancestors.forEach((value) -> {
+      StructPropertyList propertyList = (StructPropertyList)value;
+      AncestorLineEntry entry = new AncestorLineEntry();
 
-      experiencePoints = status.findPropertyValue("ExperiencePoints", Float.class).orElse(0.0f);
+      entry.maleName = propertyList.findPropertyValue("MaleName", String.class).orElse("");
+      int fatherID1 = propertyList.getPropertyValue("MaleDinoID1", Integer.class);
+      int fatherID2 = propertyList.getPropertyValue("MaleDinoID2", Integer.class);
+      entry.maleId = (long) fatherID1 << Integer.SIZE | (fatherID2 & 0xFFFFFFFFL);
 
-      dinoImprintingQuality = status.findPropertyValue("DinoImprintingQuality", Float.class).orElse(0.0f);
+      entry.femaleName = propertyList.findPropertyValue("FemaleName", String.class).orElse("");
+      int motherID1 = propertyList.getPropertyValue("FemaleDinoID1", Integer.class);
+      int motherID2 = propertyList.getPropertyValue("FemaleDinoID2", Integer.class);
+      entry.femaleId = (long) motherID1 << Integer.SIZE | (motherID2 & 0xFFFFFFFFL);
 
-      tamedIneffectivenessModifier = status.findPropertyValue("TamedIneffectivenessModifier", Float.class).orElse(tamedIneffectivenessModifier);
-    }
+      ancestorLine.add(entry);
+    });
   }
 
   public static class AncestorLineEntry {
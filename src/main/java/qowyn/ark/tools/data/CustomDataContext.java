@@ -12,6 +12,8 @@ public class CustomDataContext implements DataContext {
 
   private ArkSavegame savegame;
 
+  private PlayerIndex playerIndex;
+
   public CustomDataContext() {}
 
   @Override
@@ -41,4 +43,13 @@ public class CustomDataContext implements DataContext {
     this.savegame = savegame;
   }
 
+  @Override
+  public PlayerIndex getPlayerIndex() {
+    return playerIndex;
+  }
+
+  public void setPlayerIndex(PlayerIndex playerIndex) {
+    this.playerIndex = playerIndex;
+  }
+
 }
@@ -10,25 +10,34 @@ import java.nio.file.DirectoryStream.Filter;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import qowyn.ark.ArkSavegame;
 import qowyn.ark.GameObject;
 import qowyn.ark.GameObjectContainer;
-import qowyn.ark.HibernationEntry;
-import qowyn.ark.tools.GameObjectList;
+import qowyn.ark.ReadingOptions;
+import qowyn.ark.tools.CombinedObjectContainer;
 import qowyn.ark.tools.LatLonCalculator;
-import qowyn.ark.tools.ObjectCollector;
 import qowyn.ark.tools.OptionHandler;
+import qowyn.ark.tools.ProfileCache;
+import qowyn.ark.tools.SharedSavegame;
 import qowyn.ark.types.ArkName;
 
 public class DataCollector implements DataContext {
@@ -37,17 +46,48 @@ public class DataCollector implements DataContext {
 
   private static final Pattern TRIBE_PATTERN = Pattern.compile("\\d+\\.arktribe");
 
+  /**
+   * All sections of data which can be collected
+   */
+  public static final List<String> SECTIONS = Collections.unmodifiableList(Arrays.asList("creatures", "inventories", "items", "droppedItems", "players", "structures", "tribes"));
+
+  private static final byte KIND_SKIP = 0;
+
+  private static final byte KIND_INVENTORY = 1;
+
+  private static final byte KIND_ITEM = 2;
+
+  private static final byte KIND_CREATURE = 3;
+
+  private static final byte KIND_STRUCTURE = 4;
+
+  private static final byte KIND_DROPPED_ITEM = 5;
+
+  private static final byte KIND_OTHER = 6;
+
   public final Map<ArkName, Integer> nameObjectMap = new HashMap<>();
 
-  public final SortedMap<Integer, Item> itemMap = new TreeMap<>();
+  // Backed by arrays indexed by object id, see IdMap
+
+  private final IdMap<Item> items = new IdMap<>();
+
+  private final IdMap<DroppedItem> droppedItems = new IdMap<>();
 
-  public final SortedMap<Integer, DroppedItem> droppedItemMap = new TreeMap<>();
+  private final IdMap<Inventory> inventories = new IdMap<>();
 
-  public final SortedMap<Integer, Inventory> inventoryMap = new TreeMap<>();
+  private final IdMap<Creature> creatures = new IdMap<>();
 
-  public final SortedMap<Integer, Creature> creatureMap = new TreeMap<>();
+  private final IdMap<Structure> structures = new IdMap<>();
 
-  public final SortedMap<Integer, Structure> structureMap = new TreeMap<>();
+  public final SortedMap<Integer, Item> itemMap = items;
+
+  public final SortedMap<Integer, DroppedItem> droppedItemMap = droppedItems;
+
+  public final SortedMap<Integer, Inventory> inventoryMap = inventories;
+
+  public final SortedMap<Integer, Creature> creatureMap = creatures;
+
+  public final SortedMap<Integer, Structure> structureMap = structures;
 
   public final SortedMap<Long, Player> playerMap;
 
@@ -63,10 +103,14 @@ public class DataCollector implements DataContext {
 
   public LatLonCalculator latLonCalculator;
 
+  public PlayerIndex playerIndex;
+
   public long maxAge;
 
   private final List<Callable<Object>> tasks;
 
+  private final Set<String> sections = new HashSet<>(SECTIONS);
+
   public DataCollector(OptionHandler oh) {
     this.oh = oh;
 
@@ -83,51 +127,217 @@ public class DataCollector implements DataContext {
     }
   }
 
+  public boolean hasSection(String section) {
+    return sections.contains(section);
+  }
+
+  /**
+   * Restricts collected data to sections, data of other sections won't be constructed
+   */
+  public void setSections(Collection<String> sections) {
+    this.sections.clear();
+    this.sections.addAll(sections);
+  }
+
   public void loadSavegame(Path path) throws IOException {
-    savegame = new ArkSavegame(path, oh.readingOptions().withObjectFilter(obj -> {
+    Predicate<GameObject> objectFilter = obj -> {
       // Skip things like NPCZoneVolume and non-instanced objects
       return !obj.isFromDataFile() && (obj.getNames().size() > 1 || obj.getNames().get(0).getInstance() > 0);
-    }).buildComponentTree(true));
-    latLonCalculator = LatLonCalculator.forSave(savegame);
+    };
 
-    if (!savegame.getHibernationEntries().isEmpty()) {
-      List<GameObject> combinedObjects = new ArrayList<>(savegame.getObjects());
+    if (oh.getObjectFilter() != null) {
+      objectFilter = objectFilter.and(oh.getObjectFilter());
+    }
 
-      for (HibernationEntry entry: savegame.getHibernationEntries()) {
-        ObjectCollector collector = new ObjectCollector(entry, 1);
-        combinedObjects.addAll(collector.remap(combinedObjects.size()));
-      }
+    ReadingOptions readingOptions = oh.readingOptions().withObjectFilter(objectFilter).buildComponentTree(true);
 
-      container = new GameObjectList(combinedObjects);
+    SharedSavegame shared = oh.getSharedSavegame(path);
+    if (shared != null) {
+      shared.preferReadingOptions(readingOptions);
+      savegame = shared.getSavegame();
+      latLonCalculator = shared.getLatLonCalculator();
+      container = shared.getContainer();
     } else {
-      container = savegame;
-    }
-
-    for (GameObject object: container) {
-      if (object.isFromDataFile() || (object.getNames().size() == 1 && object.getNames().get(0).getInstance() == 0)) {
-        // Skip things like NPCZoneVolume and non-instanced objects
-      } else if (isInventory(object)) {
-        inventoryMap.put(object.getId(), new Inventory(object));
-      } else {
-        if (!nameObjectMap.containsKey(object.getNames().get(0))) {
-          nameObjectMap.put(object.getNames().get(0), object.getId());
-          if (object.isItem()) {
-            itemMap.put(object.getId(), new Item(object));
-          } else if (isCreature(object)) {
-            creatureMap.put(object.getId(), new Creature(object, savegame));
-          } else if (object.getLocation() != null && !isPlayer(object) && !isDroppedItem(object) && !isWeapon(object)) {
-            // Skip players, weapons and items on the ground
-            // is (probably) a structure
-            structureMap.put(object.getId(), new Structure(object, savegame));
-          } else if (isDroppedItem(object)) {
-            // dropped Item
-            droppedItemMap.put(object.getId(), new DroppedItem(object, savegame));
-          }
+      savegame = new ArkSavegame(path, readingOptions);
+      latLonCalculator = LatLonCalculator.forSave(savegame);
+      container = CombinedObjectContainer.of(savegame);
+    }
+
+    if (hasSection("players")) {
+      playerIndex = shared != null ? shared.getPlayerIndex() : new PlayerIndex(container);
+    }
+
+    List<GameObject> objects = container.getObjects();
+    int count = objects.size();
+
+    // First pass: classify objects, only reads properties
+    byte[] kinds = new byte[count];
+    runChunked(count, (start, end) -> {
+      for (int index = start; index < end; index++) {
+        kinds[index] = classify(objects.get(index));
+      }
+    });
+
+    // Second pass: first object with a given name wins, needs to happen in order
+    for (int index = 0; index < count; index++) {
+      if (kinds[index] == KIND_SKIP || kinds[index] == KIND_INVENTORY) {
+        continue;
+      }
+
+      GameObject object = objects.get(index);
+      if (nameObjectMap.putIfAbsent(object.getNames().get(0), object.getId()) != null) {
+        kinds[index] = KIND_SKIP;
+      }
+    }
+
+    boolean withInventories = hasSection("inventories");
+    boolean withItems = hasSection("items");
+    boolean withCreatures = hasSection("creatures");
+    boolean withStructures = hasSection("structures");
+    boolean withDroppedItems = hasSection("droppedItems");
+
+    if (!withInventories && !withItems && !withCreatures && !withStructures && !withDroppedItems) {
+      return;
+    }
+
+    if (withInventories) {
+      inventories.ensureCapacity(count);
+    }
+    if (withItems) {
+      items.ensureCapacity(count);
+    }
+    if (withCreatures) {
+      creatures.ensureCapacity(count);
+    }
+    if (withStructures) {
+      structures.ensureCapacity(count);
+    }
+    if (withDroppedItems) {
+      droppedItems.ensureCapacity(count);
+    }
+
+    // Third pass: construct, each index is written by exactly one chunk
+    Object[] results = new Object[count];
+    runChunked(count, (start, end) -> {
+      for (int index = start; index < end; index++) {
+        GameObject object = objects.get(index);
+        switch (kinds[index]) {
+          case KIND_INVENTORY:
+            results[index] = withInventories ? new Inventory(object) : null;
+            break;
+          case KIND_ITEM:
+            results[index] = withItems ? new Item(object) : null;
+            break;
+          case KIND_CREATURE:
+            results[index] = withCreatures ? new Creature(object, savegame) : null;
+            break;
+          case KIND_STRUCTURE:
+            results[index] = withStructures ? new Structure(object, savegame) : null;
+            break;
+          case KIND_DROPPED_ITEM:
+            results[index] = withDroppedItems ? new DroppedItem(object, savegame) : null;
+            break;
+          default:
+            break;
         }
       }
+    });
+
+    for (int index = 0; index < count; index++) {
+      if (results[index] == null) {
+        continue;
+      }
+
+      int id = objects.get(index).getId();
+      switch (kinds[index]) {
+        case KIND_INVENTORY:
+          inventories.put(id, (Inventory) results[index]);
+          break;
+        case KIND_ITEM:
+          items.put(id, (Item) results[index]);
+          break;
+        case KIND_CREATURE:
+          creatures.put(id, (Creature) results[index]);
+          break;
+        case KIND_STRUCTURE:
+          structures.put(id, (Structure) results[index]);
+          break;
+        case KIND_DROPPED_ITEM:
+          droppedItems.put(id, (DroppedItem) results[index]);
+          break;
+        default:
+          break;
+      }
     }
   }
 
+  private static byte classify(GameObject object) {
+    if (object.isFromDataFile() || (object.getNames().size() == 1 && object.getNames().get(0).getInstance() == 0)) {
+      // Skip things like NPCZoneVolume and non-instanced objects
+      return KIND_SKIP;
+    } else if (isInventory(object)) {
+      return KIND_INVENTORY;
+    } else if (object.isItem()) {
+      return KIND_ITEM;
+    } else if (isCreature(object)) {
+      return KIND_CREATURE;
+    } else if (object.getLocation() != null && !isPlayer(object) && !isDroppedItem(object) && !isWeapon(object)) {
+      // Skip players, weapons and items on the ground
+      // is (probably) a structure
+      return KIND_STRUCTURE;
+    } else if (isDroppedItem(object)) {
+      // dropped Item
+      return KIND_DROPPED_ITEM;
+    }
+
+    return KIND_OTHER;
+  }
+
+  /**
+   * Splits the range 0 to count into chunks and runs them on --thread-count threads if --parallel is set
+   */
+  private void runChunked(int count, ChunkTask task) {
+    if (!oh.useParallel() || count == 0) {
+      task.run(0, count);
+      return;
+    }
+
+    // More chunks than threads to balance out expensive objects
+    int chunkCount = Math.min(count, oh.threadCount() * 4);
+    List<Callable<Object>> chunks = new ArrayList<>(chunkCount);
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      int start = (int) ((long) count * chunk / chunkCount);
+      int end = (int) ((long) count * (chunk + 1) / chunkCount);
+      chunks.add(Executors.callable(() -> task.run(start, end)));
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(oh.threadCount(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    try {
+      for (Future<Object> future: pool.invokeAll(chunks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @FunctionalInterface
+  private interface ChunkTask {
+
+    public void run(int start, int end);
+
+  }
+
   public void loadPlayers(Path path) throws IOException {
     Filter<Path> profileFilter = p -> PROFILE_PATTERN.matcher(p.getFileName().toString()).matches();
 
@@ -152,7 +362,8 @@ public class DataCollector implements DataContext {
 
   protected void loadPlayer(Path profilePath) {
     try {
-      Player player = new Player(profilePath, this, oh.readingOptions());
+      ProfileCache cache = oh.profileCache();
+      Player player = cache != null ? cache.getPlayer(profilePath, this, oh.readingOptions()) : new Player(profilePath, this, oh.readingOptions());
       playerMap.put(player.playerDataId, player);
     } catch (RuntimeException ex) {
       System.err.println("Found potentially corrupt ArkProfile: " + profilePath.toString());
@@ -190,7 +401,8 @@ public class DataCollector implements DataContext {
 
   protected void loadTribe(Path tribePath) {
     try {
-      Tribe tribe = new Tribe(tribePath, oh.readingOptions());
+      ProfileCache cache = oh.profileCache();
+      Tribe tribe = cache != null ? cache.getTribe(tribePath, oh.readingOptions()) : new Tribe(tribePath, oh.readingOptions());
       tribeMap.put(tribe.tribeId, tribe);
     } catch (RuntimeException ex) {
       System.err.println("Found potentially corrupt ArkTribe: " + tribePath.toString());
@@ -214,6 +426,16 @@ public class DataCollector implements DataContext {
       pool.shutdown();
       tasks.clear();
     }
+
+    if (oh.profileCache() != null) {
+      try {
+        oh.profileCache().trim();
+      } catch (IOException ex) {
+        if (oh.isVerbose()) {
+          ex.printStackTrace();
+        }
+      }
+    }
   }
 
   @Override
@@ -231,4 +453,9 @@ public class DataCollector implements DataContext {
     return savegame;
   }
 
+  @Override
+  public PlayerIndex getPlayerIndex() {
+    return playerIndex;
+  }
+
 }
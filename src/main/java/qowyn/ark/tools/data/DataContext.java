@@ -12,4 +12,10 @@ public interface DataContext {
 
   public ArkSavegame getSavegame();
 
+  /**
+   * Index of player pawns in {@link #getObjectContainer()}, built once by whoever provides the container.
+   * Needs to be present whenever players get read with an object container.
+   */
+  public PlayerIndex getPlayerIndex();
+
 }
@@ -34,6 +34,20 @@ public class DroppedItem {
 
   public float initialLifeSpan;
 
+  private static final PropertyExtractor<DroppedItem, GameObjectContainer> EXTRACTOR = new PropertyExtractor<>();
+
+  static {
+    EXTRACTOR.add("MyItem", ObjectReference.class, (droppedItem, container, index, value) -> droppedItem.myItem = container.getObject(value));
+    EXTRACTOR.add("DroppedByName", String.class, (droppedItem, value) -> droppedItem.droppedByName = value, droppedItem -> droppedItem.droppedByName = "");
+    EXTRACTOR.add("TargetingTeam", Integer.class, (droppedItem, value) -> droppedItem.targetingTeam = value);
+    EXTRACTOR.add("OriginalCreationTime", Double.class, (droppedItem, value) -> droppedItem.originalCreationTime = value);
+    EXTRACTOR.add("InitialLifeSpan", Float.class, (droppedItem, value) -> droppedItem.initialLifeSpan = value, droppedItem -> droppedItem.initialLifeSpan = Float.POSITIVE_INFINITY);
+  }
+
+  public static PropertyExtractor<DroppedItem, GameObjectContainer> extractor() {
+    return EXTRACTOR;
+  }
+
   public DroppedItem() {}
 
   public DroppedItem(GameObject droppedItem, GameObjectContainer container) {
@@ -43,11 +57,7 @@ public class DroppedItem {
 
     location = droppedItem.getLocation();
 
-    myItem = droppedItem.findPropertyValue("MyItem", ObjectReference.class).map(container::getObject).orElse(null);
-    droppedByName = droppedItem.findPropertyValue("DroppedByName", String.class).orElse("");
-    targetingTeam = droppedItem.findPropertyValue("TargetingTeam", Integer.class).orElse(0);
-    originalCreationTime = droppedItem.findPropertyValue("OriginalCreationTime", Double.class).orElse(0.0);
-    initialLifeSpan = droppedItem.findPropertyValue("InitialLifeSpan", Float.class).orElse(Float.POSITIVE_INFINITY);
+    EXTRACTOR.extract(droppedItem, this, container);
   }
 
   public static final SortedMap<String, WriterFunction<DroppedItem>> PROPERTIES = new TreeMap<>();
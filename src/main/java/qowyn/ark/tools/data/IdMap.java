@@ -0,0 +1,402 @@
+package qowyn.ark.tools.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Map from object ids to values, stored in an array indexed by id. Object ids are dense, so this needs far less
+ * memory than a map of boxed keys.
+ * <p>
+ * Implements {@link SortedMap} in ascending order of ids. Without boxing iterate with
+ * <code>for (int id = map.nextId(0); id >= 0; id = map.nextId(id + 1))</code>
+ *
+ * @param <T> type of values
+ */
+public class IdMap<T> extends AbstractMap<Integer, T> implements SortedMap<Integer, T> {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private Object[] values;
+
+  private final BitSet present;
+
+  private int size;
+
+  public IdMap() {
+    this(MIN_CAPACITY);
+  }
+
+  public IdMap(int capacity) {
+    values = new Object[Math.max(capacity, MIN_CAPACITY)];
+    present = new BitSet(values.length);
+  }
+
+  /**
+   * Makes room for ids below capacity without further resizing
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity > values.length) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  public T put(int id, T value) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Negative id " + id);
+    }
+
+    if (id >= values.length) {
+      ensureCapacity(Math.max(id + 1, values.length * 2));
+    }
+
+    if (!present.get(id)) {
+      present.set(id);
+      size++;
+    }
+
+    T previous = get(id);
+    values[id] = value;
+    return previous;
+  }
+
+  @Override
+  public T put(Integer key, T value) {
+    return put(key.intValue(), value);
+  }
+
+  @SuppressWarnings("unchecked")
+  public T get(int id) {
+    return id >= 0 && id < values.length ? (T) values[id] : null;
+  }
+
+  @Override
+  public T get(Object key) {
+    return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+  }
+
+  public boolean containsKey(int id) {
+    return id >= 0 && present.get(id);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof Integer && containsKey(((Integer) key).intValue());
+  }
+
+  public T remove(int id) {
+    if (!containsKey(id)) {
+      return null;
+    }
+
+    T previous = get(id);
+    present.clear(id);
+    values[id] = null;
+    size--;
+    return previous;
+  }
+
+  @Override
+  public T remove(Object key) {
+    return key instanceof Integer ? remove(((Integer) key).intValue()) : null;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(values, null);
+    present.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns the lowest id present which is greater than or equal to fromId, or -1 if there is none
+   */
+  public int nextId(int fromId) {
+    return present.nextSetBit(fromId);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Set<Entry<Integer, T>> entrySet() {
+    return new EntrySet(0, Long.MAX_VALUE);
+  }
+
+  @Override
+  public Comparator<? super Integer> comparator() {
+    return null;
+  }
+
+  @Override
+  public SortedMap<Integer, T> subMap(Integer fromKey, Integer toKey) {
+    if (fromKey > toKey) {
+      throw new IllegalArgumentException("fromKey > toKey");
+    }
+
+    return new RangeMap(fromKey, toKey);
+  }
+
+  @Override
+  public SortedMap<Integer, T> headMap(Integer toKey) {
+    return new RangeMap(0, toKey);
+  }
+
+  @Override
+  public SortedMap<Integer, T> tailMap(Integer fromKey) {
+    return new RangeMap(fromKey, Long.MAX_VALUE);
+  }
+
+  @Override
+  public Integer firstKey() {
+    return firstKey(0, Long.MAX_VALUE);
+  }
+
+  @Override
+  public Integer lastKey() {
+    return lastKey(0, Long.MAX_VALUE);
+  }
+
+  private int first(long from, long to) {
+    if (from >= to || from > Integer.MAX_VALUE) {
+      return -1;
+    }
+
+    int id = present.nextSetBit((int) Math.max(from, 0));
+    return id >= 0 && id < to ? id : -1;
+  }
+
+  private int last(long from, long to) {
+    if (from >= to || to <= 0) {
+      return -1;
+    }
+
+    int id = present.previousSetBit((int) Math.min(to - 1, Integer.MAX_VALUE));
+    return id >= from ? id : -1;
+  }
+
+  private Integer firstKey(long from, long to) {
+    int id = first(from, to);
+    if (id < 0) {
+      throw new NoSuchElementException();
+    }
+
+    return id;
+  }
+
+  private Integer lastKey(long from, long to) {
+    int id = last(from, to);
+    if (id < 0) {
+      throw new NoSuchElementException();
+    }
+
+    return id;
+  }
+
+  /**
+   * Entries with ids from inclusive to to exclusive
+   */
+  private final class EntrySet extends AbstractSet<Entry<Integer, T>> {
+
+    private final long from;
+
+    private final long to;
+
+    public EntrySet(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Iterator<Entry<Integer, T>> iterator() {
+      return new Iterator<Entry<Integer, T>>() {
+
+        private int next = first(from, to);
+
+        private int current = -1;
+
+        @Override
+        public boolean hasNext() {
+          return next >= 0;
+        }
+
+        @Override
+        public Entry<Integer, T> next() {
+          if (next < 0) {
+            throw new NoSuchElementException();
+          }
+
+          current = next;
+          next = first(current + 1L, to);
+          return new IdEntry(current);
+        }
+
+        @Override
+        public void remove() {
+          if (current < 0) {
+            throw new IllegalStateException();
+          }
+
+          IdMap.this.remove(current);
+          current = -1;
+        }
+
+      };
+    }
+
+    @Override
+    public int size() {
+      if (from == 0 && to == Long.MAX_VALUE) {
+        return size;
+      }
+
+      int count = 0;
+      for (int id = first(from, to); id >= 0; id = first(id + 1L, to)) {
+        count++;
+      }
+
+      return count;
+    }
+
+  }
+
+  private final class IdEntry implements Map.Entry<Integer, T> {
+
+    private final int id;
+
+    public IdEntry(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public Integer getKey() {
+      return id;
+    }
+
+    @Override
+    public T getValue() {
+      return get(id);
+    }
+
+    @Override
+    public T setValue(T value) {
+      return put(id, value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Map.Entry)) {
+        return false;
+      }
+
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+      T value = getValue();
+      return getKey().equals(other.getKey()) && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      T value = getValue();
+      return id ^ (value == null ? 0 : value.hashCode());
+    }
+
+  }
+
+  /**
+   * View of the ids from inclusive to to exclusive, as returned by subMap, headMap and tailMap
+   */
+  private final class RangeMap extends AbstractMap<Integer, T> implements SortedMap<Integer, T> {
+
+    private final long from;
+
+    private final long to;
+
+    public RangeMap(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    private boolean inRange(Object key) {
+      return key instanceof Integer && (Integer) key >= from && (Integer) key < to;
+    }
+
+    @Override
+    public T get(Object key) {
+      return inRange(key) ? IdMap.this.get(key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return inRange(key) && IdMap.this.containsKey(key);
+    }
+
+    @Override
+    public T put(Integer key, T value) {
+      if (!inRange(key)) {
+        throw new IllegalArgumentException("Key out of range: " + key);
+      }
+
+      return IdMap.this.put(key, value);
+    }
+
+    @Override
+    public T remove(Object key) {
+      return inRange(key) ? IdMap.this.remove(key) : null;
+    }
+
+    @Override
+    public Set<Entry<Integer, T>> entrySet() {
+      return new EntrySet(from, to);
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+      return null;
+    }
+
+    @Override
+    public SortedMap<Integer, T> subMap(Integer fromKey, Integer toKey) {
+      if (fromKey > toKey) {
+        throw new IllegalArgumentException("fromKey > toKey");
+      }
+
+      return new RangeMap(Math.max(from, fromKey), Math.min(to, toKey));
+    }
+
+    @Override
+    public SortedMap<Integer, T> headMap(Integer toKey) {
+      return new RangeMap(from, Math.min(to, toKey));
+    }
+
+    @Override
+    public SortedMap<Integer, T> tailMap(Integer fromKey) {
+      return new RangeMap(Math.max(from, fromKey), to);
+    }
+
+    @Override
+    public Integer firstKey() {
+      return IdMap.this.firstKey(from, to);
+    }
+
+    @Override
+    public Integer lastKey() {
+      return IdMap.this.lastKey(from, to);
+    }
+
+  }
+
+}
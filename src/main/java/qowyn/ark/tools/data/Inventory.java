@@ -31,6 +31,9 @@ public class Inventory {
 
   public double lastInventoryRefreshTime;
 
+  public Inventory() {
+  }
+
   public Inventory(GameObject inventory) {
 
     List<ObjectReference> inventoryItemReferences = inventory.getPropertyValue("InventoryItems", ArkArrayObjectReference.class);
@@ -4,13 +4,10 @@ import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.function.Function;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -33,6 +30,7 @@ import qowyn.ark.properties.PropertyUInt16;
 import qowyn.ark.properties.PropertyUInt32;
 import qowyn.ark.structs.StructPropertyList;
 import qowyn.ark.structs.StructVector;
+import qowyn.ark.tools.AllocationRegistry;
 import qowyn.ark.tools.DataManager;
 import qowyn.ark.tools.ItemData;
 import qowyn.ark.types.ArkByteValue;
@@ -109,61 +107,49 @@ public class Item {
     crafterTribeName = "";
   }
 
+  private static final PropertyExtractor<Item, Void> EXTRACTOR = new PropertyExtractor<>();
+
+  static {
+    EXTRACTOR.add("bAllowEquppingItem", Boolean.class, (item, value) -> item.canEquip = value);
+    EXTRACTOR.add("bCanSlot", Boolean.class, (item, value) -> item.canSlot = value);
+    EXTRACTOR.add("bIsEngram", Boolean.class, (item, value) -> item.isEngram = value);
+    EXTRACTOR.add("bIsBlueprint", Boolean.class, (item, value) -> item.isBlueprint = value);
+    EXTRACTOR.add("bAllowRemovalFromInventory", Boolean.class, (item, value) -> item.canRemove = value);
+    EXTRACTOR.add("bHideFromInventoryDisplay", Boolean.class, (item, value) -> item.isHidden = value);
+    EXTRACTOR.add("ItemQuantity", Number.class, (item, value) -> item.quantity = Math.max(1, value.intValue()));
+    EXTRACTOR.add("CustomItemName", String.class, (item, value) -> item.customName = value);
+    EXTRACTOR.add("CustomItemDescription", String.class, (item, value) -> item.customDescription = value);
+    EXTRACTOR.add("SavedDurability", Float.class, (item, value) -> item.durability = value);
+    EXTRACTOR.add("ItemRating", Float.class, (item, value) -> item.rating = value);
+    EXTRACTOR.add("ItemQualityIndex", ArkByteValue.class, (item, value) -> item.quality = value.getByteValue());
+    EXTRACTOR.add("NextSpoilingTime", Double.class, (item, value) -> item.nextSpoilingTime = value);
+    EXTRACTOR.add("LastSpoilingTime", Double.class, (item, value) -> item.lastSpoilingTime = value);
+    EXTRACTOR.add("ItemStatValues", Short.class, ItemStatDefinitions.size(), (item, context, index, value) -> item.itemStatValues[index] = value);
+    EXTRACTOR.add("ItemColorID", Short.class, COLOR_SLOT_COUNT, (item, context, index, value) -> item.itemColors[index] = value);
+    EXTRACTOR.add("PreSkinItemColorID", Short.class, COLOR_SLOT_COUNT, (item, context, index, value) -> item.preSkinItemColors[index] = value);
+    EXTRACTOR.add("EggNumberOfLevelUpPointsApplied", ArkByteValue.class, AttributeNames.size(), (item, context, index, value) -> item.eggLevelups[index] = value.getByteValue());
+    EXTRACTOR.add("EggColorSetIndices", ArkByteValue.class, COLOR_SLOT_COUNT, (item, context, index, value) -> item.eggColors[index] = value.getByteValue());
+    EXTRACTOR.add("CrafterCharacterName", String.class, (item, value) -> item.crafterCharacterName = value);
+    EXTRACTOR.add("CrafterTribeName", String.class, (item, value) -> item.crafterTribeName = value);
+    EXTRACTOR.add("CraftedSkillBonus", Float.class, (item, value) -> item.craftedSkillBonus = value);
+  }
+
+  public static PropertyExtractor<Item, Void> extractor() {
+    return EXTRACTOR;
+  }
+
   /**
    * From ArkSavegame
    */
   public Item(GameObject item) {
+    this();
+
     className = item.getClassName();
     ItemData itemData = DataManager.getItem(className.toString());
     type = itemData != null ? itemData.getName() : className.toString();
     blueprintGeneratedClass = itemData != null ? itemData.getBlueprintGeneratedClass() : null;
 
-    canEquip = item.findPropertyValue("bAllowEquppingItem", Boolean.class).orElse(true);
-    canSlot = item.findPropertyValue("bCanSlot", Boolean.class).orElse(true);
-    isEngram = item.findPropertyValue("bIsEngram", Boolean.class).orElse(false);
-    isBlueprint = item.findPropertyValue("bIsBlueprint", Boolean.class).orElse(false);
-    canRemove = item.findPropertyValue("bAllowRemovalFromInventory", Boolean.class).orElse(true);
-    canRemoveFromCluster = true;
-    isHidden = item.findPropertyValue("bHideFromInventoryDisplay", Boolean.class).orElse(false);
-
-    quantity = Math.max(1, item.findPropertyValue("ItemQuantity", Number.class).map(Number::intValue).orElse(1));
-
-    customName = item.findPropertyValue("CustomItemName", String.class).orElse("");
-
-    customDescription = item.findPropertyValue("CustomItemDescription", String.class).orElse("");
-
-    durability = item.findPropertyValue("SavedDurability", Float.class).orElse(0.0f);
-
-    rating = item.findPropertyValue("ItemRating", Float.class).orElse(0.0f);
-
-    quality = item.findPropertyValue("ItemQualityIndex", ArkByteValue.class).map(ArkByteValue::getByteValue).orElse((byte) 0);
-
-    nextSpoilingTime = item.findPropertyValue("NextSpoilingTime", Double.class).orElse(0.0);
-    lastSpoilingTime = item.findPropertyValue("LastSpoilingTime", Double.class).orElse(0.0);
-
-    for (int i = 0; i < ItemStatDefinitions.size(); i++) {
-      itemStatValues[i] = item.findPropertyValue("ItemStatValues", Short.class, i).orElse((short) 0);
-    }
-
-    for (int i = 0; i < itemColors.length; i++) {
-      itemColors[i] = item.findPropertyValue("ItemColorID", Short.class, i).orElse((short) 0);
-    }
-
-    for (int i = 0; i < preSkinItemColors.length; i++) {
-      preSkinItemColors[i] = item.findPropertyValue("PreSkinItemColorID", Short.class, i).orElse((short) 0);
-    }
-
-    for (int i = 0; i < eggLevelups.length; i++) {
-      eggLevelups[i] = item.findPropertyValue("EggNumberOfLevelUpPointsApplied", ArkByteValue.class, i).map(ArkByteValue::getByteValue).orElse((byte) 0);
-    }
-
-    for (int i = 0; i < eggColors.length; i++) {
-      eggColors[i] = item.findPropertyValue("EggColorSetIndices", ArkByteValue.class, i).map(ArkByteValue::getByteValue).orElse((byte) 0);
-    }
-
-    crafterCharacterName = item.findPropertyValue("CrafterCharacterName", String.class).orElse("");
-    crafterTribeName = item.findPropertyValue("CrafterTribeName", String.class).orElse("");
-    craftedSkillBonus = item.findPropertyValue("CraftedSkillBonus", Float.class).orElse(0.0f);
+    EXTRACTOR.extract(item, this, null);
   }
 
   /**
@@ -398,6 +384,14 @@ public class Item {
   }
 
   public GameObject toGameObject(Collection<GameObject> existingObjects, int ownerInventory) {
+    return toGameObject(new AllocationRegistry(existingObjects, existingObjects.size()), ownerInventory);
+  }
+
+  /**
+   * Creates a new item object with a free name and ItemID taken from registry.
+   * Neither gets reserved until the object is registered, {@link qowyn.ark.tools.ObjectCollector#add(GameObject)} does that.
+   */
+  public GameObject toGameObject(AllocationRegistry registry, int ownerInventory) {
     GameObject object = new GameObject();
 
     object.setClassName(className);
@@ -470,41 +464,7 @@ public class Item {
       object.getProperties().add(new PropertyFloat("CraftedSkillBonus", craftedSkillBonus));
     }
 
-    Set<Long> itemIDs = new HashSet<>(); // Stored as StructPropertyList with 2 UInt32
-    Set<ArkName> names = new HashSet<>();
-
-    for (GameObject existingObject : existingObjects) {
-      existingObject.getNames().forEach(names::add);
-
-      PropertyContainer itemID = existingObject.getPropertyValue("ItemId", PropertyContainer.class);
-      if (itemID != null) {
-        Integer itemID1 = itemID.getPropertyValue("ItemID1", Integer.class);
-        Integer itemID2 = itemID.getPropertyValue("ItemID2", Integer.class);
-        if (itemID1 != null && itemID2 != null) {
-          long id = (long) itemID1 << Integer.SIZE | (itemID2 & 0xFFFFFFFFL);
-          itemIDs.add(id);
-          continue;
-        }
-      }
-    }
-
-    Random random = new Random();
-
-    Function<ArkName, ArkName> findFreeName = name -> {
-      for (int i = 1; i < Integer.MAX_VALUE; i++) {
-        ArkName tempName = ArkName.from(name.getName(), i);
-        if (!names.contains(tempName)) {
-          return tempName;
-        }
-      }
-
-      throw new Error("This is insane.");
-    };
-
-    long randomId = random.nextLong();
-    while (itemIDs.contains(randomId)) {
-      randomId = random.nextLong();
-    }
+    long randomId = registry.allocateItemId();
 
     StructPropertyList struct = new StructPropertyList();
 
@@ -514,7 +474,7 @@ public class Item {
     object.getProperties().add(new PropertyStruct("ItemId", struct, ArkName.from("ItemNetID")));
 
     object.setNames(new ArrayList<>());
-    object.getNames().add(findFreeName.apply(className));
+    object.getNames().add(registry.allocateName(className));
 
     object.setItem(true);
 
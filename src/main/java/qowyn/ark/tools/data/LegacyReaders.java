@@ -0,0 +1,250 @@
+package qowyn.ark.tools.data;
+
+import java.util.List;
+
+import qowyn.ark.GameObjectContainer;
+import qowyn.ark.PropertyContainer;
+import qowyn.ark.arrays.ArkArrayObjectReference;
+import qowyn.ark.arrays.ArkArrayStruct;
+import qowyn.ark.structs.StructLinearColor;
+import qowyn.ark.structs.StructUniqueNetIdRepl;
+import qowyn.ark.types.ArkByteValue;
+import qowyn.ark.types.ObjectReference;
+
+/**
+ * Reads the same properties as the {@link PropertyExtractor}s of the data classes the way their constructors did
+ * before, with one findPropertyValue per field and array index. Reference for the extractors debug command, which
+ * compares both and times them against each other.
+ */
+public final class LegacyReaders {
+
+  @FunctionalInterface
+  public interface Reader<T, C> {
+
+    public void read(PropertyContainer source, T target, C context);
+
+  }
+
+  private LegacyReaders() {}
+
+  public static void item(PropertyContainer item, Item target, Void context) {
+    target.canEquip = item.findPropertyValue("bAllowEquppingItem", Boolean.class).orElse(true);
+    target.canSlot = item.findPropertyValue("bCanSlot", Boolean.class).orElse(true);
+    target.isEngram = item.findPropertyValue("bIsEngram", Boolean.class).orElse(false);
+    target.isBlueprint = item.findPropertyValue("bIsBlueprint", Boolean.class).orElse(false);
+    target.canRemove = item.findPropertyValue("bAllowRemovalFromInventory", Boolean.class).orElse(true);
+    target.canRemoveFromCluster = true;
+    target.isHidden = item.findPropertyValue("bHideFromInventoryDisplay", Boolean.class).orElse(false);
+
+    target.quantity = Math.max(1, item.findPropertyValue("ItemQuantity", Number.class).map(Number::intValue).orElse(1));
+
+    target.customName = item.findPropertyValue("CustomItemName", String.class).orElse("");
+
+    target.customDescription = item.findPropertyValue("CustomItemDescription", String.class).orElse("");
+
+    target.durability = item.findPropertyValue("SavedDurability", Float.class).orElse(0.0f);
+
+    target.rating = item.findPropertyValue("ItemRating", Float.class).orElse(0.0f);
+
+    target.quality = item.findPropertyValue("ItemQualityIndex", ArkByteValue.class).map(ArkByteValue::getByteValue).orElse((byte) 0);
+
+    target.nextSpoilingTime = item.findPropertyValue("NextSpoilingTime", Double.class).orElse(0.0);
+    target.lastSpoilingTime = item.findPropertyValue("LastSpoilingTime", Double.class).orElse(0.0);
+
+    for (int i = 0; i < ItemStatDefinitions.size(); i++) {
+      target.itemStatValues[i] = item.findPropertyValue("ItemStatValues", Short.class, i).orElse((short) 0);
+    }
+
+    for (int i = 0; i < target.itemColors.length; i++) {
+      target.itemColors[i] = item.findPropertyValue("ItemColorID", Short.class, i).orElse((short) 0);
+    }
+
+    for (int i = 0; i < target.preSkinItemColors.length; i++) {
+      target.preSkinItemColors[i] = item.findPropertyValue("PreSkinItemColorID", Short.class, i).orElse((short) 0);
+    }
+
+    for (int i = 0; i < target.eggLevelups.length; i++) {
+      target.eggLevelups[i] = item.findPropertyValue("EggNumberOfLevelUpPointsApplied", ArkByteValue.class, i).map(ArkByteValue::getByteValue).orElse((byte) 0);
+    }
+
+    for (int i = 0; i < target.eggColors.length; i++) {
+      target.eggColors[i] = item.findPropertyValue("EggColorSetIndices", ArkByteValue.class, i).map(ArkByteValue::getByteValue).orElse((byte) 0);
+    }
+
+    target.crafterCharacterName = item.findPropertyValue("CrafterCharacterName", String.class).orElse("");
+    target.crafterTribeName = item.findPropertyValue("CrafterTribeName", String.class).orElse("");
+    target.craftedSkillBonus = item.findPropertyValue("CraftedSkillBonus", Float.class).orElse(0.0f);
+  }
+
+  public static void creature(PropertyContainer creature, Creature target, GameObjectContainer container) {
+    int dinoID1 = creature.findPropertyValue("DinoID1", Integer.class).orElse(0);
+    int dinoID2 = creature.findPropertyValue("DinoID2", Integer.class).orElse(0);
+    target.dinoId = (long) dinoID1 << Integer.SIZE | (dinoID2 & 0xFFFFFFFFL);
+
+    target.targetingTeam = creature.findPropertyValue("TargetingTeam", Integer.class).orElse(0);
+
+    target.owningPlayerId = creature.findPropertyValue("OwningPlayerID", Integer.class).orElse(0);
+
+    target.isFemale = creature.findPropertyValue("bIsFemale", Boolean.class).orElse(false);
+
+    for (int i = 0; i < 6; i++) {
+      target.colorSetIndices[i] = creature.findPropertyValue("ColorSetIndices", ArkByteValue.class, i).map(ArkByteValue::getByteValue).orElse((byte) 0);
+    }
+
+    target.tamedAtTime = creature.findPropertyValue("TamedAtTime", Double.class).orElse(0.0);
+
+    target.tribeName = creature.findPropertyValue("TribeName", String.class).orElse("");
+
+    target.tamerString = creature.findPropertyValue("TamerString", String.class).orElse("");
+
+    target.owningPlayerName = creature.findPropertyValue("OwningPlayerName", String.class).orElse("");
+
+    target.tamedName = creature.findPropertyValue("TamedName", String.class).orElse("");
+
+    target.imprinterName = creature.findPropertyValue("ImprinterName", String.class).orElse("");
+
+    creature.findPropertyValue("DinoAncestors", ArkArrayStruct.class).ifPresent(ancestors -> Creature.readAncestors(ancestors, target.femaleAncestors));
+
+    creature.findPropertyValue("DinoAncestorsMale", ArkArrayStruct.class).ifPresent(ancestors -> Creature.readAncestors(ancestors, target.maleAncestors));
+
+    target.wildRandomScale = creature.findPropertyValue("WildRandomScale", Float.class).orElse(1.0f);
+
+    target.isWakingTame = creature.findPropertyValue("bIsWakingTame", Boolean.class).orElse(false);
+
+    target.isSleeping = creature.findPropertyValue("bIsSleeping", Boolean.class).orElse(false);
+
+    target.requiredTameAffinity = creature.findPropertyValue("RequiredTameAffinity", Float.class).orElse(0.0f);
+
+    target.currentTameAffinity = creature.findPropertyValue("CurrentTameAffinity", Float.class).orElse(0.0f);
+
+    target.tamedIneffectivenessModifier = creature.findPropertyValue("TameIneffectivenessModifier", Float.class).orElse(0.0f);
+
+    target.tamedFollowTarget = creature.findPropertyValue("TamedFollowTarget", ObjectReference.class).map(ObjectReference::getObjectId).orElse(-1);
+
+    target.tamingTeamID = creature.findPropertyValue("TamingTeamID", Integer.class).orElse(0);
+
+    target.tamedOnServerName = creature.findPropertyValue("TamedOnServerName", String.class).orElse("");
+
+    target.uploadedFromServerName = creature.findPropertyValue("UploadedFromServerName", String.class).orElse("");
+
+    target.tamedAggressionLevel = creature.findPropertyValue("TamedAggressionLevel", Integer.class).orElse(0);
+
+    target.matingProgress = creature.findPropertyValue("MatingProgress", Float.class).orElse(0.0f);
+
+    target.lastEnterStasisTime = creature.findPropertyValue("LastEnterStasisTime", Double.class).orElse(0.0);
+
+    target.status = creature.findPropertyValue("MyCharacterStatusComponent", ObjectReference.class).map(container::getObject).orElse(null);
+
+    target.inventory = creature.findPropertyValue("MyInventoryComponent", ObjectReference.class).map(container::getObject).orElse(null);
+  }
+
+  public static void creatureStatus(PropertyContainer status, Creature target, GameObjectContainer container) {
+    target.baseCharacterLevel = status.findPropertyValue("BaseCharacterLevel", Integer.class).orElse(1);
+
+    for (int index = 0; index < AttributeNames.size(); index++) {
+      target.numberOfLevelUpPointsApplied[index] = status.findPropertyValue("NumberOfLevelUpPointsApplied", ArkByteValue.class, index).map(ArkByteValue::getByteValue).orElse((byte) 0);
+    }
+
+    target.extraCharacterLevel = status.findPropertyValue("ExtraCharacterLevel", Short.class).orElse((short) 0);
+
+    for (int index = 0; index < AttributeNames.size(); index++) {
+      target.numberOfLevelUpPointsAppliedTamed[index] = status.findPropertyValue("NumberOfLevelUpPointsAppliedTamed", ArkByteValue.class, index).map(ArkByteValue::getByteValue).orElse((byte) 0);
+    }
+
+    target.allowLevelUps = status.findPropertyValue("bAllowLevelUps", Boolean.class).orElse(false);
+
+    target.experiencePoints = status.findPropertyValue("ExperiencePoints", Float.class).orElse(0.0f);
+
+    target.dinoImprintingQuality = status.findPropertyValue("DinoImprintingQuality", Float.class).orElse(0.0f);
+
+    target.tamedIneffectivenessModifier = status.findPropertyValue("TamedIneffectivenessModifier", Float.class).orElse(target.tamedIneffectivenessModifier);
+  }
+
+  public static void structure(PropertyContainer structure, Structure target, GameObjectContainer saveFile) {
+    target.inventory = structure.findPropertyValue("MyInventoryComponent", ObjectReference.class).map(saveFile::getObject).orElse(null);
+
+    target.containerActivated = structure.findPropertyValue("bContainerActivated", Boolean.class).orElse(false);
+
+    target.owningPlayerId = structure.findPropertyValue("OwningPlayerID", Integer.class).orElse(0);
+
+    target.owningPlayerName = structure.findPropertyValue("OwningPlayerName", String.class).orElse("");
+
+    ArkArrayObjectReference linkedStructuresReferences = structure.getPropertyValue("LinkedStructures", ArkArrayObjectReference.class);
+
+    if (linkedStructuresReferences != null) {
+      target.linkedStructures = new int[linkedStructuresReferences.size()];
+      int index = 0;
+      for (ObjectReference ref: linkedStructuresReferences) {
+        target.linkedStructures[index++] = ref.getObjectId();
+      }
+    }
+
+    target.placedOnFloorStructure = structure.findPropertyValue("PlacedOnFloorStructure", ObjectReference.class).map(ObjectReference::getObjectId).orElse(-1);
+
+    target.ownerName = structure.findPropertyValue("OwnerName", String.class).orElse("");
+    target.boxName = structure.findPropertyValue("BoxName", String.class).orElse("");
+    target.bedName = structure.findPropertyValue("BedName", String.class).orElse("");
+
+    target.maxHealth = structure.findPropertyValue("MaxHealth", Float.class).orElse(0.0f);
+
+    target.health = structure.findPropertyValue("Health", Float.class).orElse(target.maxHealth);
+
+    target.targetingTeam = structure.findPropertyValue("TargetingTeam", Integer.class).orElse(0);
+  }
+
+  public static void droppedItem(PropertyContainer droppedItem, DroppedItem target, GameObjectContainer container) {
+    target.myItem = droppedItem.findPropertyValue("MyItem", ObjectReference.class).map(container::getObject).orElse(null);
+    target.droppedByName = droppedItem.findPropertyValue("DroppedByName", String.class).orElse("");
+    target.targetingTeam = droppedItem.findPropertyValue("TargetingTeam", Integer.class).orElse(0);
+    target.originalCreationTime = droppedItem.findPropertyValue("OriginalCreationTime", Double.class).orElse(0.0);
+    target.initialLifeSpan = droppedItem.findPropertyValue("InitialLifeSpan", Float.class).orElse(Float.POSITIVE_INFINITY);
+  }
+
+  public static void playerData(PropertyContainer myData, Player target, Void context) {
+    target.uniqueId = myData.getPropertyValue("UniqueID", StructUniqueNetIdRepl.class);
+    target.savedNetworkAddress = myData.getPropertyValue("SavedNetworkAddress", String.class);
+    target.playerName = myData.getPropertyValue("PlayerName", String.class);
+    target.tribeId = myData.findPropertyValue("TribeID", Integer.class).orElse(0);
+    target.playerDataVersion = myData.findPropertyValue("PlayerDataVersion", Integer.class).orElse(0);
+    target.spawnDayNumber = myData.findPropertyValue("SpawnDayNumber", Integer.class).orElse(0);
+    target.spawnDayTime = myData.findPropertyValue("SpawnDayTime", Float.class).orElse(0.0f);
+  }
+
+  public static void playerConfig(PropertyContainer characterConfig, Player target, Void context) {
+    target.isFemale = characterConfig.findPropertyValue("bIsFemale", Boolean.class).orElse(false);
+    for (int i = 0; i < PlayerBodyColorRegions.size(); i++) {
+      target.bodyColors[i] = characterConfig.getPropertyValue("BodyColors", StructLinearColor.class, i);
+    }
+    target.overrideHeadHairColor = characterConfig.getPropertyValue("OverrideHeadHairColor", StructLinearColor.class);
+    target.overrideFacialHairColor = characterConfig.getPropertyValue("OverrideFacialHairColor", StructLinearColor.class);
+    target.facialHairIndex = characterConfig.findPropertyValue("FacialHairIndex", ArkByteValue.class).map(ArkByteValue::getByteValue).orElse((byte) 0);
+    target.headHairIndex = characterConfig.findPropertyValue("HeadHairIndex", ArkByteValue.class).map(ArkByteValue::getByteValue).orElse((byte) 0);
+    target.playerCharacterName = characterConfig.findPropertyValue("PlayerCharacterName", String.class).orElse("");
+    for (int i = 0; i < PlayerBoneModifierNames.size(); i++) {
+      target.rawBoneModifiers[i] = characterConfig.findPropertyValue("RawBoneModifiers", Float.class, i).orElse(0.0f);
+    }
+  }
+
+  public static void playerStats(PropertyContainer characterStats, Player target, Void context) {
+    target.characterLevel = characterStats.findPropertyValue("CharacterStatusComponent_ExtraCharacterLevel", Short.class).orElse((short) 0) + 1;
+    target.experiencePoints = characterStats.findPropertyValue("CharacterStatusComponent_ExperiencePoints", Float.class).orElse(0.0f);
+    target.totalEngramPoints = characterStats.findPropertyValue("PlayerState_TotalEngramPoints", Integer.class).orElse(0);
+
+    List<ObjectReference> learnedEngrams = characterStats.getPropertyValue("PlayerState_EngramBlueprints", ArkArrayObjectReference.class);
+
+    if (learnedEngrams != null) {
+      for (ObjectReference reference : learnedEngrams) {
+        target.engramBlueprints.add(reference.getObjectString().toString());
+      }
+    }
+
+    for (int i = 0; i < AttributeNames.size(); i++) {
+      target.numberOfLevelUpPointsApplied[i] = characterStats.findPropertyValue("CharacterStatusComponent_NumberOfLevelUpPointsApplied", ArkByteValue.class, i)
+          .map(ArkByteValue::getByteValue).orElse((byte) 0);
+    }
+
+    target.percentageOfHeadHairGrowth = characterStats.findPropertyValue("PercentageOfHeadHairGrowth", Float.class).orElse(0.0f);
+    target.percentageOfFacialHairGrowth = characterStats.findPropertyValue("PercentageOfFacialHairGrowth", Float.class).orElse(0.0f);
+  }
+
+}
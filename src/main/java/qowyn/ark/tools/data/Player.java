@@ -1,5 +1,7 @@
 package qowyn.ark.tools.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -19,6 +21,7 @@ import qowyn.ark.structs.StructLinearColor;
 import qowyn.ark.structs.StructPropertyList;
 import qowyn.ark.structs.StructUniqueNetIdRepl;
 import qowyn.ark.tools.CommonFunctions;
+import qowyn.ark.tools.ProfileCache;
 import qowyn.ark.types.ArkByteValue;
 import qowyn.ark.types.LocationData;
 import qowyn.ark.types.ObjectReference;
@@ -91,6 +94,68 @@ public class Player {
 
   public final float[] currentStatusValues = new float[AttributeNames.size()];
 
+  private static final PropertyExtractor<Player, Void> MY_DATA_EXTRACTOR = new PropertyExtractor<>();
+
+  private static final PropertyExtractor<Player, Void> CONFIG_EXTRACTOR = new PropertyExtractor<>();
+
+  private static final PropertyExtractor<Player, Void> STATS_EXTRACTOR = new PropertyExtractor<>();
+
+  private static final PropertyExtractor<Player, Void> STATUS_EXTRACTOR = new PropertyExtractor<>();
+
+  static {
+    MY_DATA_EXTRACTOR.add("UniqueID", StructUniqueNetIdRepl.class, (player, value) -> player.uniqueId = value);
+    MY_DATA_EXTRACTOR.add("SavedNetworkAddress", String.class, (player, value) -> player.savedNetworkAddress = value);
+    MY_DATA_EXTRACTOR.add("PlayerName", String.class, (player, value) -> player.playerName = value);
+    MY_DATA_EXTRACTOR.add("TribeID", Integer.class, (player, value) -> player.tribeId = value);
+    MY_DATA_EXTRACTOR.add("PlayerDataVersion", Integer.class, (player, value) -> player.playerDataVersion = value);
+    MY_DATA_EXTRACTOR.add("SpawnDayNumber", Integer.class, (player, value) -> player.spawnDayNumber = value);
+    MY_DATA_EXTRACTOR.add("SpawnDayTime", Float.class, (player, value) -> player.spawnDayTime = value);
+
+    CONFIG_EXTRACTOR.add("bIsFemale", Boolean.class, (player, value) -> player.isFemale = value);
+    CONFIG_EXTRACTOR.add("BodyColors", StructLinearColor.class, PlayerBodyColorRegions.size(), (player, context, index, value) -> player.bodyColors[index] = value);
+    CONFIG_EXTRACTOR.add("OverrideHeadHairColor", StructLinearColor.class, (player, value) -> player.overrideHeadHairColor = value);
+    CONFIG_EXTRACTOR.add("OverrideFacialHairColor", StructLinearColor.class, (player, value) -> player.overrideFacialHairColor = value);
+    CONFIG_EXTRACTOR.add("FacialHairIndex", ArkByteValue.class, (player, value) -> player.facialHairIndex = value.getByteValue());
+    CONFIG_EXTRACTOR.add("HeadHairIndex", ArkByteValue.class, (player, value) -> player.headHairIndex = value.getByteValue());
+    CONFIG_EXTRACTOR.add("PlayerCharacterName", String.class, (player, value) -> player.playerCharacterName = value, player -> player.playerCharacterName = "");
+    CONFIG_EXTRACTOR.add("RawBoneModifiers", Float.class, PlayerBoneModifierNames.size(), (player, context, index, value) -> player.rawBoneModifiers[index] = value);
+
+    STATS_EXTRACTOR.add("CharacterStatusComponent_ExtraCharacterLevel", Short.class, (player, value) -> player.characterLevel = value + 1, player -> player.characterLevel = 1);
+    STATS_EXTRACTOR.add("CharacterStatusComponent_ExperiencePoints", Float.class, (player, value) -> player.experiencePoints = value);
+    STATS_EXTRACTOR.add("PlayerState_TotalEngramPoints", Integer.class, (player, value) -> player.totalEngramPoints = value);
+    STATS_EXTRACTOR.add("PlayerState_EngramBlueprints", ArkArrayObjectReference.class, (player, value) -> {
+      for (ObjectReference reference : value) {
+        player.engramBlueprints.add(reference.getObjectString().toString());
+      }
+    });
+    STATS_EXTRACTOR.add("CharacterStatusComponent_NumberOfLevelUpPointsApplied", ArkByteValue.class, AttributeNames.size(),
+        (player, context, index, value) -> player.numberOfLevelUpPointsApplied[index] = value.getByteValue());
+    STATS_EXTRACTOR.add("PercentageOfHeadHairGrowth", Float.class, (player, value) -> player.percentageOfHeadHairGrowth = value);
+    STATS_EXTRACTOR.add("PercentageOfFacialHairGrowth", Float.class, (player, value) -> player.percentageOfFacialHairGrowth = value);
+
+    STATUS_EXTRACTOR.add("LastHypothermalCharacterInsulationValue", Float.class, (player, value) -> player.lastHypothermalCharacterInsulationValue = value);
+    STATUS_EXTRACTOR.add("LastHyperthermalCharacterInsulationValue", Float.class, (player, value) -> player.lastHyperthermalCharacterInsulationValue = value);
+    STATUS_EXTRACTOR.add("CurrentStatusValues", Float.class, AttributeNames.size(), (player, context, index, value) -> player.currentStatusValues[index] = value);
+  }
+
+  public static PropertyExtractor<Player, Void> myDataExtractor() {
+    return MY_DATA_EXTRACTOR;
+  }
+
+  public static PropertyExtractor<Player, Void> configExtractor() {
+    return CONFIG_EXTRACTOR;
+  }
+
+  public static PropertyExtractor<Player, Void> statsExtractor() {
+    return STATS_EXTRACTOR;
+  }
+
+  public static PropertyExtractor<Player, Void> statusExtractor() {
+    return STATUS_EXTRACTOR;
+  }
+
+  public Player() {}
+
   public Player(Path path, DataContext context) throws IOException {
     this(path, context, ReadingOptions.create());
   }
@@ -103,88 +168,151 @@ public class Player {
     StructPropertyList myData = profile.getPropertyValue("MyData", StructPropertyList.class);
 
     playerDataId = myData.getPropertyValue("PlayerDataID", Long.class);
-    uniqueId = myData.getPropertyValue("UniqueID", StructUniqueNetIdRepl.class);
-    savedNetworkAddress = myData.getPropertyValue("SavedNetworkAddress", String.class);
-    playerName = myData.getPropertyValue("PlayerName", String.class);
-    tribeId = myData.findPropertyValue("TribeID", Integer.class).orElse(0);
-    playerDataVersion = myData.findPropertyValue("PlayerDataVersion", Integer.class).orElse(0);
-    spawnDayNumber = myData.findPropertyValue("SpawnDayNumber", Integer.class).orElse(0);
-    spawnDayTime = myData.findPropertyValue("SpawnDayTime", Float.class).orElse(0.0f);
+    MY_DATA_EXTRACTOR.extract(myData, this, null);
 
     PropertyContainer characterConfig = myData.getPropertyValue("MyPlayerCharacterConfig", PropertyContainer.class);
 
     // Character data
 
-    isFemale = characterConfig.findPropertyValue("bIsFemale", Boolean.class).orElse(false);
-    for (int i = 0; i < PlayerBodyColorRegions.size(); i++) {
-      bodyColors[i] = characterConfig.getPropertyValue("BodyColors", StructLinearColor.class, i);
-    }
-    overrideHeadHairColor = characterConfig.getPropertyValue("OverrideHeadHairColor", StructLinearColor.class);
-    overrideFacialHairColor = characterConfig.getPropertyValue("OverrideFacialHairColor", StructLinearColor.class);
-    facialHairIndex = characterConfig.findPropertyValue("FacialHairIndex", ArkByteValue.class).map(ArkByteValue::getByteValue).orElse((byte) 0);
-    headHairIndex = characterConfig.findPropertyValue("HeadHairIndex", ArkByteValue.class).map(ArkByteValue::getByteValue).orElse((byte) 0);
-    playerCharacterName = characterConfig.findPropertyValue("PlayerCharacterName", String.class).orElse("");
-    for (int i = 0; i < PlayerBoneModifierNames.size(); i++) {
-      rawBoneModifiers[i] = characterConfig.findPropertyValue("RawBoneModifiers", Float.class, i).orElse(0.0f);
-    }
+    CONFIG_EXTRACTOR.extract(characterConfig, this, null);
 
     PropertyContainer characterStats = myData.getPropertyValue("MyPersistentCharacterStats", PropertyContainer.class);
 
-    characterLevel = characterStats.findPropertyValue("CharacterStatusComponent_ExtraCharacterLevel", Short.class).orElse((short) 0) + 1;
-    experiencePoints = characterStats.findPropertyValue("CharacterStatusComponent_ExperiencePoints", Float.class).orElse(0.0f);
-    totalEngramPoints = characterStats.findPropertyValue("PlayerState_TotalEngramPoints", Integer.class).orElse(0);
+    STATS_EXTRACTOR.extract(characterStats, this, null);
 
-    List<ObjectReference> learnedEngrams = characterStats.getPropertyValue("PlayerState_EngramBlueprints", ArkArrayObjectReference.class);
+    readMapData(context);
+  }
 
-    if (learnedEngrams != null) {
-      for (ObjectReference reference : learnedEngrams) {
-        engramBlueprints.add(reference.getObjectString().toString());
-      }
+  /**
+   * Reads data written by {@link #writeProfileData(DataOutput)}, everything else gets read from context
+   */
+  public Player(DataInput input, DataContext context) throws IOException {
+    savedPlayerDataVersion = input.readInt();
+    playerDataId = input.readLong();
+    if (input.readBoolean()) {
+      uniqueId = new StructUniqueNetIdRepl(input.readInt(), ProfileCache.readString(input));
     }
+    savedNetworkAddress = ProfileCache.readString(input);
+    playerName = ProfileCache.readString(input);
+    tribeId = input.readInt();
+    playerDataVersion = input.readInt();
+    spawnDayNumber = input.readInt();
+    spawnDayTime = input.readFloat();
+
+    isFemale = input.readBoolean();
+    for (int index = 0; index < bodyColors.length; index++) {
+      bodyColors[index] = readColor(input);
+    }
+    overrideHeadHairColor = readColor(input);
+    overrideFacialHairColor = readColor(input);
+    facialHairIndex = input.readByte();
+    headHairIndex = input.readByte();
+    playerCharacterName = ProfileCache.readString(input);
+    for (int index = 0; index < rawBoneModifiers.length; index++) {
+      rawBoneModifiers[index] = input.readFloat();
+    }
+    playerSpawnRegionIndex = input.readInt();
+
+    characterLevel = input.readInt();
+    experiencePoints = input.readFloat();
+    totalEngramPoints = input.readInt();
+    int engramCount = input.readInt();
+    for (int index = 0; index < engramCount; index++) {
+      engramBlueprints.add(ProfileCache.readString(input));
+    }
+    input.readFully(numberOfLevelUpPointsApplied);
+    percentageOfHeadHairGrowth = input.readFloat();
+    percentageOfFacialHairGrowth = input.readFloat();
 
-    for (int i = 0; i < AttributeNames.size(); i++) {
-      numberOfLevelUpPointsApplied[i] = characterStats.findPropertyValue("CharacterStatusComponent_NumberOfLevelUpPointsApplied", ArkByteValue.class, i)
-          .map(ArkByteValue::getByteValue).orElse((byte) 0);
+    readMapData(context);
+  }
+
+  /**
+   * Writes all data which has been read from the profile, but nothing read from the map
+   */
+  public void writeProfileData(DataOutput output) throws IOException {
+    output.writeInt(savedPlayerDataVersion);
+    output.writeLong(playerDataId);
+    output.writeBoolean(uniqueId != null);
+    if (uniqueId != null) {
+      output.writeInt(uniqueId.getUnk());
+      ProfileCache.writeString(output, uniqueId.getNetId());
+    }
+    ProfileCache.writeString(output, savedNetworkAddress);
+    ProfileCache.writeString(output, playerName);
+    output.writeInt(tribeId);
+    output.writeInt(playerDataVersion);
+    output.writeInt(spawnDayNumber);
+    output.writeFloat(spawnDayTime);
+
+    output.writeBoolean(isFemale);
+    for (StructLinearColor color : bodyColors) {
+      writeColor(output, color);
+    }
+    writeColor(output, overrideHeadHairColor);
+    writeColor(output, overrideFacialHairColor);
+    output.writeByte(facialHairIndex);
+    output.writeByte(headHairIndex);
+    ProfileCache.writeString(output, playerCharacterName);
+    for (float rawBoneModifier : rawBoneModifiers) {
+      output.writeFloat(rawBoneModifier);
     }
+    output.writeInt(playerSpawnRegionIndex);
+
+    output.writeInt(characterLevel);
+    output.writeFloat(experiencePoints);
+    output.writeInt(totalEngramPoints);
+    output.writeInt(engramBlueprints.size());
+    for (String engramBlueprint : engramBlueprints) {
+      ProfileCache.writeString(output, engramBlueprint);
+    }
+    output.write(numberOfLevelUpPointsApplied);
+    output.writeFloat(percentageOfHeadHairGrowth);
+    output.writeFloat(percentageOfFacialHairGrowth);
+  }
 
-    percentageOfHeadHairGrowth = characterStats.findPropertyValue("PercentageOfHeadHairGrowth", Float.class).orElse(0.0f);
-    percentageOfFacialHairGrowth = characterStats.findPropertyValue("PercentageOfFacialHairGrowth", Float.class).orElse(0.0f);
+  private static StructLinearColor readColor(DataInput input) throws IOException {
+    if (!input.readBoolean()) {
+      return null;
+    }
 
+    return new StructLinearColor(input.readFloat(), input.readFloat(), input.readFloat(), input.readFloat());
+  }
+
+  private static void writeColor(DataOutput output, StructLinearColor color) throws IOException {
+    output.writeBoolean(color != null);
+    if (color != null) {
+      output.writeFloat(color.getR());
+      output.writeFloat(color.getG());
+      output.writeFloat(color.getB());
+      output.writeFloat(color.getA());
+    }
+  }
+
+  private void readMapData(DataContext context) {
     if (context.getObjectContainer() == null) {
       return;
     }
 
-    GameObject player = null;
-    for (GameObject object : context.getObjectContainer().getObjects()) {
-      Long linkedPlayerDataId = object.getPropertyValue("LinkedPlayerDataID", Long.class);
-      if (linkedPlayerDataId != null && linkedPlayerDataId == playerDataId) {
-        player = object;
-        break;
-      }
+    PlayerIndex playerIndex = context.getPlayerIndex();
+    if (playerIndex == null) {
+      // Indexing the map per profile would scan all objects again for every player
+      throw new IllegalStateException("DataContext has an object container but no PlayerIndex");
     }
 
+    GameObject player = playerIndex.getPawn(playerDataId);
+
     if (player == null) {
       return;
     }
 
-    GameObject playerCharacterStatus = null;
-    for (GameObject object : context.getObjectContainer().getObjects()) {
-      if (object.getNames().size() == 2 && object.getNames().get(0).toString().equals("PlayerCharacterStatus") && object.getNames().get(1) == player.getNames().get(0)) {
-        playerCharacterStatus = object;
-        break;
-      }
-    }
+    GameObject playerCharacterStatus = playerIndex.getCharacterStatus(player);
 
     inventory = player.findPropertyValue("MyInventoryComponent", ObjectReference.class).map(context.getObjectContainer()::getObject).orElse(null);
     location = player.getLocation();
 
     if (playerCharacterStatus != null) {
-      lastHypothermalCharacterInsulationValue = playerCharacterStatus.findPropertyValue("LastHypothermalCharacterInsulationValue", Float.class).orElse(0.0f);
-      lastHyperthermalCharacterInsulationValue = playerCharacterStatus.findPropertyValue("LastHyperthermalCharacterInsulationValue", Float.class).orElse(0.0f);
-
-      for (int index = 0; index < AttributeNames.size(); index++) {
-        currentStatusValues[index] = playerCharacterStatus.findPropertyValue("CurrentStatusValues", Float.class, index).orElse(0.0f);
-      }
+      STATUS_EXTRACTOR.extract(playerCharacterStatus, this, null);
     }
   }
 
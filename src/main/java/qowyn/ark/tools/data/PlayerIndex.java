@@ -0,0 +1,47 @@
+package qowyn.ark.tools.data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import qowyn.ark.GameObject;
+import qowyn.ark.GameObjectContainer;
+import qowyn.ark.types.ArkName;
+
+/**
+ * Maps LinkedPlayerDataID to player pawns and pawn names to their PlayerCharacterStatus,
+ * built in a single pass over the container. Read-only after construction.
+ */
+public class PlayerIndex {
+
+  private static final String PLAYER_CHARACTER_STATUS = "PlayerCharacterStatus";
+
+  private final Map<Long, GameObject> pawnMap = new HashMap<>();
+
+  private final Map<ArkName, GameObject> statusMap = new HashMap<>();
+
+  public PlayerIndex(GameObjectContainer container) {
+    for (GameObject object : container.getObjects()) {
+      Long linkedPlayerDataId = object.getPropertyValue("LinkedPlayerDataID", Long.class);
+      if (linkedPlayerDataId != null) {
+        // First match wins, same as the old linear search
+        pawnMap.putIfAbsent(linkedPlayerDataId, object);
+        continue;
+      }
+
+      List<ArkName> names = object.getNames();
+      if (names.size() == 2 && names.get(0).toString().equals(PLAYER_CHARACTER_STATUS)) {
+        statusMap.putIfAbsent(names.get(1), object);
+      }
+    }
+  }
+
+  public GameObject getPawn(long playerDataId) {
+    return pawnMap.get(playerDataId);
+  }
+
+  public GameObject getCharacterStatus(GameObject pawn) {
+    return statusMap.get(pawn.getNames().get(0));
+  }
+
+}
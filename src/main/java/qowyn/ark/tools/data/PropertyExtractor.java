@@ -0,0 +1,156 @@
+package qowyn.ark.tools.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import qowyn.ark.PropertyContainer;
+import qowyn.ark.properties.Property;
+
+/**
+ * Fills fields of T from a {@link PropertyContainer} in a single pass over its properties.
+ * <p>
+ * Every registered property name maps to a slot per array index. For each slot only the first property
+ * with matching name and index is considered, and the setter is only called if its value has the expected
+ * type. Slots registered with a fallback run it afterwards if they got no value. This matches
+ * <code>findPropertyValue(name, type, index).orElse(...)</code> for every slot, which the extractors debug
+ * command verifies against {@link LegacyReaders}.
+ *
+ * @param <T> type of the object being filled
+ * @param <C> additional context passed to setters, for example to resolve ObjectReferences
+ */
+public class PropertyExtractor<T, C> {
+
+  @FunctionalInterface
+  public interface Setter<T, C, V> {
+
+    public void accept(T target, C context, int index, V value);
+
+  }
+
+  private static final byte SEEN = 1;
+
+  private static final byte APPLIED = 2;
+
+  private final Map<String, Slot<T, C, ?>> slotMap = new HashMap<>();
+
+  private final List<Slot<T, C, ?>> fallbackList = new ArrayList<>();
+
+  private int slotCount;
+
+  /**
+   * State of each slot during {@link #extract(PropertyContainer, Object, Object)}, reused for every object
+   */
+  private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[slotCount]);
+
+  public <V> PropertyExtractor<T, C> add(String name, Class<V> type, BiConsumer<T, V> setter) {
+    return add(name, type, 1, (target, context, index, value) -> setter.accept(target, value), null);
+  }
+
+  /**
+   * Registers name with fallback, which gets called if name has no value of type
+   */
+  public <V> PropertyExtractor<T, C> add(String name, Class<V> type, BiConsumer<T, V> setter, Consumer<T> fallback) {
+    return add(name, type, 1, (target, context, index, value) -> setter.accept(target, value), fallback);
+  }
+
+  public <V> PropertyExtractor<T, C> add(String name, Class<V> type, Setter<T, C, V> setter) {
+    return add(name, type, 1, setter, null);
+  }
+
+  /**
+   * Registers count slots for indices 0 to count - 1 of name
+   */
+  public <V> PropertyExtractor<T, C> add(String name, Class<V> type, int count, Setter<T, C, V> setter) {
+    return add(name, type, count, setter, null);
+  }
+
+  private <V> PropertyExtractor<T, C> add(String name, Class<V> type, int count, Setter<T, C, V> setter, Consumer<T> fallback) {
+    if (slotMap.containsKey(name)) {
+      throw new IllegalArgumentException("Duplicate property " + name);
+    }
+
+    Slot<T, C, V> slot = new Slot<>(type, count, slotCount, setter, fallback);
+    slotMap.put(name, slot);
+    if (fallback != null) {
+      fallbackList.add(slot);
+    }
+    slotCount += count;
+    return this;
+  }
+
+  /**
+   * Applies all properties of source to target, then the fallbacks of slots without a value. Not reentrant:
+   * setters must not use this extractor themselves.
+   */
+  public void extract(PropertyContainer source, T target, C context) {
+    byte[] state = scratch.get();
+    if (state.length < slotCount) {
+      state = new byte[slotCount];
+      scratch.set(state);
+    } else {
+      Arrays.fill(state, 0, slotCount, (byte) 0);
+    }
+
+    for (Property<?> property : source.getProperties()) {
+      Slot<T, C, ?> slot = slotMap.get(property.getNameString());
+      if (slot == null) {
+        continue;
+      }
+
+      int index = property.getIndex();
+      if (index < 0 || index >= slot.count) {
+        continue;
+      }
+
+      int position = slot.offset + index;
+      if (state[position] != 0) {
+        continue;
+      }
+
+      state[position] = slot.apply(target, context, index, property.getValue()) ? APPLIED : SEEN;
+    }
+
+    for (Slot<T, C, ?> slot : fallbackList) {
+      if (state[slot.offset] != APPLIED) {
+        slot.fallback.accept(target);
+      }
+    }
+  }
+
+  private static class Slot<T, C, V> {
+
+    private final Class<V> type;
+
+    private final int count;
+
+    private final int offset;
+
+    private final Setter<T, C, V> setter;
+
+    private final Consumer<T> fallback;
+
+    public Slot(Class<V> type, int count, int offset, Setter<T, C, V> setter, Consumer<T> fallback) {
+      this.type = type;
+      this.count = count;
+      this.offset = offset;
+      this.setter = setter;
+      this.fallback = fallback;
+    }
+
+    public boolean apply(T target, C context, int index, Object value) {
+      if (!type.isInstance(value)) {
+        return false;
+      }
+
+      setter.accept(target, context, index, type.cast(value));
+      return true;
+    }
+
+  }
+
+}
@@ -51,6 +51,36 @@ public class Structure {
 
   public int targetingTeam;
 
+  private static final PropertyExtractor<Structure, GameObjectContainer> EXTRACTOR = new PropertyExtractor<>();
+
+  static {
+    EXTRACTOR.add("MyInventoryComponent", ObjectReference.class, (structure, saveFile, index, value) -> structure.inventory = saveFile.getObject(value));
+    EXTRACTOR.add("bContainerActivated", Boolean.class, (structure, value) -> structure.containerActivated = value);
+    EXTRACTOR.add("OwningPlayerID", Integer.class, (structure, value) -> structure.owningPlayerId = value);
+    EXTRACTOR.add("OwningPlayerName", String.class, (structure, value) -> structure.owningPlayerName = value, structure -> structure.owningPlayerName = "");
+    EXTRACTOR.add("LinkedStructures", ArkArrayObjectReference.class, (structure, value) -> {
+      structure.linkedStructures = new int[value.size()];
+      int index = 0;
+      for (ObjectReference ref: value) {
+        structure.linkedStructures[index++] = ref.getObjectId();
+      }
+    });
+    EXTRACTOR.add("PlacedOnFloorStructure", ObjectReference.class, (structure, value) -> structure.placedOnFloorStructure = value.getObjectId(), structure -> structure.placedOnFloorStructure = -1);
+    EXTRACTOR.add("OwnerName", String.class, (structure, value) -> structure.ownerName = value, structure -> structure.ownerName = "");
+    EXTRACTOR.add("BoxName", String.class, (structure, value) -> structure.boxName = value, structure -> structure.boxName = "");
+    EXTRACTOR.add("BedName", String.class, (structure, value) -> structure.bedName = value, structure -> structure.bedName = "");
+    EXTRACTOR.add("MaxHealth", Float.class, (structure, value) -> structure.maxHealth = value);
+    // Fallbacks run after all properties, so MaxHealth is known
+    EXTRACTOR.add("Health", Float.class, (structure, value) -> structure.health = value, structure -> structure.health = structure.maxHealth);
+    EXTRACTOR.add("TargetingTeam", Integer.class, (structure, value) -> structure.targetingTeam = value);
+  }
+
+  public static PropertyExtractor<Structure, GameObjectContainer> extractor() {
+    return EXTRACTOR;
+  }
+
+  public Structure() {}
+
   public Structure(GameObject structure, GameObjectContainer saveFile) {
     id = structure.getNames().get(0).toString();
 
@@ -60,35 +90,7 @@ public class Structure {
 
     location = structure.getLocation();
 
-    inventory = structure.findPropertyValue("MyInventoryComponent", ObjectReference.class).map(saveFile::getObject).orElse(null);
-
-    containerActivated = structure.findPropertyValue("bContainerActivated", Boolean.class).orElse(false);
-
-    owningPlayerId = structure.findPropertyValue("OwningPlayerID", Integer.class).orElse(0);
-
-    owningPlayerName = structure.findPropertyValue("OwningPlayerName", String.class).orElse("");
-
-    ArkArrayObjectReference linkedStructuresReferences = structure.getPropertyValue("LinkedStructures", ArkArrayObjectReference.class);
-
-    if (linkedStructuresReferences != null) {
-      linkedStructures = new int[linkedStructuresReferences.size()];
-      int index = 0;
-      for (ObjectReference ref: linkedStructuresReferences) {
-        linkedStructures[index++] = ref.getObjectId();
-      }
-    }
-
-    placedOnFloorStructure = structure.findPropertyValue("PlacedOnFloorStructure", ObjectReference.class).map(ObjectReference::getObjectId).orElse(-1);
-
-    ownerName = structure.findPropertyValue("OwnerName", String.class).orElse("");
-    boxName = structure.findPropertyValue("BoxName", String.class).orElse("");
-    bedName = structure.findPropertyValue("BedName", String.class).orElse("");
-
-    maxHealth = structure.findPropertyValue("MaxHealth", Float.class).orElse(0.0f);
-
-    health = structure.findPropertyValue("Health", Float.class).orElse(maxHealth);
-
-    targetingTeam = structure.findPropertyValue("TargetingTeam", Integer.class).orElse(0);
+    EXTRACTOR.extract(structure, this, saveFile);
   }
 
   public static final SortedMap<String, WriterFunction<Structure>> PROPERTIES = new TreeMap<>();
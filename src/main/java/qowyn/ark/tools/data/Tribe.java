@@ -1,5 +1,7 @@
 package qowyn.ark.tools.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -18,6 +20,7 @@ import qowyn.ark.arrays.ArkArrayStruct;
 import qowyn.ark.arrays.ArkArrayUInt32;
 import qowyn.ark.structs.Struct;
 import qowyn.ark.structs.StructPropertyList;
+import qowyn.ark.tools.ProfileCache;
 
 public class Tribe {
 
@@ -124,6 +127,91 @@ public class Tribe {
     }
   }
 
+  /**
+   * Reads data written by {@link #writeTribeData(DataOutput)}
+   */
+  public Tribe(DataInput input) throws IOException {
+    tribeName = ProfileCache.readString(input);
+    ownerPlayerDataId = input.readInt();
+    tribeId = input.readInt();
+
+    int memberCount = input.readInt();
+    for (int index = 0; index < memberCount; index++) {
+      membersPlayerName.add(ProfileCache.readString(input));
+    }
+    memberCount = input.readInt();
+    for (int index = 0; index < memberCount; index++) {
+      membersPlayerDataId.add(input.readInt());
+    }
+    int adminCount = input.readInt();
+    for (int index = 0; index < adminCount; index++) {
+      tribeAdmins.add(input.readInt());
+    }
+    int rankGroupCount = input.readInt();
+    for (int index = 0; index < rankGroupCount; index++) {
+      membersRankGroups.add(input.readByte());
+    }
+
+    setGovernment = input.readBoolean();
+    tribeGovernPINCode = input.readInt();
+    tribeGovernDinoOwnership = input.readInt();
+    tribeGovernStructureOwnership = input.readInt();
+    tribeGovernDinoTaming = input.readInt();
+    tribeGovernDinoUnclaimAdminOnly = input.readInt();
+
+    int logCount = input.readInt();
+    for (int index = 0; index < logCount; index++) {
+      tribeLog.add(ProfileCache.readString(input));
+    }
+    logIndex = input.readInt();
+
+    int groupCount = input.readInt();
+    for (int index = 0; index < groupCount; index++) {
+      tribeRankGroups.add(new TribeRankGroup(input));
+    }
+  }
+
+  public void writeTribeData(DataOutput output) throws IOException {
+    ProfileCache.writeString(output, tribeName);
+    output.writeInt(ownerPlayerDataId);
+    output.writeInt(tribeId);
+
+    output.writeInt(membersPlayerName.size());
+    for (String memberName : membersPlayerName) {
+      ProfileCache.writeString(output, memberName);
+    }
+    output.writeInt(membersPlayerDataId.size());
+    for (int memberDataId : membersPlayerDataId) {
+      output.writeInt(memberDataId);
+    }
+    output.writeInt(tribeAdmins.size());
+    for (int tribeAdmin : tribeAdmins) {
+      output.writeInt(tribeAdmin);
+    }
+    output.writeInt(membersRankGroups.size());
+    for (byte memberRankGroup : membersRankGroups) {
+      output.writeByte(memberRankGroup);
+    }
+
+    output.writeBoolean(setGovernment);
+    output.writeInt(tribeGovernPINCode);
+    output.writeInt(tribeGovernDinoOwnership);
+    output.writeInt(tribeGovernStructureOwnership);
+    output.writeInt(tribeGovernDinoTaming);
+    output.writeInt(tribeGovernDinoUnclaimAdminOnly);
+
+    output.writeInt(tribeLog.size());
+    for (String log : tribeLog) {
+      ProfileCache.writeString(output, log);
+    }
+    output.writeInt(logIndex);
+
+    output.writeInt(tribeRankGroups.size());
+    for (TribeRankGroup group : tribeRankGroups) {
+      group.write(output);
+    }
+  }
+
   public static final SortedMap<String, WriterFunction<Tribe>> PROPERTIES = new TreeMap<>();
 
   static {
@@ -1,6 +1,11 @@
 package qowyn.ark.tools.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import qowyn.ark.PropertyContainer;
+import qowyn.ark.tools.ProfileCache;
 import qowyn.ark.types.ArkByteValue;
 
 public class TribeRankGroup {
@@ -79,4 +84,63 @@ public class TribeRankGroup {
     defaultRank = tribeRankGroup.findPropertyValue("bDefaultRank", Boolean.class).orElse(false);
   }
 
+  /**
+   * Reads data written by {@link #write(DataOutput)}
+   */
+  public TribeRankGroup(DataInput input) throws IOException {
+    rankGroupName = ProfileCache.readString(input);
+
+    rankGroupRank = input.readByte();
+    inventoryRank = input.readByte();
+    structureActivationRank = input.readByte();
+    newStructureActivationRank = input.readByte();
+    newStructureInventoryRank = input.readByte();
+    petOrderRank = input.readByte();
+    petRidingRank = input.readByte();
+    inviteToGroupRank = input.readByte();
+    maxPromotionGroupRank = input.readByte();
+    maxDemotionGroupRank = input.readByte();
+    maxBanishmentGroupRank = input.readByte();
+    numInvitesRemaining = input.readByte();
+
+    preventStructureDemolish = input.readBoolean();
+    preventStructureAttachment = input.readBoolean();
+    preventStructureBuildInRange = input.readBoolean();
+    preventUnclaiming = input.readBoolean();
+    allowInvites = input.readBoolean();
+    limitInvites = input.readBoolean();
+    allowDemotions = input.readBoolean();
+    allowPromotions = input.readBoolean();
+    allowBanishments = input.readBoolean();
+    defaultRank = input.readBoolean();
+  }
+
+  public void write(DataOutput output) throws IOException {
+    ProfileCache.writeString(output, rankGroupName);
+
+    output.writeByte(rankGroupRank);
+    output.writeByte(inventoryRank);
+    output.writeByte(structureActivationRank);
+    output.writeByte(newStructureActivationRank);
+    output.writeByte(newStructureInventoryRank);
+    output.writeByte(petOrderRank);
+    output.writeByte(petRidingRank);
+    output.writeByte(inviteToGroupRank);
+    output.writeByte(maxPromotionGroupRank);
+    output.writeByte(maxDemotionGroupRank);
+    output.writeByte(maxBanishmentGroupRank);
+    output.writeByte(numInvitesRemaining);
+
+    output.writeBoolean(preventStructureDemolish);
+    output.writeBoolean(preventStructureAttachment);
+    output.writeBoolean(preventStructureBuildInRange);
+    output.writeBoolean(preventUnclaiming);
+    output.writeBoolean(allowInvites);
+    output.writeBoolean(limitInvites);
+    output.writeBoolean(allowDemotions);
+    output.writeBoolean(allowPromotions);
+    output.writeBoolean(allowBanishments);
+    output.writeBoolean(defaultRank);
+  }
+
 }
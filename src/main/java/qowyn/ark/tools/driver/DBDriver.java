@@ -3,9 +3,11 @@ package qowyn.ark.tools.driver;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import qowyn.ark.tools.OptionHandler;
 import qowyn.ark.tools.data.DataCollector;
 
 public interface DBDriver {
@@ -24,6 +26,21 @@ public interface DBDriver {
 
   public Map<String, String> getSupportedParameters();
 
+  /**
+   * Sections of {@link DataCollector} this driver is going to write, other sections won't be loaded.
+   * Only valid after all parameters have been set.
+   */
+  public default Collection<String> getSections() {
+    return DataCollector.SECTIONS;
+  }
+
+  /**
+   * Checks parameters which depend on global options, before any data gets loaded.
+   *
+   * @throws IllegalArgumentException if parameters and options can't be combined
+   */
+  public default void checkOptions(OptionHandler oh) {}
+
   public void write(DataCollector data) throws IOException;
 
   public void close();
@@ -9,12 +9,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -22,9 +22,11 @@ import java.util.stream.Stream;
 
 public class DBDrivers {
 
-  private static final Map<String, Supplier<DBDriver>> DRIVERS = new HashMap<>();
+  private static final Map<String, Supplier<DBDriver>> DRIVERS = new ConcurrentHashMap<>();
 
-  private static URLClassLoader classLoader;
+  private static volatile URLClassLoader classLoader;
+
+  private static boolean discovered;
 
   public static void addDriver(String name, Supplier<DBDriver> driverSupplier) {
     DRIVERS.put(name.toLowerCase(Locale.ENGLISH), driverSupplier);
@@ -32,6 +34,7 @@ public class DBDrivers {
 
   static {
     addDriver("json", JsonDriver::new);
+    addDriver("sql", SqlDriver::new);
   }
 
   public static Set<String> getDriverNames() {
@@ -44,7 +47,15 @@ public class DBDrivers {
     }).get();
   }
 
-  public static void discoverDrivers() throws URISyntaxException, IOException, ClassNotFoundException {
+  /**
+   * Loads the driver jars next to ark-tools once per process, later calls return immediately.
+   * Safe to call from concurrent jobs of batch and serve.
+   */
+  public static synchronized void discoverDrivers() throws URISyntaxException, IOException, ClassNotFoundException {
+    if (discovered) {
+      return;
+    }
+
     URL jarDirectoryURL = DBDrivers.class.getResource("/");
     Path jarPath = Paths.get(jarDirectoryURL.toURI());
     List<URL> urls = new ArrayList<>();
@@ -86,20 +97,36 @@ public class DBDrivers {
       }
     }
 
-    classLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]), DBDrivers.class.getClassLoader());
+    URLClassLoader loader = new URLClassLoader(urls.toArray(new URL[urls.size()]), DBDrivers.class.getClassLoader());
     for (String driverInit: driverInitClasses) {
-      Class.forName(driverInit, true, classLoader);
+      Class.forName(driverInit, true, loader);
     }
+
+    classLoader = loader;
+    discovered = true;
+  }
+
+  /**
+   * ClassLoader with all discovered driver jars, for drivers which load classes by name
+   */
+  public static ClassLoader getClassLoader() {
+    return classLoader != null ? classLoader : DBDrivers.class.getClassLoader();
   }
 
-  public static void close() {
+  /**
+   * Closes the driver jars. Commands must not call this, drivers of concurrent jobs might still load classes.
+   * Only called by batch and serve once all of their jobs are done.
+   */
+  public static synchronized void close() {
     if (classLoader != null) {
       try {
         classLoader.close();
       } catch (IOException e) {
         e.printStackTrace();
       }
+      classLoader = null;
     }
+    discovered = false;
   }
 
 }
@@ -0,0 +1,297 @@
+package qowyn.ark.tools.driver;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import qowyn.ark.tools.Compression;
+import qowyn.ark.tools.OptionHandler;
+
+/**
+ * Sends everything written to it as body of POST requests.
+ * <p>
+ * Without a part size the body gets streamed in a single request using chunked transfer encoding, so it never
+ * has to be kept in memory as a whole. With a part size the body gets split into parts of that size, each one
+ * sent as request of its own with {@value #UPLOAD_ID_HEADER} and Content-Range headers. Failed parts are sent
+ * again on their own, up to the configured amount of retries with exponential backoff.
+ * <p>
+ * Compressed parts are complete gzip members, so each part can be decoded on its own and the concatenation of
+ * all parts is valid gzip as well.
+ */
+public class HttpUploadOutputStream extends OutputStream {
+
+  public static final String UPLOAD_ID_HEADER = "X-Upload-Id";
+
+  private static final int PART_BUFFER_SIZE = 8 * 1024;
+
+  private final URL url;
+
+  private final Map<String, String> headers = new LinkedHashMap<>();
+
+  private final String uploadId = UUID.randomUUID().toString();
+
+  private int chunkSize = 64 * 1024;
+
+  private int bufferSize = 64 * 1024;
+
+  private int partSize;
+
+  private int retries;
+
+  private long retryDelay = 1000;
+
+  private Compression compression;
+
+  private OptionHandler optionHandler;
+
+  private HttpURLConnection connection;
+
+  private OutputStream out;
+
+  private byte[] part;
+
+  private int count;
+
+  private long offset;
+
+  private int partNumber;
+
+  private boolean closed;
+
+  public HttpUploadOutputStream(URL url) {
+    this.url = url;
+  }
+
+  public HttpUploadOutputStream withHeader(String name, String value) {
+    headers.put(name, value);
+    return this;
+  }
+
+  /**
+   * Size of chunks when streaming a single request
+   */
+  public HttpUploadOutputStream withChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /**
+   * Bytes collected before they are handed to the connection when streaming a single request
+   */
+  public HttpUploadOutputStream withBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+    return this;
+  }
+
+  /**
+   * Splits the body into parts of partSize bytes, each one retried up to retries times, waiting retryDelay
+   * milliseconds before the first retry and twice as long before each following one. Zero or less streams a
+   * single request.
+   */
+  public HttpUploadOutputStream withParts(int partSize, int retries, long retryDelay) {
+    this.partSize = partSize;
+    this.retries = retries;
+    this.retryDelay = retryDelay;
+    return this;
+  }
+
+  /**
+   * Compresses the body and sets Content-Encoding, null sends it as written. optionHandler selects parallel
+   * compression of a single request and may be null when sending parts.
+   */
+  public HttpUploadOutputStream withCompression(Compression compression, OptionHandler optionHandler) {
+    this.compression = compression;
+    this.optionHandler = optionHandler;
+    return this;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+
+    if (part != null) {
+      if (count == part.length) {
+        sendPart(false);
+      }
+      part[count++] = (byte) b;
+    } else {
+      out.write(b);
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+
+    if (part == null) {
+      out.write(b, off, len);
+      return;
+    }
+
+    while (len > 0) {
+      if (count == part.length) {
+        sendPart(false);
+      }
+
+      int length = Math.min(len, part.length - count);
+      System.arraycopy(b, off, part, count, length);
+      count += length;
+      off += length;
+      len -= length;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (out != null && !closed) {
+      out.flush();
+    }
+  }
+
+  /**
+   * Finishes the upload, fails if the server didn't accept the body or its last part
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    ensureOpen();
+    closed = true;
+
+    if (part != null) {
+      sendPart(true);
+      part = null;
+    } else {
+      out.close();
+      int responseCode = connection.getResponseCode();
+      if (responseCode / 100 != 2) {
+        throw new IOException("Upload to " + url + " failed: HTTP " + responseCode + " " + connection.getResponseMessage());
+      }
+      drain(connection);
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+
+    if (part != null || out != null) {
+      return;
+    }
+
+    if (partSize > 0) {
+      part = new byte[partSize];
+    } else {
+      connection = openConnection();
+      connection.setChunkedStreamingMode(chunkSize);
+      OutputStream body = new BufferedOutputStream(connection.getOutputStream(), bufferSize);
+      out = compression != null ? compression.wrap(body, optionHandler) : body;
+    }
+  }
+
+  private HttpURLConnection openConnection() throws IOException {
+    HttpURLConnection result = (HttpURLConnection) url.openConnection();
+    result.setRequestMethod("POST");
+    result.setDoOutput(true);
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      result.setRequestProperty(header.getKey(), header.getValue());
+    }
+    if (compression != null) {
+      result.setRequestProperty("Content-Encoding", compression.getAlgorithm());
+    }
+
+    return result;
+  }
+
+  /**
+   * Sends the current part, last tells the server the total size of the body
+   */
+  private void sendPart(boolean last) throws IOException {
+    byte[] body = part;
+    int length = count;
+    if (compression != null) {
+      // Parts are small and have to be one gzip member each, so they never use the parallel compressor
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(count / 4 + 64);
+      try (OutputStream gzip = new Compression.LevelGzipOutputStream(compressed, compression.getLevel(), PART_BUFFER_SIZE)) {
+        gzip.write(part, 0, count);
+      }
+      body = compressed.toByteArray();
+      length = body.length;
+    }
+
+    String total = last ? Long.toString(offset + count) : "*";
+    String range = count > 0 ? "bytes " + offset + "-" + (offset + count - 1) + "/" + total : "bytes */" + total;
+
+    for (int attempt = 0;; attempt++) {
+      int responseCode;
+      String responseMessage;
+
+      try {
+        HttpURLConnection partConnection = openConnection();
+        partConnection.setFixedLengthStreamingMode(length);
+        partConnection.setRequestProperty(UPLOAD_ID_HEADER, uploadId);
+        partConnection.setRequestProperty("Content-Range", range);
+
+        try (OutputStream partOut = partConnection.getOutputStream()) {
+          partOut.write(body, 0, length);
+        }
+
+        responseCode = partConnection.getResponseCode();
+        responseMessage = partConnection.getResponseMessage();
+        if (responseCode / 100 == 2) {
+          drain(partConnection);
+          break;
+        }
+      } catch (IOException ex) {
+        if (attempt >= retries) {
+          throw ex;
+        }
+        responseCode = -1;
+        responseMessage = ex.getMessage();
+      }
+
+      boolean retryable = responseCode < 0 || responseCode == 408 || responseCode == 429 || responseCode / 100 == 5;
+      if (!retryable || attempt >= retries) {
+        throw new IOException("Upload of part " + partNumber + " to " + url + " failed: HTTP " + responseCode + " " + responseMessage);
+      }
+
+      if (optionHandler != null && optionHandler.isVerbose()) {
+        System.err.println("Upload of part " + partNumber + " failed (" + responseMessage + "), retrying");
+      }
+
+      try {
+        Thread.sleep(retryDelay << Math.min(attempt, 16));
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+
+    offset += count;
+    count = 0;
+    partNumber++;
+  }
+
+  /**
+   * Reads the response so the connection can be reused
+   */
+  private static void drain(HttpURLConnection connection) throws IOException {
+    try (InputStream in = connection.getInputStream()) {
+      byte[] buffer = new byte[4096];
+      while (in.read(buffer) >= 0) {
+        // Nothing to do
+      }
+    }
+  }
+
+}
@@ -1,28 +1,57 @@
 package qowyn.ark.tools.driver;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
 import java.util.jar.Manifest;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import qowyn.ark.tools.CommonFunctions;
+import qowyn.ark.tools.Compression;
+import qowyn.ark.tools.DataFormat;
+import qowyn.ark.tools.IncrementalWriter;
+import qowyn.ark.tools.NdjsonWriter;
+import qowyn.ark.tools.OptionHandler;
 import qowyn.ark.tools.data.Creature;
 import qowyn.ark.tools.data.DataCollector;
 import qowyn.ark.tools.data.DroppedItem;
+import qowyn.ark.tools.data.IdMap;
 import qowyn.ark.tools.data.Inventory;
 import qowyn.ark.tools.data.Item;
 import qowyn.ark.tools.data.Player;
@@ -32,6 +61,14 @@ import qowyn.ark.tools.data.WriterFunction;
 
 public class JsonDriver implements DBDriver {
 
+  public static final String SHARD_MANIFEST_NAME = "manifest.json";
+
+  /**
+   * Names of shards in any format, with or without compression
+   */
+  private static final Pattern SHARD_PATTERN = Pattern.compile("(" + String.join("|", DataCollector.SECTIONS) + ")-\\d{5,}("
+      + Arrays.stream(DataFormat.values()).map(format -> Pattern.quote(format.getExtension())).collect(Collectors.joining("|")) + ")(\\.gz)?");
+
   private static final List<String> PROTOCOL_LIST;
 
   private static final Map<String, String> PARAMETER_MAP;
@@ -57,6 +94,25 @@ public class JsonDriver implements DBDriver {
 
     Map<String, String> parameters = new LinkedHashMap<>();
 
+    putDataParameters(parameters);
+
+    parameters.put("format", "encoding of the output, ignored with --ndjson - default: value of --format, one of " + DataFormat.DATA_FORMAT_DESCRIBE);
+    parameters.put("layout", "file writes one document, directory writes numbered shards of each section and " + SHARD_MANIFEST_NAME + " into a directory, not combinable with --ndjson - default: file");
+    parameters.put("shardSize", "entries per shard with layout=directory - default: 10000");
+    parameters.put("contentEncoding", "http(s) only, gzip or identity - default: gzip if --compress is set, identity otherwise");
+    parameters.put("chunkSize", "http(s) only, size of chunks when sending the body as one request - default: 65536");
+    parameters.put("bufferSize", "http(s) only, bytes buffered before they get sent when sending the body as one request - default: 65536");
+    parameters.put("partSize", "http(s) only, sends the body in parts of this size as requests of their own, each one retried on failure - default: 0 (one request)");
+    parameters.put("retries", "http(s) only, how often a failed part gets sent again - default: 3");
+    parameters.put("retryDelay", "http(s) only, milliseconds before the first retry, doubled for each further retry - default: 1000");
+
+    PARAMETER_MAP = Collections.unmodifiableMap(parameters);
+  }
+
+  /**
+   * Adds the parameters selecting which data gets written, shared by all built-in drivers
+   */
+  static void putDataParameters(Map<String, String> parameters) {
     parameters.put("creatureFields", "comma delimited list of fields to write - default: " + Creature.PROPERTIES.keySet().stream().collect(Collectors.joining(",")));
     parameters.put("inventoryFields", "comma delimited list of fields to write - default: " + Inventory.PROPERTIES.keySet().stream().collect(Collectors.joining(",")));
     parameters.put("itemFields", "comma delimited list of fields to write - default: " + Item.PROPERTIES.keySet().stream().collect(Collectors.joining(",")));
@@ -65,35 +121,56 @@ public class JsonDriver implements DBDriver {
     parameters.put("structureFields", "comma delimited list of fields to write - default: " + Structure.PROPERTIES.keySet().stream().collect(Collectors.joining(",")));
     parameters.put("tribeFields", "comma delimited list of fields to write - default: " + Tribe.PROPERTIES.keySet().stream().collect(Collectors.joining(",")));
 
-    parameters.put("writeEmpty", "force writing of empty fields");
+    parameters.put("sections", "comma delimited list of sections to write, others are not loaded at all - default: " + DataCollector.SECTIONS.stream().collect(Collectors.joining(",")));
 
-    PARAMETER_MAP = Collections.unmodifiableMap(parameters);
+    parameters.put("writeEmpty", "force writing of empty fields");
   }
 
   private URLConnection conn;
 
   private OutputStream os;
 
+  /**
+   * Target of the directory layout
+   */
+  private Path directory;
+
+  /**
+   * Target of http and https uploads
+   */
+  private URL uploadURL;
+
   private Map<String, String> params = new HashMap<>();
 
   public JsonDriver() {
     params.put("writeEmpty", Boolean.toString(false));
+    params.put("layout", "file");
+    params.put("shardSize", Integer.toString(10000));
+    params.put("chunkSize", Integer.toString(64 * 1024));
+    params.put("bufferSize", Integer.toString(64 * 1024));
+    params.put("partSize", Integer.toString(0));
+    params.put("retries", Integer.toString(3));
+    params.put("retryDelay", Long.toString(1000));
   }
 
   @Override
-  public void openConnection(URI uri) {
-    try {
-      conn = uri.toURL().openConnection();
-
-      if (conn instanceof HttpURLConnection) {
-        Manifest manifest = new Manifest(JsonDriver.class.getResourceAsStream("/META-INF/MANIFEST.MF"));
-        String myVersion = manifest.getMainAttributes().getValue("Implementation-Version");
-
-        HttpURLConnection httpConn = (HttpURLConnection) conn;
-        httpConn.setRequestMethod("POST");
-        httpConn.addRequestProperty("User-Agent", "ark-tools/" + myVersion);
+  public void openConnection(URI uri) throws IOException {
+    if (isDirectoryLayout()) {
+      if (!"file".equalsIgnoreCase(uri.getScheme())) {
+        throw new IOException("layout=directory needs a local directory, not " + uri);
       }
+      openConnection(Paths.get(uri));
+      return;
+    }
 
+    if ("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme())) {
+      // Request headers depend on the output, requests are made once writing starts
+      uploadURL = uri.toURL();
+      return;
+    }
+
+    try {
+      conn = uri.toURL().openConnection();
       conn.setDoOutput(true);
 
       os = conn.getOutputStream();
@@ -104,7 +181,15 @@ public class JsonDriver implements DBDriver {
 
   @Override
   public void openConnection(Path path) throws IOException {
-    os = new FileOutputStream(path.toFile());
+    if (isDirectoryLayout()) {
+      directory = Files.createDirectories(path);
+    } else {
+      os = new FileOutputStream(path.toFile());
+    }
+  }
+
+  private boolean isDirectoryLayout() {
+    return "directory".equals(params.get("layout"));
   }
 
   @Override
@@ -127,6 +212,23 @@ public class JsonDriver implements DBDriver {
     if (!PARAMETER_MAP.containsKey(name)) {
       throw new UnsupportedOperationException("Unknown parameter: " + name);
     }
+    if (name.equals("format")) {
+      // Fail early on unknown formats
+      DataFormat.forIdentifier(value);
+    } else if (name.equals("sections")) {
+      parseSections(value);
+    } else if (name.equals("layout") && !value.equals("file") && !value.equals("directory")) {
+      throw new IllegalArgumentException("Unknown layout " + value + ", expected file or directory");
+    } else if (name.equals("shardSize") && Integer.parseInt(value) < 1) {
+      throw new IllegalArgumentException("shardSize has to be at least 1");
+    } else if (name.equals("contentEncoding") && !value.equals(Compression.GZIP) && !value.equals("identity")) {
+      throw new IllegalArgumentException("Unknown contentEncoding " + value + ", expected gzip or identity");
+    } else if ((name.equals("chunkSize") || name.equals("bufferSize")) && Integer.parseInt(value) < 1) {
+      throw new IllegalArgumentException(name + " has to be at least 1");
+    } else if ((name.equals("partSize") || name.equals("retries")) && Integer.parseInt(value) < 0
+        || name.equals("retryDelay") && Long.parseLong(value) < 0) {
+      throw new IllegalArgumentException(name + " can't be negative");
+    }
     params.put(name, value);
     return this;
   }
@@ -136,10 +238,39 @@ public class JsonDriver implements DBDriver {
     return PARAMETER_MAP;
   }
 
-  private <T> List<WriterFunction<T>> generateList(String paramName, SortedMap<String, WriterFunction<T>> map) {
-    List<WriterFunction<T>> result = new ArrayList<>();
+  @Override
+  public void checkOptions(OptionHandler oh) {
+    if (oh.useNdjson() && isDirectoryLayout()) {
+      throw new IllegalArgumentException("--ndjson can't be combined with layout=directory");
+    }
+  }
+
+  @Override
+  public Collection<String> getSections() {
+    return parseSections(params.get("sections"));
+  }
+
+  /**
+   * Parses the sections parameter, throws IllegalArgumentException for unknown sections
+   */
+  static Collection<String> parseSections(String paramValue) {
+    if (paramValue == null || paramValue.isEmpty()) {
+      return DataCollector.SECTIONS;
+    }
 
-    String paramValue = params.get(paramName);
+    Set<String> sections = new HashSet<>();
+    for (String section: paramValue.split(",")) {
+      if (!DataCollector.SECTIONS.contains(section)) {
+        throw new IllegalArgumentException("Unknown section " + section + ", expected one of " + String.join(",", DataCollector.SECTIONS));
+      }
+      sections.add(section);
+    }
+
+    return sections;
+  }
+
+  static <T> List<WriterFunction<T>> generateList(String paramValue, SortedMap<String, WriterFunction<T>> map) {
+    List<WriterFunction<T>> result = new ArrayList<>();
 
     if (paramValue == null || paramValue.isEmpty()) {
       for (String key: map.keySet()) {
@@ -159,136 +290,441 @@ public class JsonDriver implements DBDriver {
 
   @Override
   public void write(DataCollector data) throws IOException {
-    List<WriterFunction<Creature>> creatureWriters = generateList("creatureFields", Creature.PROPERTIES);
-    List<WriterFunction<Inventory>> inventoryWriters = generateList("inventoryFields", Inventory.PROPERTIES);
-    List<WriterFunction<Item>> itemWriters = generateList("itemFields", Item.PROPERTIES);
-    List<WriterFunction<DroppedItem>> droppedItemWriters = generateList("droppedItemFields", DroppedItem.PROPERTIES);
-    List<WriterFunction<Player>> playerWriters = generateList("playerFields", Player.PROPERTIES);
-    List<WriterFunction<Structure>> structureWriters = generateList("structureFields", Structure.PROPERTIES);
-    List<WriterFunction<Tribe>> tribeWriters = generateList("tribeFields", Tribe.PROPERTIES);
     boolean writeEmpty = Boolean.valueOf(params.get("writeEmpty"));
+    DataFormat format = params.containsKey("format") ? DataFormat.forIdentifier(params.get("format")) : data.oh.dataFormat();
+    List<Section<?>> sections = collectSections(data);
 
-    CommonFunctions.writeJson(os, generator -> {
-      generator.writeStartObject();
+    if (directory != null) {
+      writeShards(sections, data, writeEmpty, format);
+      return;
+    }
 
-      generator.writeObjectFieldStart("creatures");
+    Compression compression = data.oh.compression();
+    if (uploadURL != null) {
+      os = openUpload(data, format);
+    } else if (compression != null) {
+      // Closing finishes the compressed data
+      os = compression.wrap(os, data.oh);
+    }
 
-      for (int index: data.creatureMap.keySet()) {
-        Creature creature = data.creatureMap.get(index);
+    if (data.oh.useNdjson()) {
+      NdjsonWriter writer = new NdjsonWriter(os);
 
-        generator.writeObjectFieldStart(Integer.toString(index));
+      for (Section<?> section: sections) {
+        writeRecords(writer, section, data, writeEmpty);
+      }
+
+      if (uploadURL != null) {
+        // Failed uploads should fail write, not close
+        writer.close();
+      } else {
+        writer.flush();
+      }
+      return;
+    }
+
+    ExecutorService executor = createExecutor(data.oh);
+
+    try {
+      CommonFunctions.writeJson(os, generator -> {
+        SectionWriter writer = new SectionWriter(generator, data, writeEmpty, executor, data.oh.threadCount() * 2);
 
-        for (WriterFunction<Creature> writer: creatureWriters) {
-          writer.accept(creature, generator, data, writeEmpty);
+        generator.writeStartObject();
+
+        for (Section<?> section: sections) {
+          writer.write(section);
         }
 
         generator.writeEndObject();
+      }, format, data.oh);
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
       }
+    }
+  }
 
-      generator.writeEndObject();
+  private HttpUploadOutputStream openUpload(DataCollector data, DataFormat format) throws IOException {
+    Manifest manifest = new Manifest(JsonDriver.class.getResourceAsStream("/META-INF/MANIFEST.MF"));
+    String myVersion = manifest.getMainAttributes().getValue("Implementation-Version");
 
-      generator.writeObjectFieldStart("inventories");
+    Compression compression = data.oh.compression();
+    String contentEncoding = params.get("contentEncoding");
+    if ("identity".equals(contentEncoding)) {
+      compression = null;
+    } else if (Compression.GZIP.equals(contentEncoding) && compression == null) {
+      compression = new Compression(Compression.GZIP, Deflater.DEFAULT_COMPRESSION);
+    }
 
-      for (int index: data.inventoryMap.keySet()) {
-        Inventory inventory = data.inventoryMap.get(index);
+    return new HttpUploadOutputStream(uploadURL)
+        .withHeader("User-Agent", "ark-tools/" + myVersion)
+        .withHeader("Content-Type", data.oh.useNdjson() ? "application/x-ndjson" : format.getMediaType())
+        .withChunkSize(Integer.parseInt(params.get("chunkSize")))
+        .withBufferSize(Integer.parseInt(params.get("bufferSize")))
+        .withParts(Integer.parseInt(params.get("partSize")), Integer.parseInt(params.get("retries")), Long.parseLong(params.get("retryDelay")))
+        .withCompression(compression, data.oh);
+  }
 
-        generator.writeObjectFieldStart(Integer.toString(index));
+  /**
+   * All selected sections, in the order they get written
+   */
+  private List<Section<?>> collectSections(DataCollector data) {
+    Collection<String> sectionNames = getSections();
+    List<Section<?>> sections = new ArrayList<>();
 
-        for (WriterFunction<Inventory> writer: inventoryWriters) {
-          writer.accept(inventory, generator, data, writeEmpty);
-        }
+    if (sectionNames.contains("creatures")) {
+      sections.add(new Section<>("creatures", "creature", ids(data.creatureMap), id -> data.creatureMap.get((int) id),
+          generateList(params.get("creatureFields"), Creature.PROPERTIES)));
+    }
 
-        generator.writeEndObject();
-      }
+    if (sectionNames.contains("inventories")) {
+      sections.add(new Section<>("inventories", "inventory", ids(data.inventoryMap), id -> data.inventoryMap.get((int) id),
+          generateList(params.get("inventoryFields"), Inventory.PROPERTIES)));
+    }
 
-      generator.writeEndObject();
+    if (sectionNames.contains("items")) {
+      sections.add(new Section<>("items", "item", ids(data.itemMap), id -> data.itemMap.get((int) id),
+          generateList(params.get("itemFields"), Item.PROPERTIES)));
+    }
+
+    if (sectionNames.contains("droppedItems")) {
+      sections.add(new Section<>("droppedItems", "droppedItem", ids(data.droppedItemMap), id -> data.droppedItemMap.get((int) id),
+          generateList(params.get("droppedItemFields"), DroppedItem.PROPERTIES)));
+    }
+
+    if (sectionNames.contains("players")) {
+      sections.add(new Section<>("players", "player", data.playerMap.keySet().stream().mapToLong(Long::longValue).toArray(), id -> data.playerMap.get(id),
+          generateList(params.get("playerFields"), Player.PROPERTIES)));
+    }
 
-      generator.writeObjectFieldStart("items");
+    if (sectionNames.contains("structures")) {
+      sections.add(new Section<>("structures", "structure", ids(data.structureMap), id -> data.structureMap.get((int) id),
+          generateList(params.get("structureFields"), Structure.PROPERTIES)));
+    }
+
+    if (sectionNames.contains("tribes")) {
+      sections.add(new Section<>("tribes", "tribe", data.tribeMap.keySet().stream().mapToLong(Integer::longValue).toArray(), id -> data.tribeMap.get((int) id),
+          generateList(params.get("tribeFields"), Tribe.PROPERTIES)));
+    }
+
+    return sections;
+  }
 
-      for (int index: data.itemMap.keySet()) {
-        Item item = data.itemMap.get(index);
+  /**
+   * Writes every section as numbered shards of at most shardSize entries, each one an object keyed by id like
+   * the section object of the single file layout. Shards whose content didn't change since the last run are
+   * left alone, see {@link IncrementalWriter}. {@link #SHARD_MANIFEST_NAME} lists all shards with their id
+   * ranges and gets replaced once all shards have been written, so it never refers to shards which haven't been
+   * written yet. Shards not written by this run, like those of deselected sections or in another format, get
+   * deleted afterwards.
+   */
+  private void writeShards(List<Section<?>> sections, DataCollector data, boolean writeEmpty, DataFormat format) throws IOException {
+    int shardSize = Integer.parseInt(params.get("shardSize"));
+    Compression compression = data.oh.compression();
+    String extension = format.getExtension() + (compression != null ? compression.getExtension() : "");
+    Set<String> shardNames = new HashSet<>();
+    IncrementalWriter writer = new IncrementalWriter(directory, data.oh);
+    ExecutorService executor = createExecutor(data.oh);
+
+    try {
+      List<Future<?>> results = new ArrayList<>();
+
+      for (Section<?> section: sections) {
+        for (int from = 0; from < section.ids.length; from += shardSize) {
+          String fileName = shardName(section, from / shardSize, extension);
+          shardNames.add(fileName);
+          int shardFrom = from;
+          int shardTo = Math.min(section.ids.length, from + shardSize);
+
+          Callable<Object> task = () -> {
+            writer.write(fileName, generator -> {
+              generator.writeStartObject();
+              section.writeEntries(generator, shardFrom, shardTo, data, writeEmpty);
+              generator.writeEndObject();
+            }, format);
+            return null;
+          };
+
+          if (executor != null) {
+            results.add(executor.submit(task));
+          } else {
+            call(task);
+          }
+        }
+      }
 
-        generator.writeObjectFieldStart(Integer.toString(index));
+      for (Future<?> result: results) {
+        await(result);
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
 
-        for (WriterFunction<Item> writer: itemWriters) {
-          writer.accept(item, generator, data, writeEmpty);
+    ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+    CommonFunctions.writeJson(manifest, generator -> {
+      generator.writeStartObject();
+      generator.writeStringField("format", format.getIdentifier());
+      if (compression != null) {
+        generator.writeStringField("compression", compression.getAlgorithm());
+      }
+      generator.writeNumberField("shardSize", shardSize);
+
+      generator.writeObjectFieldStart("sections");
+      for (Section<?> section: sections) {
+        generator.writeObjectFieldStart(section.name);
+        generator.writeNumberField("count", section.ids.length);
+        generator.writeArrayFieldStart("shards");
+
+        for (int from = 0; from < section.ids.length; from += shardSize) {
+          String fileName = shardName(section, from / shardSize, extension);
+          int to = Math.min(section.ids.length, from + shardSize);
+
+          generator.writeStartObject();
+          generator.writeStringField("file", fileName);
+          generator.writeNumberField("count", to - from);
+          generator.writeNumberField("firstId", section.ids[from]);
+          generator.writeNumberField("lastId", section.ids[to - 1]);
+          generator.writeStringField("sha256", writer.getHash(fileName));
+          generator.writeEndObject();
         }
 
+        generator.writeEndArray();
         generator.writeEndObject();
       }
+      generator.writeEndObject();
 
       generator.writeEndObject();
+    }, DataFormat.JSON, data.oh);
 
-      generator.writeObjectFieldStart("droppedItems");
+    IncrementalWriter.replaceFile(directory.resolve(SHARD_MANIFEST_NAME), manifest.toByteArray());
 
-      for (int index: data.droppedItemMap.keySet()) {
-        DroppedItem droppedItem = data.droppedItemMap.get(index);
+    List<String> staleShards = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path: stream) {
+        String fileName = path.getFileName().toString();
+        if (SHARD_PATTERN.matcher(fileName).matches() && !shardNames.contains(fileName)) {
+          staleShards.add(fileName);
+        }
+      }
+    }
+    for (String fileName: staleShards) {
+      writer.remove(fileName);
+    }
 
-        generator.writeObjectFieldStart(Integer.toString(index));
+    writer.writeManifest();
 
-        for (WriterFunction<DroppedItem> writer: droppedItemWriters) {
-          writer.accept(droppedItem, generator, data, writeEmpty);
-        }
+    if (!data.oh.isQuiet()) {
+      System.out.println("Wrote " + writer.getWritten() + " shards, " + writer.getUnchanged() + " unchanged");
+    }
+  }
 
-        generator.writeEndObject();
-      }
+  private static String shardName(Section<?> section, int shard, String extension) {
+    return String.format("%s-%05d%s", section.name, shard, extension);
+  }
 
-      generator.writeEndObject();
+  private static ExecutorService createExecutor(OptionHandler oh) {
+    if (!oh.useParallel() || oh.threadCount() < 2) {
+      return null;
+    }
 
-      generator.writeObjectFieldStart("players");
+    return Executors.newFixedThreadPool(oh.threadCount(), runnable -> {
+      Thread thread = new Thread(runnable, "json-driver");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
 
-      for (long index: data.playerMap.keySet()) {
-        Player player = data.playerMap.get(index);
+  private static <T> T call(Callable<T> task) throws IOException {
+    try {
+      return task.call();
+    } catch (IOException | RuntimeException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new IOException(ex);
+    }
+  }
 
-        generator.writeObjectFieldStart(Long.toString(index));
+  /**
+   * Waits for future, rethrowing whatever made it fail
+   */
+  private static <T> T await(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
 
-        for (WriterFunction<Player> writer: playerWriters) {
-          writer.accept(player, generator, data, writeEmpty);
+  private static <T> void writeRecords(NdjsonWriter writer, Section<T> section, DataCollector data, boolean writeEmpty) throws IOException {
+    for (long id: section.ids) {
+      T value = section.values.apply(id);
+      writer.write(section.kind, id, generator -> {
+        for (WriterFunction<T> valueWriter: section.writers) {
+          valueWriter.accept(value, generator, data, writeEmpty);
         }
+      });
+    }
+  }
 
-        generator.writeEndObject();
+  private static long[] ids(SortedMap<Integer, ?> map) {
+    if (map instanceof IdMap) {
+      IdMap<?> idMap = (IdMap<?>) map;
+      long[] result = new long[idMap.size()];
+      int count = 0;
+      for (int index = idMap.nextId(0); index >= 0; index = idMap.nextId(index + 1)) {
+        result[count++] = index;
       }
 
-      generator.writeEndObject();
+      return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    return map.keySet().stream().mapToLong(Integer::longValue).toArray();
+  }
+
+  /**
+   * One section of {@link DataCollector}: the ids of its entries and the fields to write for each of them
+   */
+  private static class Section<T> {
+
+    private final String name;
 
-      generator.writeObjectFieldStart("structures");
+    /**
+     * Kind of ndjson records
+     */
+    private final String kind;
 
-      for (int index: data.structureMap.keySet()) {
-        Structure structure = data.structureMap.get(index);
+    private final long[] ids;
 
-        generator.writeObjectFieldStart(Integer.toString(index));
+    private final LongFunction<T> values;
 
-        for (WriterFunction<Structure> writer: structureWriters) {
-          writer.accept(structure, generator, data, writeEmpty);
+    private final List<WriterFunction<T>> writers;
+
+    public Section(String name, String kind, long[] ids, LongFunction<T> values, List<WriterFunction<T>> writers) {
+      this.name = name;
+      this.kind = kind;
+      this.ids = ids;
+      this.values = values;
+      this.writers = writers;
+    }
+
+    /**
+     * Writes entries from (inclusive) to to (exclusive) as fields of the current object
+     */
+    public void writeEntries(JsonGenerator generator, int from, int to, DataCollector data, boolean writeEmpty) throws IOException {
+      for (int index = from; index < to; index++) {
+        T value = values.apply(ids[index]);
+
+        generator.writeObjectFieldStart(Long.toString(ids[index]));
+
+        for (WriterFunction<T> writer: writers) {
+          writer.accept(value, generator, data, writeEmpty);
         }
 
         generator.writeEndObject();
       }
+    }
 
-      generator.writeEndObject();
+  }
 
-      generator.writeObjectFieldStart("tribes");
+  /**
+   * Writes sections as objects keyed by id. With an executor, entries get rendered in chunks of CHUNK_SIZE on
+   * all threads into {@link TokenBuffer}s, which are then copied to the generator in order. Only a few chunks
+   * per thread are kept in memory at once.
+   */
+  private static class SectionWriter {
 
-      for (int index: data.tribeMap.keySet()) {
-        Tribe tribe = data.tribeMap.get(index);
+    private static final int CHUNK_SIZE = 4096;
 
-        generator.writeObjectFieldStart(Integer.toString(index));
+    private final JsonGenerator generator;
 
-        for (WriterFunction<Tribe> writer: tribeWriters) {
-          writer.accept(tribe, generator, data, writeEmpty);
-        }
+    private final DataCollector data;
 
-        generator.writeEndObject();
+    private final boolean writeEmpty;
+
+    private final ExecutorService executor;
+
+    private final int maxPending;
+
+    public SectionWriter(JsonGenerator generator, DataCollector data, boolean writeEmpty, ExecutorService executor, int maxPending) {
+      this.generator = generator;
+      this.data = data;
+      this.writeEmpty = writeEmpty;
+      this.executor = executor;
+      this.maxPending = Math.max(1, maxPending);
+    }
+
+    public <T> void write(Section<T> section) throws IOException {
+      long[] ids = section.ids;
+
+      generator.writeObjectFieldStart(section.name);
+
+      if (executor == null || ids.length <= CHUNK_SIZE) {
+        section.writeEntries(generator, 0, ids.length, data, writeEmpty);
+      } else {
+        Deque<Future<TokenBuffer>> pending = new ArrayDeque<>();
+        try {
+          for (int start = 0; start < ids.length; start += CHUNK_SIZE) {
+            int from = start;
+            int to = Math.min(ids.length, start + CHUNK_SIZE);
+
+            pending.add(executor.submit(() -> {
+              TokenBuffer buffer = new TokenBuffer(CommonFunctions.OBJECT_MAPPER, false);
+              buffer.writeStartObject();
+              section.writeEntries(buffer, from, to, data, writeEmpty);
+              buffer.writeEndObject();
+              return buffer;
+            }));
+
+            if (pending.size() >= maxPending) {
+              append(pending.removeFirst());
+            }
+          }
+
+          while (!pending.isEmpty()) {
+            append(pending.removeFirst());
+          }
+        } finally {
+          for (Future<TokenBuffer> future: pending) {
+            future.cancel(true);
+          }
+        }
       }
 
       generator.writeEndObject();
+    }
+
+    private void append(Future<TokenBuffer> future) throws IOException {
+      TokenBuffer buffer = await(future);
+
+      try (JsonParser parser = buffer.asParser()) {
+        // Copy the fields of the chunk object, not the object itself
+        parser.nextToken();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          generator.copyCurrentStructure(parser);
+        }
+      }
+    }
 
-      generator.writeEndObject();
-    }, data.oh);
   }
-  
+
   @Override
   public void close() {
+    if (os == null) {
+      // Directory layout, every file has been closed already
+      return;
+    }
+
     try {
       os.flush();
       os.close();
@@ -0,0 +1,708 @@
+package qowyn.ark.tools.driver;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonParser.NumberType;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import qowyn.ark.tools.CommonFunctions;
+import qowyn.ark.tools.data.Creature;
+import qowyn.ark.tools.data.DataCollector;
+import qowyn.ark.tools.data.DroppedItem;
+import qowyn.ark.tools.data.Inventory;
+import qowyn.ark.tools.data.Item;
+import qowyn.ark.tools.data.Player;
+import qowyn.ark.tools.data.Structure;
+import qowyn.ark.tools.data.Tribe;
+import qowyn.ark.tools.data.WriterFunction;
+
+/**
+ * Writes every section into a table of a JDBC database, one row per entry and one column per field.
+ * <p>
+ * Paths are opened as embedded H2 databases, H2 is shipped with ark-tools. Every other database needs a jdbc
+ * URL, with its JDBC driver on the classpath or provided by an ark-tools driver jar, see driverClass.
+ * <p>
+ * Column types are derived from the values written by the {@link WriterFunction}s of each section. Every entry
+ * is rendered once and kept as plain values until all columns of its table are known. Nested values are stored
+ * as JSON text. Ids referencing other sections, like the inventory of a creature, refer to the entry_id column of
+ * the referenced table. The item lists of inventories are also written to the link tables inventory_items,
+ * inventory_equipped_items and inventory_item_slots, one row per item with its position in the list.
+ * <p>
+ * Each table gets filled under a temporary name and replaces the previous table once all of its rows are written.
+ */
+public class SqlDriver implements DBDriver {
+
+  private static final List<String> PROTOCOL_LIST = Collections.singletonList("jdbc");
+
+  private static final Map<String, String> PARAMETER_MAP;
+
+  private static final String ID_COLUMN = "entry_id";
+
+  static {
+    Map<String, String> parameters = new LinkedHashMap<>();
+
+    JsonDriver.putDataParameters(parameters);
+
+    parameters.put("user", "database user");
+    parameters.put("password", "password of user");
+    parameters.put("driverClass", "class name of the JDBC driver, only needed if the driver is not on the classpath");
+    parameters.put("tablePrefix", "prefix for all table names");
+    parameters.put("textType", "SQL type used for text and nested values, by default TEXT, LONGTEXT, NVARCHAR(MAX) or CLOB depending on the database, or else VARCHAR fitting the longest value");
+    parameters.put("batchSize", "rows sent to the database at once");
+    parameters.put("parallel", "write each table using its own connection and thread, not supported by every database");
+
+    PARAMETER_MAP = Collections.unmodifiableMap(parameters);
+  }
+
+  private String url;
+
+  private Connection connection;
+
+  private Map<String, String> params = new HashMap<>();
+
+  public SqlDriver() {
+    params.put("writeEmpty", Boolean.toString(false));
+    params.put("tablePrefix", "");
+    params.put("batchSize", Integer.toString(1000));
+    params.put("parallel", Boolean.toString(false));
+  }
+
+  @Override
+  public void openConnection(URI uri) throws IOException {
+    open(uri.toString());
+  }
+
+  @Override
+  public void openConnection(Path path) throws IOException {
+    String fileName = path.getFileName().toString().toLowerCase(Locale.ENGLISH);
+    String absolutePath = path.toAbsolutePath().toString();
+
+    // H2 adds its own extension
+    open("jdbc:h2:file:" + (fileName.endsWith(".mv.db") ? absolutePath.substring(0, absolutePath.length() - 6) : absolutePath));
+  }
+
+  private void open(String url) throws IOException {
+    this.url = url;
+    try {
+      connection = connect();
+    } catch (SQLException ex) {
+      throw new IOException("Unable to connect to " + url, ex);
+    }
+  }
+
+  private Connection connect() throws SQLException {
+    Properties properties = new Properties();
+    if (params.containsKey("user")) {
+      properties.setProperty("user", params.get("user"));
+    }
+    if (params.containsKey("password")) {
+      properties.setProperty("password", params.get("password"));
+    }
+
+    String driverClass = params.get("driverClass");
+    if (driverClass == null || driverClass.isEmpty()) {
+      return DriverManager.getConnection(url, properties);
+    }
+
+    // DriverManager ignores drivers loaded by other class loaders
+    try {
+      Driver driver = (Driver) Class.forName(driverClass, true, DBDrivers.getClassLoader()).newInstance();
+      Connection result = driver.connect(url, properties);
+      if (result == null) {
+        throw new SQLException(driverClass + " can't handle " + url);
+      }
+
+      return result;
+    } catch (ReflectiveOperationException | ClassCastException ex) {
+      throw new SQLException("Unable to load JDBC driver " + driverClass, ex);
+    }
+  }
+
+  @Override
+  public List<String> getUrlSchemeList() {
+    return PROTOCOL_LIST;
+  }
+
+  @Override
+  public boolean canHandlePath() {
+    return true;
+  }
+
+  @Override
+  public String getParameter(String name) {
+    return params.get(name);
+  }
+
+  @Override
+  public DBDriver setParameter(String name, String value) {
+    if (!PARAMETER_MAP.containsKey(name)) {
+      throw new UnsupportedOperationException("Unknown parameter: " + name);
+    }
+    if (name.equals("sections")) {
+      JsonDriver.parseSections(value);
+    }
+    params.put(name, value);
+    return this;
+  }
+
+  @Override
+  public Map<String, String> getSupportedParameters() {
+    return PARAMETER_MAP;
+  }
+
+  @Override
+  public Collection<String> getSections() {
+    return JsonDriver.parseSections(params.get("sections"));
+  }
+
+  @Override
+  public void write(DataCollector data) throws IOException {
+    boolean writeEmpty = Boolean.valueOf(params.get("writeEmpty"));
+    Collection<String> sections = getSections();
+
+    List<SqlTable> tables = new ArrayList<>();
+
+    if (sections.contains("creatures")) {
+      tables.add(new Table<>("creatures", JsonDriver.generateList(params.get("creatureFields"), Creature.PROPERTIES), action -> {
+        for (Map.Entry<Integer, Creature> entry: data.creatureMap.entrySet()) {
+          action.accept(entry.getKey(), entry.getValue());
+        }
+      }));
+    }
+
+    if (sections.contains("inventories")) {
+      EntrySource<Inventory> inventories = action -> {
+        for (Map.Entry<Integer, Inventory> entry: data.inventoryMap.entrySet()) {
+          action.accept(entry.getKey(), entry.getValue());
+        }
+      };
+
+      tables.add(new Table<>("inventories", JsonDriver.generateList(params.get("inventoryFields"), Inventory.PROPERTIES), inventories));
+      tables.add(new LinkTable<>("inventory_items", "inventory_id", "item_id", inventories, inventory -> inventory.inventoryItems));
+      tables.add(new LinkTable<>("inventory_equipped_items", "inventory_id", "item_id", inventories, inventory -> inventory.equippedItems));
+      tables.add(new LinkTable<>("inventory_item_slots", "inventory_id", "item_id", inventories, inventory -> inventory.itemSlots));
+    }
+
+    if (sections.contains("items")) {
+      tables.add(new Table<>("items", JsonDriver.generateList(params.get("itemFields"), Item.PROPERTIES), action -> {
+        for (Map.Entry<Integer, Item> entry: data.itemMap.entrySet()) {
+          action.accept(entry.getKey(), entry.getValue());
+        }
+      }));
+    }
+
+    if (sections.contains("droppedItems")) {
+      tables.add(new Table<>("dropped_items", JsonDriver.generateList(params.get("droppedItemFields"), DroppedItem.PROPERTIES), action -> {
+        for (Map.Entry<Integer, DroppedItem> entry: data.droppedItemMap.entrySet()) {
+          action.accept(entry.getKey(), entry.getValue());
+        }
+      }));
+    }
+
+    if (sections.contains("players")) {
+      tables.add(new Table<>("players", JsonDriver.generateList(params.get("playerFields"), Player.PROPERTIES), action -> {
+        for (Map.Entry<Long, Player> entry: data.playerMap.entrySet()) {
+          action.accept(entry.getKey(), entry.getValue());
+        }
+      }));
+    }
+
+    if (sections.contains("structures")) {
+      tables.add(new Table<>("structures", JsonDriver.generateList(params.get("structureFields"), Structure.PROPERTIES), action -> {
+        for (Map.Entry<Integer, Structure> entry: data.structureMap.entrySet()) {
+          action.accept(entry.getKey(), entry.getValue());
+        }
+      }));
+    }
+
+    if (sections.contains("tribes")) {
+      tables.add(new Table<>("tribes", JsonDriver.generateList(params.get("tribeFields"), Tribe.PROPERTIES), action -> {
+        for (Map.Entry<Integer, Tribe> entry: data.tribeMap.entrySet()) {
+          action.accept(entry.getKey(), entry.getValue());
+        }
+      }));
+    }
+
+    try {
+      if (Boolean.valueOf(params.get("parallel")) && tables.size() > 1) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(tables.size(), data.oh.threadCount()));
+        try {
+          List<Future<Object>> results = new ArrayList<>();
+          for (SqlTable table: tables) {
+            Callable<Object> task = () -> {
+              try (Connection tableConnection = connect()) {
+                table.write(tableConnection, data, writeEmpty);
+              }
+              return null;
+            };
+            results.add(executor.submit(task));
+          }
+
+          for (Future<Object> result: results) {
+            result.get();
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new IOException(ex);
+        } catch (ExecutionException ex) {
+          throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+        } finally {
+          executor.shutdown();
+        }
+      } else {
+        for (SqlTable table: tables) {
+          table.write(connection, data, writeEmpty);
+        }
+      }
+    } catch (SQLException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      if (connection != null) {
+        connection.close();
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Creates a staging table with columns, fills it using rows and only then replaces name with it. Readers see
+   * either the previous table or the complete new one, and a failed write leaves the previous table in place.
+   * Databases with transactional DDL, like SQLite, do all of it in one transaction.
+   */
+  private static void replaceTable(Connection connection, String name, String columns, RowWriter rows) throws IOException, SQLException {
+    String quote = connection.getMetaData().getIdentifierQuoteString().trim();
+    // Unique per write, some databases keep index names of renamed tables
+    String stagingName = name + "_staging_" + Long.toString(System.nanoTime(), Character.MAX_RADIX);
+    String target = quote + name + quote;
+    String staging = quote + stagingName + quote;
+
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try {
+      try (Statement statement = connection.createStatement()) {
+        statement.executeUpdate("CREATE TABLE " + staging + " (" + columns + ")");
+      }
+
+      rows.write(staging);
+
+      try (Statement statement = connection.createStatement()) {
+        statement.executeUpdate("DROP TABLE IF EXISTS " + target);
+        statement.executeUpdate("ALTER TABLE " + staging + " RENAME TO " + target);
+      }
+      connection.commit();
+    } catch (IOException | SQLException | RuntimeException ex) {
+      connection.rollback();
+      try (Statement statement = connection.createStatement()) {
+        statement.executeUpdate("DROP TABLE IF EXISTS " + staging);
+        connection.commit();
+      } catch (SQLException dropEx) {
+        ex.addSuppressed(dropEx);
+      }
+      throw ex;
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
+  }
+
+  /**
+   * textType if set, otherwise a text type without length limit of the database, or VARCHAR fitting maxLength
+   */
+  private String textType(Connection connection, int maxLength) throws SQLException {
+    String textType = params.get("textType");
+    if (textType != null && !textType.isEmpty()) {
+      return textType;
+    }
+
+    switch (connection.getMetaData().getDatabaseProductName()) {
+      case "SQLite":
+      case "PostgreSQL":
+        return "TEXT";
+      case "MySQL":
+      case "MariaDB":
+        return "LONGTEXT";
+      case "Microsoft SQL Server":
+        return "NVARCHAR(MAX)";
+      case "Oracle":
+        return "CLOB";
+      default:
+        return "VARCHAR(" + Math.max(1, maxLength) + ")";
+    }
+  }
+
+  /**
+   * lowerCamelCase to snake_case
+   */
+  private static String columnName(String fieldName) {
+    StringBuilder builder = new StringBuilder(fieldName.length() + 4);
+    for (int index = 0; index < fieldName.length(); index++) {
+      char c = fieldName.charAt(index);
+      if (Character.isUpperCase(c)) {
+        if (index > 0) {
+          builder.append('_');
+        }
+        builder.append(Character.toLowerCase(c));
+      } else {
+        builder.append(c);
+      }
+    }
+
+    return builder.toString();
+  }
+
+  private static interface SqlTable {
+
+    public void write(Connection connection, DataCollector data, boolean writeEmpty) throws IOException, SQLException;
+
+  }
+
+  @FunctionalInterface
+  private static interface RowWriter {
+
+    /**
+     * Inserts all rows into table, which is already quoted
+     */
+    public void write(String table) throws IOException, SQLException;
+
+  }
+
+  @FunctionalInterface
+  private static interface EntryConsumer<T> {
+
+    public void accept(long id, T value) throws IOException, SQLException;
+
+  }
+
+  @FunctionalInterface
+  private static interface EntrySource<T> {
+
+    public void forEach(EntryConsumer<T> action) throws IOException, SQLException;
+
+  }
+
+  private enum ColumnType {
+    NONE(Types.VARCHAR),
+    BOOLEAN(Types.BOOLEAN),
+    BIGINT(Types.BIGINT),
+    DOUBLE(Types.DOUBLE),
+    TEXT(Types.VARCHAR);
+
+    private final int sqlType;
+
+    private ColumnType(int sqlType) {
+      this.sqlType = sqlType;
+    }
+
+    public static ColumnType of(Object value) {
+      if (value == null) {
+        return NONE;
+      } else if (value instanceof Boolean) {
+        return BOOLEAN;
+      } else if (value instanceof Long) {
+        return BIGINT;
+      } else if (value instanceof Number) {
+        return DOUBLE;
+      }
+
+      return TEXT;
+    }
+
+    public static ColumnType merge(ColumnType first, ColumnType second) {
+      if (first == second || second == NONE) {
+        return first;
+      } else if (first == NONE) {
+        return second;
+      } else if ((first == BIGINT && second == DOUBLE) || (first == DOUBLE && second == BIGINT)) {
+        return DOUBLE;
+      }
+
+      return TEXT;
+    }
+
+    public String sqlName(String textType) {
+      switch (this) {
+        case BOOLEAN:
+          return "BOOLEAN";
+        case BIGINT:
+          return "BIGINT";
+        case DOUBLE:
+          return "DOUBLE PRECISION";
+        default:
+          return textType;
+      }
+    }
+
+    public void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+      if (value == null) {
+        statement.setNull(index, sqlType);
+        return;
+      }
+
+      switch (this) {
+        case BOOLEAN:
+          statement.setBoolean(index, (Boolean) value);
+          break;
+        case BIGINT:
+          statement.setLong(index, ((Number) value).longValue());
+          break;
+        case DOUBLE:
+          statement.setDouble(index, ((Number) value).doubleValue());
+          break;
+        default:
+          statement.setString(index, value.toString());
+      }
+    }
+
+  }
+
+  private class Table<T> implements SqlTable {
+
+    private final String name;
+
+    private final List<WriterFunction<T>> writers;
+
+    private final EntrySource<T> source;
+
+    public Table(String name, List<WriterFunction<T>> writers, EntrySource<T> source) {
+      this.name = params.get("tablePrefix") + name;
+      this.writers = writers;
+      this.source = source;
+    }
+
+    /**
+     * Renders value into one element per column, adding new columns to columns. Nested values become JSON text.
+     */
+    private Object[] render(T value, DataCollector data, boolean writeEmpty, Map<String, Integer> columns) throws IOException {
+      TokenBuffer buffer = new TokenBuffer(CommonFunctions.OBJECT_MAPPER, false);
+      buffer.writeStartObject();
+      for (WriterFunction<T> writer: writers) {
+        writer.accept(value, buffer, data, writeEmpty);
+      }
+      buffer.writeEndObject();
+
+      List<Object> row = new ArrayList<>(columns.size());
+      try (JsonParser parser = buffer.asParser()) {
+        parser.nextToken();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          int column = columns.computeIfAbsent(parser.getCurrentName(), key -> columns.size());
+          parser.nextToken();
+          while (row.size() <= column) {
+            row.add(null);
+          }
+          row.set(column, cell(parser));
+        }
+      }
+
+      return row.toArray();
+    }
+
+    private Object cell(JsonParser parser) throws IOException {
+      switch (parser.getCurrentToken()) {
+        case VALUE_NULL:
+          return null;
+        case VALUE_TRUE:
+          return Boolean.TRUE;
+        case VALUE_FALSE:
+          return Boolean.FALSE;
+        case VALUE_NUMBER_INT:
+          if (parser.getNumberType() != NumberType.BIG_INTEGER) {
+            return parser.getLongValue();
+          }
+          return parser.getDoubleValue();
+        case VALUE_NUMBER_FLOAT:
+          // Keeps the text of floats short
+          if (parser.getNumberType() == NumberType.FLOAT) {
+            return parser.getFloatValue();
+          }
+          return parser.getDoubleValue();
+        case START_OBJECT:
+        case START_ARRAY:
+          StringWriter writer = new StringWriter();
+          try (JsonGenerator generator = CommonFunctions.JSON_FACTORY.createGenerator(writer)) {
+            generator.copyCurrentStructure(parser);
+          }
+          return writer.toString();
+        default:
+          return parser.getText();
+      }
+    }
+
+    private int maxLength(List<Object[]> rows, int column) {
+      int maxLength = 0;
+      for (Object[] row: rows) {
+        if (column < row.length && row[column] != null) {
+          maxLength = Math.max(maxLength, row[column].toString().length());
+        }
+      }
+
+      return maxLength;
+    }
+
+    @Override
+    public void write(Connection connection, DataCollector data, boolean writeEmpty) throws IOException, SQLException {
+      // Render every entry once, finding all columns and their types on the way
+      Map<String, Integer> columns = new LinkedHashMap<>();
+      List<ColumnType> types = new ArrayList<>();
+      List<Long> ids = new ArrayList<>();
+      List<Object[]> rows = new ArrayList<>();
+      source.forEach((id, value) -> {
+        Object[] row = render(value, data, writeEmpty, columns);
+        while (types.size() < row.length) {
+          types.add(ColumnType.NONE);
+        }
+        for (int index = 0; index < row.length; index++) {
+          types.set(index, ColumnType.merge(types.get(index), ColumnType.of(row[index])));
+        }
+
+        ids.add(id);
+        rows.add(row);
+      });
+
+      List<String> fieldNames = new ArrayList<>(columns.keySet());
+
+      String quote = connection.getMetaData().getIdentifierQuoteString().trim();
+
+      StringBuilder create = new StringBuilder();
+      create.append(quote).append(ID_COLUMN).append(quote).append(" BIGINT PRIMARY KEY");
+      StringBuilder insert = new StringBuilder(" (");
+      insert.append(quote).append(ID_COLUMN).append(quote);
+      StringBuilder values = new StringBuilder("?");
+      for (int index = 0; index < fieldNames.size(); index++) {
+        String column = quote + columnName(fieldNames.get(index)) + quote;
+        ColumnType type = types.get(index);
+        String textType = type == ColumnType.TEXT || type == ColumnType.NONE ? textType(connection, maxLength(rows, index)) : null;
+        create.append(", ").append(column).append(' ').append(type.sqlName(textType));
+        insert.append(", ").append(column);
+        values.append(", ?");
+      }
+      insert.append(") VALUES (").append(values).append(')');
+
+      // All rows in one transaction, sent in batches
+      replaceTable(connection, name, create.toString(), table -> {
+        int batchSize = Math.max(1, Integer.parseInt(params.get("batchSize")));
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + table + insert)) {
+          int pending = 0;
+
+          for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+            Object[] row = rows.get(rowIndex);
+            // Release rows once they are part of a batch
+            rows.set(rowIndex, null);
+
+            statement.setLong(1, ids.get(rowIndex));
+            for (int index = 0; index < fieldNames.size(); index++) {
+              types.get(index).bind(statement, index + 2, index < row.length ? row[index] : null);
+            }
+            statement.addBatch();
+
+            if (++pending >= batchSize) {
+              statement.executeBatch();
+              pending = 0;
+            }
+          }
+
+          if (pending > 0) {
+            statement.executeBatch();
+          }
+        }
+      });
+    }
+
+  }
+
+  /**
+   * One row per id in a list of ids of each entry, like the items of an inventory, together with its position in
+   * that list.
+   */
+  private class LinkTable<T> implements SqlTable {
+
+    private final String name;
+
+    private final String ownerColumn;
+
+    private final String targetColumn;
+
+    private final EntrySource<T> source;
+
+    private final Function<T, List<Integer>> links;
+
+    public LinkTable(String name, String ownerColumn, String targetColumn, EntrySource<T> source, Function<T, List<Integer>> links) {
+      this.name = params.get("tablePrefix") + name;
+      this.ownerColumn = ownerColumn;
+      this.targetColumn = targetColumn;
+      this.source = source;
+      this.links = links;
+    }
+
+    @Override
+    public void write(Connection connection, DataCollector data, boolean writeEmpty) throws IOException, SQLException {
+      String quote = connection.getMetaData().getIdentifierQuoteString().trim();
+      String owner = quote + ownerColumn + quote;
+      String position = quote + "position" + quote;
+      String target = quote + targetColumn + quote;
+
+      String columns = owner + " BIGINT NOT NULL, " + position + " INTEGER NOT NULL, " + target + " BIGINT NOT NULL, PRIMARY KEY (" + owner + ", " + position + ")";
+
+      replaceTable(connection, name, columns, table -> {
+        int batchSize = Math.max(1, Integer.parseInt(params.get("batchSize")));
+        String insert = "INSERT INTO " + table + " (" + owner + ", " + position + ", " + target + ") VALUES (?, ?, ?)";
+        try (PreparedStatement statement = connection.prepareStatement(insert)) {
+          int[] pending = {0};
+
+          source.forEach((id, value) -> {
+            List<Integer> ids = links.apply(value);
+            for (int index = 0; index < ids.size(); index++) {
+              statement.setLong(1, id);
+              statement.setInt(2, index);
+              statement.setLong(3, ids.get(index));
+              statement.addBatch();
+
+              if (++pending[0] >= batchSize) {
+                statement.executeBatch();
+                pending[0] = 0;
+              }
+            }
+          });
+
+          if (pending[0] > 0) {
+            statement.executeBatch();
+          }
+        }
+      });
+    }
+
+  }
+
+}
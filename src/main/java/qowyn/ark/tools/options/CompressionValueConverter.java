@@ -0,0 +1,47 @@
+package qowyn.ark.tools.options;
+
+import java.util.zip.Deflater;
+
+import joptsimple.ValueConversionException;
+import joptsimple.ValueConverter;
+import qowyn.ark.tools.Compression;
+
+public class CompressionValueConverter implements ValueConverter<Compression> {
+
+  @Override
+  public Compression convert(String value) {
+    String[] parts = value.split(":", 2);
+
+    int level = Deflater.DEFAULT_COMPRESSION;
+    if (parts.length > 1) {
+      try {
+        level = Integer.parseInt(parts[1]);
+      } catch (NumberFormatException nfe) {
+        throw new ValueConversionException(parts[1] + " is not a valid number", nfe);
+      }
+    }
+
+    if (Compression.GZIP.equals(parts[0])) {
+      if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+        throw new ValueConversionException("gzip level has to be between 1 and 9");
+      }
+
+      return new Compression(Compression.GZIP, level);
+    } else if (Compression.ZSTD.equals(parts[0])) {
+      throw new ValueConversionException("zstd is not available, use gzip");
+    }
+
+    throw new ValueConversionException(parts[0] + " is not a supported compression");
+  }
+
+  @Override
+  public Class<? extends Compression> valueType() {
+    return Compression.class;
+  }
+
+  @Override
+  public String valuePattern() {
+    return "gzip[:level]";
+  }
+
+}
@@ -0,0 +1,28 @@
+package qowyn.ark.tools.options;
+
+import joptsimple.ValueConversionException;
+import joptsimple.ValueConverter;
+import qowyn.ark.tools.DataFormat;
+
+public class DataFormatValueConverter implements ValueConverter<DataFormat> {
+
+  @Override
+  public DataFormat convert(String value) {
+    try {
+      return DataFormat.forIdentifier(value);
+    } catch (IllegalArgumentException iae) {
+      throw new ValueConversionException(iae.getMessage(), iae);
+    }
+  }
+
+  @Override
+  public Class<? extends DataFormat> valueType() {
+    return DataFormat.class;
+  }
+
+  @Override
+  public String valuePattern() {
+    return DataFormat.DATA_FORMAT_DESCRIBE;
+  }
+
+}
@@ -0,0 +1,68 @@
+package qowyn.ark.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import junit.framework.TestCase;
+import qowyn.ark.ArkSavegame;
+import qowyn.ark.ReadingOptions;
+import qowyn.ark.WritingOptions;
+
+public class StreamingSavegameWriterTest extends TestCase {
+
+  private Path savePath;
+
+  @Override
+  protected void setUp() throws Exception {
+    ArkSavegame fixture = new ArkSavegame();
+    try (InputStream stream = getClass().getResourceAsStream("streaming-fixture.json")) {
+      fixture.readJson(CommonFunctions.readJson(stream), ReadingOptions.create());
+    }
+
+    savePath = Files.createTempFile("streaming-fixture", ".ark");
+    fixture.writeBinary(savePath, WritingOptions.create());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Files.deleteIfExists(savePath);
+  }
+
+  public void testSameBytesAsFullConversion() throws IOException {
+    ArkSavegame savegame = new ArkSavegame();
+    savegame.readBinary(savePath, ReadingOptions.create());
+
+    ByteArrayOutputStream full = new ByteArrayOutputStream();
+    try (JsonGenerator generator = CommonFunctions.JSON_FACTORY.createGenerator(full)) {
+      savegame.writeJson(generator, WritingOptions.create());
+    }
+
+    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    try (JsonGenerator generator = CommonFunctions.JSON_FACTORY.createGenerator(streamed)) {
+      new StreamingSavegameWriter(generator, WritingOptions.create()).write(savePath, false, false);
+    }
+
+    assertTrue(full.size() > 0);
+    assertEquals(full.toString("UTF-8"), streamed.toString("UTF-8"));
+  }
+
+  public void testSameBytesWithMemoryMapping() throws IOException {
+    ByteArrayOutputStream first = new ByteArrayOutputStream();
+    try (JsonGenerator generator = CommonFunctions.JSON_FACTORY.createGenerator(first)) {
+      new StreamingSavegameWriter(generator, WritingOptions.create()).write(savePath, false, false);
+    }
+
+    ByteArrayOutputStream second = new ByteArrayOutputStream();
+    try (JsonGenerator generator = CommonFunctions.JSON_FACTORY.createGenerator(second)) {
+      new StreamingSavegameWriter(generator, WritingOptions.create()).write(savePath, false, true);
+    }
+
+    assertEquals(first.toString("UTF-8"), second.toString("UTF-8"));
+  }
+
+}
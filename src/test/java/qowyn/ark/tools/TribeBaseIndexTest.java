@@ -0,0 +1,50 @@
+package qowyn.ark.tools;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import qowyn.ark.types.LocationData;
+
+public class TribeBaseIndexTest extends TestCase {
+
+  private static LocationData location(float x, float y, float z) {
+    LocationData location = new LocationData();
+    location.setX(x);
+    location.setY(y);
+    location.setZ(z);
+    return location;
+  }
+
+  public void testFindsSmallBase() {
+    TribeBase base = new TribeBase("small", 1000.0f, 1000.0f, 0.0f, 500.0f);
+    TribeBaseIndex index = new TribeBaseIndex(Arrays.asList(base));
+
+    assertSame(base, index.find(location(1100.0f, 1100.0f, 0.0f)));
+    assertNull(index.find(location(5000.0f, 5000.0f, 0.0f)));
+  }
+
+  public void testHugeSize() {
+    // Size: 99999999999999999999 on a sign
+    TribeBase huge = new TribeBase("huge", 0.0f, 0.0f, 0.0f, Float.parseFloat("99999999999999999999"));
+    TribeBase small = new TribeBase("small", 1000.0f, 1000.0f, 0.0f, 500.0f);
+    TribeBaseIndex index = new TribeBaseIndex(Arrays.asList(small, huge));
+
+    assertSame(small, index.find(location(1100.0f, 1100.0f, 0.0f)));
+    assertSame(huge, index.find(location(-300000.0f, 200000.0f, 0.0f)));
+  }
+
+  public void testInfiniteSize() {
+    TribeBase infinite = new TribeBase("infinite", 0.0f, 0.0f, 0.0f, Float.POSITIVE_INFINITY);
+    TribeBaseIndex index = new TribeBaseIndex(Arrays.asList(infinite));
+
+    assertSame(infinite, index.find(location(123456.0f, -654321.0f, 0.0f)));
+  }
+
+  public void testSaturatedCoordinates() {
+    TribeBase far = new TribeBase("far", Float.MAX_VALUE, Float.MAX_VALUE, 0.0f, 500.0f);
+    TribeBaseIndex index = new TribeBaseIndex(Arrays.asList(far));
+
+    assertNull(index.find(location(0.0f, 0.0f, 0.0f)));
+  }
+
+}
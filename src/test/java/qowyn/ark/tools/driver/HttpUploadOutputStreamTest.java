@@ -0,0 +1,189 @@
+package qowyn.ark.tools.driver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+import qowyn.ark.tools.Compression;
+
+public class HttpUploadOutputStreamTest extends TestCase {
+
+  private static class Request {
+
+    public final String transferEncoding;
+
+    public final String contentEncoding;
+
+    public final String contentRange;
+
+    public final String uploadId;
+
+    public final byte[] body;
+
+    public Request(HttpExchange exchange) throws IOException {
+      transferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+      contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+      contentRange = exchange.getRequestHeaders().getFirst("Content-Range");
+      uploadId = exchange.getRequestHeaders().getFirst(HttpUploadOutputStream.UPLOAD_ID_HEADER);
+      body = readAll(exchange.getRequestBody());
+    }
+
+  }
+
+  private HttpServer server;
+
+  private URL url;
+
+  private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+
+  /**
+   * Status codes of the next responses, 200 once empty
+   */
+  private final Queue<Integer> statusCodes = new ConcurrentLinkedQueue<>();
+
+  @Override
+  protected void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/upload", exchange -> {
+      try {
+        requests.add(new Request(exchange));
+        Integer statusCode = statusCodes.poll();
+        exchange.sendResponseHeaders(statusCode != null ? statusCode : 200, -1);
+      } finally {
+        exchange.close();
+      }
+    });
+    server.start();
+
+    url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/upload");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop(0);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) >= 0) {
+      result.write(buffer, 0, read);
+    }
+    return result.toByteArray();
+  }
+
+  private static byte[] data(int size) {
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    return data;
+  }
+
+  private static void upload(HttpUploadOutputStream out, byte[] data) throws IOException {
+    try (OutputStream stream = out) {
+      // Uneven writes to cross part boundaries
+      for (int offset = 0; offset < data.length; offset += 333) {
+        stream.write(data, offset, Math.min(333, data.length - offset));
+      }
+    }
+  }
+
+  public void testSingleChunkedRequest() throws IOException {
+    byte[] data = data(200 * 1024);
+    upload(new HttpUploadOutputStream(url).withChunkSize(1024).withBufferSize(4096), data);
+
+    assertEquals(1, requests.size());
+    Request request = requests.get(0);
+    assertEquals("chunked", request.transferEncoding);
+    assertNull(request.contentRange);
+    assertNull(request.uploadId);
+    assertTrue(Arrays.equals(data, request.body));
+  }
+
+  public void testParts() throws IOException {
+    byte[] data = data(2500);
+    upload(new HttpUploadOutputStream(url).withParts(1000, 0, 0), data);
+
+    assertEquals(3, requests.size());
+    assertEquals("bytes 0-999/*", requests.get(0).contentRange);
+    assertEquals("bytes 1000-1999/*", requests.get(1).contentRange);
+    assertEquals("bytes 2000-2499/2500", requests.get(2).contentRange);
+
+    String uploadId = requests.get(0).uploadId;
+    assertNotNull(uploadId);
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    for (Request request: requests) {
+      assertEquals(uploadId, request.uploadId);
+      body.write(request.body);
+    }
+    assertTrue(Arrays.equals(data, body.toByteArray()));
+  }
+
+  public void testRetryAfterServiceUnavailable() throws IOException {
+    statusCodes.add(503);
+
+    byte[] data = data(500);
+    upload(new HttpUploadOutputStream(url).withParts(1000, 2, 1), data);
+
+    assertEquals(2, requests.size());
+    for (Request request: requests) {
+      assertEquals("bytes 0-499/500", request.contentRange);
+      assertTrue(Arrays.equals(data, request.body));
+    }
+  }
+
+  public void testNoRetryAfterBadRequest() {
+    statusCodes.add(400);
+
+    try {
+      upload(new HttpUploadOutputStream(url).withParts(1000, 3, 1), data(500));
+      fail("Expected IOException");
+    } catch (IOException expected) {
+      // Expected
+    }
+
+    assertEquals(1, requests.size());
+  }
+
+  public void testGzipParts() throws IOException {
+    byte[] data = new byte[2500];
+    for (int index = 0; index < data.length; index++) {
+      data[index] = (byte) ('a' + index % 26);
+    }
+    upload(new HttpUploadOutputStream(url).withParts(1000, 0, 0).withCompression(new Compression(Compression.GZIP, Deflater.DEFAULT_COMPRESSION), null), data);
+
+    assertEquals(3, requests.size());
+    ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+    for (int index = 0; index < requests.size(); index++) {
+      Request request = requests.get(index);
+      assertEquals(Compression.GZIP, request.contentEncoding);
+
+      try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(request.body))) {
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, index * 1000, Math.min(data.length, (index + 1) * 1000)), readAll(in)));
+      }
+      concatenated.write(request.body);
+    }
+
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(concatenated.toByteArray()))) {
+      assertTrue(Arrays.equals(data, readAll(in)));
+    }
+  }
+
+}
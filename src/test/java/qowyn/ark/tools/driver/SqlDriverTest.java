@@ -0,0 +1,157 @@
+package qowyn.ark.tools.driver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+import qowyn.ark.tools.OptionHandler;
+import qowyn.ark.tools.data.DataCollector;
+import qowyn.ark.tools.data.Inventory;
+import qowyn.ark.tools.data.Item;
+import qowyn.ark.types.ArkName;
+
+public class SqlDriverTest extends TestCase {
+
+  private Path directory;
+
+  private Path database;
+
+  private DataCollector data;
+
+  @Override
+  protected void setUp() throws Exception {
+    directory = Files.createTempDirectory("sql-driver");
+    database = directory.resolve("ark");
+
+    data = new DataCollector(new OptionHandler());
+
+    Item wood = new Item();
+    wood.className = ArkName.from("PrimalItemResource_Wood_C");
+    wood.quantity = 100;
+    wood.customName = "Stack";
+    data.itemMap.put(1, wood);
+
+    Item saddle = new Item();
+    saddle.className = ArkName.from("PrimalItemArmor_RexSaddle_C");
+    saddle.isBlueprint = true;
+    saddle.rating = 1.5f;
+    data.itemMap.put(2, saddle);
+
+    Inventory inventory = new Inventory();
+    inventory.inventoryItems.add(1);
+    inventory.inventoryItems.add(2);
+    inventory.equippedItems.add(2);
+    data.inventoryMap.put(3, inventory);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private void write() throws IOException {
+    SqlDriver driver = new SqlDriver();
+    try {
+      driver.setParameter("sections", "items,inventories");
+      driver.openConnection(database);
+      driver.write(data);
+    } finally {
+      driver.close();
+    }
+  }
+
+  private Connection connect() throws SQLException {
+    return DriverManager.getConnection("jdbc:h2:file:" + database.toAbsolutePath());
+  }
+
+  private static int count(Statement statement, String table) throws SQLException {
+    try (ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM \"" + table + "\"")) {
+      result.next();
+      return result.getInt(1);
+    }
+  }
+
+  private static int columnType(Statement statement, String table, String column) throws SQLException {
+    return columnInfo(statement, table, column, false);
+  }
+
+  private static int columnPrecision(Statement statement, String table, String column) throws SQLException {
+    return columnInfo(statement, table, column, true);
+  }
+
+  private static int columnInfo(Statement statement, String table, String column, boolean precision) throws SQLException {
+    try (ResultSet result = statement.executeQuery("SELECT * FROM \"" + table + "\"")) {
+      ResultSetMetaData metaData = result.getMetaData();
+      for (int index = 1; index <= metaData.getColumnCount(); index++) {
+        if (metaData.getColumnName(index).equals(column)) {
+          return precision ? metaData.getPrecision(index) : metaData.getColumnType(index);
+        }
+      }
+    }
+
+    fail("Missing column " + column + " in " + table);
+    return Types.NULL;
+  }
+
+  public void testRoundTrip() throws IOException, SQLException {
+    write();
+
+    try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+      assertEquals(2, count(statement, "items"));
+      assertEquals(1, count(statement, "inventories"));
+      assertEquals(2, count(statement, "inventory_items"));
+      assertEquals(1, count(statement, "inventory_equipped_items"));
+      assertEquals(0, count(statement, "inventory_item_slots"));
+
+      assertEquals(Types.BIGINT, columnType(statement, "items", "entry_id"));
+      assertEquals(Types.BIGINT, columnType(statement, "items", "quantity"));
+      assertEquals(Types.BOOLEAN, columnType(statement, "items", "is_blueprint"));
+      assertEquals(Types.DOUBLE, columnType(statement, "items", "rating"));
+      assertEquals(Types.VARCHAR, columnType(statement, "items", "custom_name"));
+      // H2 gets VARCHAR fitting the longest value
+      assertEquals("Stack".length(), columnPrecision(statement, "items", "custom_name"));
+      assertEquals(Types.VARCHAR, columnType(statement, "inventories", "inventory_items"));
+
+      try (ResultSet result = statement.executeQuery("SELECT \"item_id\" FROM \"inventory_items\" WHERE \"inventory_id\" = 3 ORDER BY \"position\"")) {
+        assertTrue(result.next());
+        assertEquals(1, result.getLong(1));
+        assertTrue(result.next());
+        assertEquals(2, result.getLong(1));
+        assertFalse(result.next());
+      }
+
+      try (ResultSet result = statement.executeQuery("SELECT \"quantity\", \"custom_name\" FROM \"items\" WHERE \"entry_id\" = 1")) {
+        assertTrue(result.next());
+        assertEquals(100, result.getLong(1));
+        assertEquals("Stack", result.getString(2));
+      }
+    }
+  }
+
+  public void testRewriteReplacesTables() throws IOException, SQLException {
+    write();
+    data.itemMap.remove(2);
+    write();
+
+    try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+      assertEquals(1, count(statement, "items"));
+
+      try (ResultSet result = connection.getMetaData().getTables(null, null, "%staging%", null)) {
+        assertFalse(result.next());
+      }
+    }
+  }
+
+}